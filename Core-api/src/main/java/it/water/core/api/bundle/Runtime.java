@@ -19,6 +19,8 @@ package it.water.core.api.bundle;
 import it.water.core.api.permission.SecurityContext;
 import it.water.core.api.service.Service;
 
+import java.util.concurrent.Callable;
+
 /**
  * @Author Aristide Cittadino.
  * Wraps the concept of concrete runtime
@@ -36,6 +38,43 @@ public interface Runtime extends Service {
      */
     void fillSecurityContext(SecurityContext securityContext);
 
+    /**
+     * Runs the task with the given security context bound to the current thread.
+     * The previous security context is restored when the task completes, so contexts are not leaked on pooled threads.
+     *
+     * @param securityContext security context visible to the task
+     * @param task            task to execute
+     * @param <T>             result type
+     * @return task result
+     * @throws Exception the exception thrown by the task
+     */
+    default <T> T runWithSecurityContext(SecurityContext securityContext, Callable<T> task) throws Exception {
+        SecurityContext previousSecurityContext = getSecurityContext();
+        fillSecurityContext(securityContext);
+        try {
+            return task.call();
+        } finally {
+            fillSecurityContext(previousSecurityContext);
+        }
+    }
+
+    /**
+     * Runs the task with the given security context bound to the current thread.
+     * The previous security context is restored when the task completes, so contexts are not leaked on pooled threads.
+     *
+     * @param securityContext security context visible to the task
+     * @param task            task to execute
+     */
+    default void runWithSecurityContext(SecurityContext securityContext, Runnable task) {
+        SecurityContext previousSecurityContext = getSecurityContext();
+        fillSecurityContext(securityContext);
+        try {
+            task.run();
+        } finally {
+            fillSecurityContext(previousSecurityContext);
+        }
+    }
+
     /**
      * @return Application defined properties
      */
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.bundle;
+
+import it.water.core.api.permission.SecurityContext;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * @Author Aristide Cittadino.
+ * Helpers which carry the caller security context into tasks executed by other threads.
+ * The security context is captured when the task is created or submitted and it is bound, through Runtime.runWithSecurityContext,
+ * only while the task is running. In this way services can fan out work on executors (or virtual threads when available)
+ * and interceptors still see the correct context through Runtime.getSecurityContext().
+ */
+public final class SecurityContextPropagation {
+
+    private SecurityContextPropagation() {
+    }
+
+    /**
+     * @param runtime current runtime
+     * @param task    task to wrap
+     * @return task which runs with the security context of the caller
+     */
+    public static Runnable wrap(Runtime runtime, Runnable task) {
+        SecurityContext securityContext = runtime.getSecurityContext();
+        return () -> runtime.runWithSecurityContext(securityContext, task);
+    }
+
+    /**
+     * @param runtime current runtime
+     * @param task    task to wrap
+     * @param <T>     result type
+     * @return task which runs with the security context of the caller
+     */
+    public static <T> Callable<T> wrap(Runtime runtime, Callable<T> task) {
+        SecurityContext securityContext = runtime.getSecurityContext();
+        return () -> runtime.runWithSecurityContext(securityContext, task);
+    }
+
+    /**
+     * @param runtime  current runtime
+     * @param supplier supplier to wrap
+     * @param <T>      result type
+     * @return supplier which runs with the security context of the caller
+     */
+    public static <T> Supplier<T> wrapSupplier(Runtime runtime, Supplier<T> supplier) {
+        SecurityContext securityContext = runtime.getSecurityContext();
+        return () -> {
+            SecurityContext previousSecurityContext = runtime.getSecurityContext();
+            runtime.fillSecurityContext(securityContext);
+            try {
+                return supplier.get();
+            } finally {
+                runtime.fillSecurityContext(previousSecurityContext);
+            }
+        };
+    }
+
+    /**
+     * @param runtime  current runtime
+     * @param executor executor which runs tasks
+     * @return executor which runs every task with the security context of the thread submitting it
+     */
+    public static Executor executor(Runtime runtime, Executor executor) {
+        return task -> executor.execute(wrap(runtime, task));
+    }
+
+    /**
+     * @param runtime         current runtime
+     * @param executorService executor service which runs tasks
+     * @return executor service which runs every task with the security context of the thread submitting it
+     */
+    public static ExecutorService executorService(Runtime runtime, ExecutorService executorService) {
+        return new SecurityContextExecutorService(runtime, executorService);
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for each task when virtual threads are supported by the JVM,
+     * otherwise a cached thread pool is used.
+     *
+     * @param runtime current runtime
+     * @return executor service which runs every task with the security context of the thread submitting it
+     */
+    public static ExecutorService newThreadPerTaskExecutor(Runtime runtime) {
+        return executorService(runtime, newThreadPerTaskExecutor());
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for each task when virtual threads are supported by the JVM,
+     * otherwise a cached thread pool of daemon threads is used.
+     * Tasks are not wrapped, so callers must propagate the security context themselves.
+     *
+     * @return executor service
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @param runtime  current runtime
+     * @param supplier supplier to execute
+     * @param executor executor which runs the supplier
+     * @param <T>      result type
+     * @return future completed with the supplier result, the supplier runs with the security context of the caller
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Runtime runtime, Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(wrapSupplier(runtime, supplier), executor);
+    }
+
+    /**
+     * @param runtime  current runtime
+     * @param task     task to execute
+     * @param executor executor which runs the task
+     * @return future completed when the task ends, the task runs with the security context of the caller
+     */
+    public static CompletableFuture<Void> runAsync(Runtime runtime, Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(wrap(runtime, task), executor);
+    }
+
+    /**
+     * Executor service decorator, submit and invoke methods are routed by AbstractExecutorService through execute.
+     */
+    private static class SecurityContextExecutorService extends AbstractExecutorService {
+        private final Runtime runtime;
+        private final ExecutorService executorService;
+
+        private SecurityContextExecutorService(Runtime runtime, ExecutorService executorService) {
+            this.runtime = runtime;
+            this.executorService = executorService;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executorService.execute(wrap(runtime, command));
+        }
+
+        @Override
+        public void shutdown() {
+            executorService.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executorService.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executorService.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executorService.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executorService.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.interceptors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author Aristide Cittadino
+ * Holds the state of an intercepted service method invocation while interceptors are running.
+ * Before method interceptors can skip the service invocation providing the result themselves (for example a cached value),
+ * in that case after method interceptors still run and receive that result.
+ * Interceptors can also share data between the before and after phase of the same invocation through attributes.
+ * Proxies create the context only for methods carrying an annotation marked with @UsesInvocationContext,
+ * interceptors of other annotations find no context.
+ * <p>
+ * Contexts are bound to the invoking thread and nested invocations (for example interceptors which are services themselves)
+ * create nested contexts, so interceptors should retrieve the context with find(service, method).
+ * Asynchronous invocations detach the context from the caller thread and attach it to the thread completing the invocation.
+ */
+public final class InvocationContext {
+    private static Logger log = LoggerFactory.getLogger(InvocationContext.class);
+    private static final ThreadLocal<InvocationContext> currentContext = new ThreadLocal<>();
+
+    private final Object service;
+    private final Method method;
+    private final Object[] args;
+    //context which was current on the thread before this one has been bound
+    private InvocationContext previous;
+    private boolean invocationSkipped;
+    private Object result;
+    private Map<Object, Object> attributes;
+    private List<Runnable> completionListeners;
+
+    private InvocationContext(Object service, Method method, Object[] args) {
+        this.service = service;
+        this.method = method;
+        this.args = args;
+    }
+
+    /**
+     * Creates the context for a new invocation and binds it to the current thread.
+     * Callers must invoke end() when the invocation completes.
+     *
+     * @param service invoked service
+     * @param method  invoked method
+     * @param args    method arguments
+     * @return the new context
+     */
+    public static InvocationContext begin(Object service, Method method, Object[] args) {
+        InvocationContext context = new InvocationContext(service, method, args);
+        context.attach();
+        return context;
+    }
+
+    /**
+     * @return the innermost invocation running on the current thread, null if no intercepted invocation is running
+     */
+    public static InvocationContext current() {
+        return currentContext.get();
+    }
+
+    /**
+     * Searches, starting from the innermost one, the running invocation of the given method on the given service.
+     *
+     * @param service service passed to the interceptor
+     * @param method  method passed to the interceptor
+     * @return the invocation context or null if not found
+     */
+    public static InvocationContext find(Object service, Method method) {
+        InvocationContext context = currentContext.get();
+        while (context != null && (context.service != service || !context.method.equals(method)))
+            context = context.previous;
+        return context;
+    }
+
+    /**
+     * Completes the invocation restoring the enclosing one, if any, and runs completion listeners.
+     */
+    public void end() {
+        detach();
+        if (completionListeners != null) {
+            completionListeners.forEach(listener -> {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    log.error("Error while running invocation completion listener: {}", e.getMessage(), e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Binds the context to the current thread, used to continue an invocation on another thread.
+     */
+    public void attach() {
+        previous = currentContext.get();
+        currentContext.set(this);
+    }
+
+    /**
+     * Unbinds the context from the current thread restoring the previous one, without completing the invocation.
+     */
+    public void detach() {
+        if (previous != null)
+            currentContext.set(previous);
+        else
+            currentContext.remove();
+        previous = null;
+    }
+
+    /**
+     * Registers a listener executed when the invocation completes, even if the service method or an interceptor has thrown an exception.
+     * Useful to release resources acquired by before method interceptors, since after method interceptors run only on success.
+     *
+     * @param listener listener to run
+     */
+    public void onCompletion(Runnable listener) {
+        if (completionListeners == null)
+            completionListeners = new ArrayList<>();
+        completionListeners.add(listener);
+    }
+
+    public Object getService() {
+        return service;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+
+    /**
+     * Tells the proxy to not invoke the service method and return the given result.
+     * Remaining interceptors are still executed.
+     *
+     * @param result result returned to the caller
+     */
+    public void skipInvocation(Object result) {
+        this.invocationSkipped = true;
+        this.result = result;
+    }
+
+    /**
+     * @return true if an interceptor has provided the result so the service method must not be invoked
+     */
+    public boolean isInvocationSkipped() {
+        return invocationSkipped;
+    }
+
+    /**
+     * @return the result provided by the interceptor which skipped the invocation
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @param key   attribute key, interceptors should use keys which are private to them
+     * @param value attribute value
+     */
+    public void setAttribute(Object key, Object value) {
+        if (attributes == null)
+            attributes = new HashMap<>();
+        attributes.put(key, value);
+    }
+
+    /**
+     * @param key attribute key
+     * @param <T> value type
+     * @return attribute value or null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(Object key) {
+        return attributes != null ? (T) attributes.get(key) : null;
+    }
+}
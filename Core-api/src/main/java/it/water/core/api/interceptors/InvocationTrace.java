@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.interceptors;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * @Author Aristide Cittadino
+ * Trace of an intercepted invocation: the time spent by each interceptor and by the service method.
+ * Traces are recorded only when InvocationTracing is enabled.
+ */
+public final class InvocationTrace {
+    private final String serviceClassName;
+    private final String methodName;
+    private final String threadName;
+    private final long timestamp;
+    private final long durationNanos;
+    private final String failure;
+    private final List<Step> steps;
+
+    public InvocationTrace(String serviceClassName, String methodName, String threadName, long timestamp, long durationNanos, String failure, List<Step> steps) {
+        this.serviceClassName = serviceClassName;
+        this.methodName = methodName;
+        this.threadName = threadName;
+        this.timestamp = timestamp;
+        this.durationNanos = durationNanos;
+        this.failure = failure;
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    public String getServiceClassName() {
+        return serviceClassName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return invocation start time in milliseconds since epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return true if the invocation has completed without exceptions
+     */
+    public boolean isSucceeded() {
+        return failure == null;
+    }
+
+    /**
+     * @return class and message of the exception which has interrupted the invocation, null if it has succeeded
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return executed steps in order
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    @Override
+    public String toString() {
+        return serviceClassName + "." + methodName + " on " + threadName + " " + millis(durationNanos) + " " + (isSucceeded() ? "succeeded" : "failed: " + failure)
+                + steps.stream().map(Step::toString).collect(Collectors.joining(", ", " [", "]"));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000d);
+    }
+
+    public enum Phase {
+        BEFORE, INVOCATION, AFTER
+    }
+
+    /**
+     * Single step of an invocation, an interceptor or the service method itself
+     */
+    public static final class Step {
+        private final Phase phase;
+        private final String name;
+        private final long durationNanos;
+        private final boolean failed;
+
+        public Step(Phase phase, String name, long durationNanos, boolean failed) {
+            this.phase = phase;
+            this.name = name;
+            this.durationNanos = durationNanos;
+            this.failed = failed;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        /**
+         * @return interceptor class name or method name
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return phase.name().toLowerCase(Locale.ROOT) + " " + name + " " + millis(durationNanos) + (failed ? " failed" : "");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.interceptors;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @Author Aristide Cittadino
+ * Opt-in tracing of intercepted invocations.
+ * When enabled, proxies record a trace for each intercepted invocation inside a fixed size ring buffer owned by the invoking thread,
+ * so recording does not need locks and old traces are simply overwritten.
+ * Tracing can be enabled with the it.water.core.interceptors.tracing system property or at runtime with setEnabled.
+ */
+public final class InvocationTracing {
+    public static final String TRACING_ENABLED_PROPERTY = "it.water.core.interceptors.tracing";
+    //traces kept for each thread, must be a power of 2
+    private static final int BUFFER_SIZE = 128;
+    //buffers of terminated threads are discarded only when this number of buffers is exceeded
+    private static final int MAX_BUFFERS = 256;
+
+    private static volatile boolean enabled = Boolean.getBoolean(TRACING_ENABLED_PROPERTY);
+    private static final Queue<TraceBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger buffersCount = new AtomicInteger();
+    private static final ThreadLocal<TraceBuffer> currentBuffer = ThreadLocal.withInitial(InvocationTracing::newBuffer);
+
+    private InvocationTracing() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean tracingEnabled) {
+        enabled = tracingEnabled;
+    }
+
+    /**
+     * Adds the trace to the ring buffer of the current thread
+     *
+     * @param trace invocation trace
+     */
+    public static void record(InvocationTrace trace) {
+        currentBuffer.get().add(trace);
+    }
+
+    /**
+     * @param maxTraces maximum number of returned traces
+     * @return most recent traces of all threads, newest first
+     */
+    public static List<InvocationTrace> getRecentTraces(int maxTraces) {
+        List<InvocationTrace> traces = new ArrayList<>();
+        buffers.forEach(buffer -> buffer.collect(traces));
+        traces.sort(Comparator.comparingLong(InvocationTrace::getTimestamp).reversed());
+        return traces.size() > maxTraces ? new ArrayList<>(traces.subList(0, Math.max(0, maxTraces))) : traces;
+    }
+
+    /**
+     * Removes all recorded traces
+     */
+    public static void clear() {
+        buffers.forEach(TraceBuffer::clear);
+    }
+
+    private static TraceBuffer newBuffer() {
+        TraceBuffer buffer = new TraceBuffer(Thread.currentThread());
+        buffers.add(buffer);
+        if (buffersCount.incrementAndGet() > MAX_BUFFERS) {
+            Iterator<TraceBuffer> it = buffers.iterator();
+            while (it.hasNext()) {
+                TraceBuffer candidate = it.next();
+                if (!candidate.isOwnerAlive() && buffers.remove(candidate))
+                    buffersCount.decrementAndGet();
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Ring buffer written only by its owner thread and read by any thread.
+     * Traces are immutable and published with ordered writes, so readers always see complete traces.
+     */
+    private static final class TraceBuffer {
+        private final WeakReference<Thread> owner;
+        private final AtomicReferenceArray<InvocationTrace> traces = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private int next;
+
+        private TraceBuffer(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        private void add(InvocationTrace trace) {
+            traces.lazySet(next, trace);
+            next = (next + 1) & (BUFFER_SIZE - 1);
+        }
+
+        private void collect(List<InvocationTrace> collected) {
+            for (int i = 0; i < BUFFER_SIZE; i++) {
+                InvocationTrace trace = traces.get(i);
+                if (trace != null)
+                    collected.add(trace);
+            }
+        }
+
+        private void clear() {
+            for (int i = 0; i < BUFFER_SIZE; i++)
+                traces.set(i, null);
+        }
+
+        private boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.water.core.api.interceptors;
+
+import java.lang.annotation.*;
+
+
+/**
+ * @Author Aristide Cittadino
+ * Marks annotations whose interceptors use the InvocationContext.
+ * Proxies create the context only for invocations of methods carrying at least one of these annotations,
+ * so methods with other interceptors do not allocate it.
+ */
+@Target({ElementType.ANNOTATION_TYPE})
+@Retention(value = RetentionPolicy.RUNTIME)
+public @interface UsesInvocationContext {
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.metrics;
+
+/**
+ * @Author Aristide Cittadino
+ * Latency distribution of a service method.
+ * Values are in nanoseconds and percentiles are approximated with a relative error of about 3%.
+ */
+public interface MethodLatency {
+    /**
+     * @return concrete service class name
+     */
+    String getServiceClassName();
+
+    /**
+     * @return method signature like find(long)
+     */
+    String getMethodSignature();
+
+    /**
+     * @return number of successful invocations
+     */
+    long getCount();
+
+    /**
+     * @return number of invocations which have thrown an exception
+     */
+    long getErrorCount();
+
+    double getMeanNanos();
+
+    long getMaxNanos();
+
+    /**
+     * @param percentile percentile between 0 and 100, ex. 99.9
+     * @return the latency below which the given percentage of successful invocations falls
+     */
+    long getPercentileNanos(double percentile);
+}
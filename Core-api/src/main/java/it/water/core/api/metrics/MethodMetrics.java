@@ -0,0 +1,38 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.metrics;
+
+import java.util.Collection;
+
+/**
+ * @Author Aristide Cittadino
+ * Component exposing latencies recorded for service methods annotated with @Timed.
+ */
+public interface MethodMetrics {
+    /**
+     * @return latencies of all the timed methods invoked at least once
+     */
+    Collection<MethodLatency> getMethodLatencies();
+
+    /**
+     * @param serviceClass concrete service class
+     * @param method       method name or method signature like find(long)
+     * @return method latency or null if the method has never been invoked
+     */
+    MethodLatency getMethodLatency(Class<?> serviceClass, String method);
+}
@@ -16,7 +16,10 @@
  */
 
 package it.water.core.api.registry;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 
@@ -36,4 +39,16 @@ public interface ComponentConfiguration {
     void addProperty(String name,Object value);
     void removeProperty(String name);
     boolean hasProperty(String name);
+
+    /**
+     * Returns an immutable view of the configuration, used to evaluate compiled filters.
+     * Implementations should cache the view until the configuration changes, the default one builds a new map every time.
+     *
+     * @return immutable map of configuration properties
+     */
+    default Map<String, Object> getConfigurationView() {
+        Map<String, Object> view = new HashMap<>();
+        getConfiguration().forEach((name, value) -> view.put(name.toString(), value));
+        return Collections.unmodifiableMap(view);
+    }
 }
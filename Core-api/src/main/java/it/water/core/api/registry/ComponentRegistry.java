@@ -17,6 +17,8 @@
 
 package it.water.core.api.registry;
 
+import it.water.core.api.interceptors.InvocationTrace;
+import it.water.core.api.interceptors.InvocationTracing;
 import it.water.core.api.model.BaseEntity;
 import it.water.core.api.registry.filter.ComponentFilter;
 import it.water.core.api.registry.filter.ComponentFilterBuilder;
@@ -26,12 +28,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 
@@ -43,6 +43,50 @@ import java.util.stream.Collectors;
 public interface ComponentRegistry {
     Logger log = LoggerFactory.getLogger(ComponentRegistry.class);
 
+    /**
+     * Value returned by registries which do not track registration changes
+     */
+    long UNTRACKED_GENERATION = -1;
+
+    /**
+     * Returns a counter which changes every time a component is registered or unregistered.
+     * Callers can use it to safely reuse the result of previous lookups until the registry changes.
+     * Registries which do not track changes return UNTRACKED_GENERATION, in that case lookup results must not be reused.
+     *
+     * @return current registry generation or UNTRACKED_GENERATION
+     */
+    default long getGeneration() {
+        return UNTRACKED_GENERATION;
+    }
+
+    /**
+     * Enables or disables tracing of intercepted invocations, see InvocationTracing
+     *
+     * @param enabled true to record traces
+     */
+    default void setInvocationTracingEnabled(boolean enabled) {
+        InvocationTracing.setEnabled(enabled);
+    }
+
+    /**
+     * Diagnostic method which returns the most recent traces of intercepted invocations of all threads.
+     * Traces are recorded only while tracing is enabled.
+     *
+     * @param maxTraces maximum number of traces
+     * @return traces, newest first
+     */
+    default List<InvocationTrace> getRecentInvocationTraces(int maxTraces) {
+        return InvocationTracing.getRecentTraces(maxTraces);
+    }
+
+    /**
+     * @param maxTraces maximum number of traces
+     * @return recent traces formatted one per line, newest first
+     */
+    default String dumpInvocationTraces(int maxTraces) {
+        return getRecentInvocationTraces(maxTraces).stream().map(InvocationTrace::toString).collect(Collectors.joining(System.lineSeparator()));
+    }
+
     /**
      * Finds registered components in priority order
      *
@@ -63,6 +107,71 @@ public interface ComponentRegistry {
      */
     <T> T findComponent(Class<T> componentClass, ComponentFilter filter);
 
+    /**
+     * Returns the highest priority component, if any.
+     * Missing components are a normal outcome (for example for extension points) and they are not reported with exceptions.
+     * Default implementation relies on findComponent and treats exceptions implementing ComponentNotFound as missing components,
+     * other lookup errors are rethrown. Registries should override it in order to avoid exceptions entirely.
+     *
+     * @param componentClass Component interface
+     * @param filter         filter to identify the specific required component
+     * @param <T>            component interface
+     * @return the component or an empty optional
+     */
+    default <T> Optional<T> findComponentIfPresent(Class<T> componentClass, ComponentFilter filter) {
+        try {
+            return Optional.ofNullable(findComponent(componentClass, filter));
+        } catch (RuntimeException e) {
+            if (!(e instanceof ComponentNotFound))
+                throw e;
+            log.debug("No component found for {}: {}", componentClass.getName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Finds registered components in priority order, returning an empty list when none is registered.
+     * See findComponentIfPresent about the default implementation.
+     *
+     * @param componentClass Component interface
+     * @param filter         filter to identify the specific required component
+     * @param <T>            component interface
+     * @return list of component found inside the registry, possibly empty
+     */
+    default <T> List<T> findComponentsOrEmpty(Class<T> componentClass, ComponentFilter filter) {
+        try {
+            List<T> components = findComponents(componentClass, filter);
+            return (components != null) ? components : Collections.emptyList();
+        } catch (RuntimeException e) {
+            if (!(e instanceof ComponentNotFound))
+                throw e;
+            log.debug("No components found for {}: {}", componentClass.getName(), e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Adds a listener notified when components registered with the given class and matching the filter change.
+     * The filter is evaluated as it is when the listener is added.
+     * Default implementation does not support listeners.
+     *
+     * @param componentClass registration class
+     * @param filter         filter on component configuration, can be null
+     * @param listener       listener
+     * @return true if the registry supports listeners and the listener has been added
+     */
+    default boolean addComponentListener(Class<?> componentClass, ComponentFilter filter, ComponentRegistryListener listener) {
+        return false;
+    }
+
+    /**
+     * @param listener listener to remove
+     * @return true if the listener has been removed
+     */
+    default boolean removeComponentListener(ComponentRegistryListener listener) {
+        return false;
+    }
+
     /**
      * @param componentClass service class
      * @param component      component which must be registered
@@ -72,6 +181,28 @@ public interface ComponentRegistry {
      */
     <T, K> ComponentRegistration<T, K> registerComponent(Class<? extends T> componentClass, T component, ComponentConfiguration configuration);
 
+    /**
+     * @return true if registerLazyComponent defers the creation of components until they are looked up
+     */
+    default boolean supportsLazyComponents() {
+        return false;
+    }
+
+    /**
+     * Registers a component which is created by the given factory the first time it is looked up.
+     * The factory is invoked at most once, concurrent lookups wait for the component to be created.
+     * Default implementation creates the component immediately, see supportsLazyComponents.
+     *
+     * @param componentClass   service class
+     * @param componentFactory factory creating the component, it must not return null
+     * @param configuration    configuration associated with this component, can be null
+     * @param <T>
+     * @return the registration object, the component is created when it is read from the registration
+     */
+    default <T, K> ComponentRegistration<T, K> registerLazyComponent(Class<? extends T> componentClass, Supplier<? extends T> componentFactory, ComponentConfiguration configuration) {
+        return registerComponent(componentClass, componentFactory.get(), configuration);
+    }
+
     /**
      * @param registration the component registration
      * @return true if component has been unregistered
@@ -120,7 +251,10 @@ public interface ComponentRegistry {
     <T extends BaseEntity> BaseRepository<T> findEntityExtensionRepository(Class<T> type);
 
     /**
-     * Method used to invoke lifecycle methods like @OnActivate or @OnDeactivate
+     * Method used to invoke lifecycle methods like @OnActivate or @OnDeactivate.
+     * Annotated methods are found once per component class and invoked through method handles,
+     * parameters are resolved as components of the parameter type.
+     * Exceptions thrown by lifecycle methods are logged, errors are propagated to the caller.
      *
      * @param annotation annotation which must be found on the method in order to be invoked
      * @param component  on which the method must be executed
@@ -128,31 +262,21 @@ public interface ComponentRegistry {
      */
     default <T> void invokeLifecycleMethod(Class<? extends Annotation> annotation, Class<?> componentServiceClass, T component) {
         log.debug("Running activation method on component: {}", componentServiceClass.getName());
-        Collection<Method> methods = Arrays.stream(componentServiceClass.getMethods()).filter(method -> Arrays.stream(method.getDeclaredAnnotations()).anyMatch(methodAnnotation -> methodAnnotation.annotationType().equals(annotation))).collect(Collectors.toSet());
-        methods.forEach(method -> {
+        for (LifecycleMethods.LifecycleMethod lifecycleMethod : LifecycleMethods.forClass(componentServiceClass, annotation)) {
             try {
                 //injecting parameters from component registry
-                Class<?>[] parameters = method.getParameterTypes();
+                Class<?>[] parameters = lifecycleMethod.getParameterTypes();
                 Object[] parameterValues = new Object[parameters.length];
                 for (int i = 0; i < parameters.length; i++) {
                     parameterValues[i] = getClassParameter(parameters[i]);
                 }
-
-                if (Proxy.isProxyClass(component.getClass())) {
-                    //proxies do not expose annotations so, basically we search for the same method inside the proxied instance
-                    //todo now activate method on water services must be exposed in the service interface. it should be possible to invoke activation method even if it's not exposed on the interface allowing always fields injection
-                    //todo check not only parameters count but parameters types and order
-                    Optional<Method> proxiedMethodOpt = Arrays.stream(component.getClass().getDeclaredMethods()).filter(curMethod -> curMethod.getName().equals(method.getName()) && curMethod.getReturnType().equals(method.getReturnType()) && curMethod.getParameterCount() == method.getParameterCount()).findFirst();
-                    if (proxiedMethodOpt.isPresent())
-                        proxiedMethodOpt.get().invoke(component, parameterValues);
-                } else {
-                    method.invoke(component, parameterValues);
-                }
+                lifecycleMethod.invoke(component, parameterValues);
             } catch (Exception e) {
-                log.error("Error while executing {} lifecycle method {}", annotation.getClass().getName(), method.getName());
+                //errors like OutOfMemoryError or LinkageError are not handled here
+                log.error("Error while executing {} lifecycle method {}", annotation.getName(), lifecycleMethod.getMethod().getName());
                 log.error(e.getMessage(), e);
             }
-        });
+        }
     }
 
     /**
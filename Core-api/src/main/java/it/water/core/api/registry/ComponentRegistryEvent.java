@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.registry;
+
+/**
+ * @Author Aristide Cittadino
+ * Event fired by the component registry to registered listeners.
+ */
+public final class ComponentRegistryEvent {
+
+    public enum Type {
+        REGISTERED,
+        /**
+         * Configuration or priority of an existing registration changed, fired by registries which support it
+         */
+        MODIFIED,
+        UNREGISTERED
+    }
+
+    private final Type type;
+    private final Class<?> registrationClass;
+    private final ComponentRegistration<?, ?> registration;
+
+    public ComponentRegistryEvent(Type type, Class<?> registrationClass, ComponentRegistration<?, ?> registration) {
+        this.type = type;
+        this.registrationClass = registrationClass;
+        this.registration = registration;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Class<?> getRegistrationClass() {
+        return registrationClass;
+    }
+
+    public ComponentRegistration<?, ?> getRegistration() {
+        return registration;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + registrationClass.getName();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.registry;
+
+/**
+ * @Author Aristide Cittadino
+ * Listener notified when components matching a registration class and a filter are registered, modified or unregistered.
+ * Listeners are invoked on the thread which changed the registry, so they should return quickly.
+ */
+@FunctionalInterface
+public interface ComponentRegistryListener {
+    void componentChanged(ComponentRegistryEvent event);
+}
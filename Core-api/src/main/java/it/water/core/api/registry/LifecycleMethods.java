@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.registry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Aristide Cittadino
+ * Lifecycle methods (like @OnActivate or @OnDeactivate) of a component class, computed once per class and annotation.
+ * Methods are bound to method handles, while methods invoked on proxies are resolved once per proxy class
+ * matching name and parameter types, so that the invocation goes through interceptors.
+ */
+final class LifecycleMethods {
+    private static Logger log = LoggerFactory.getLogger(LifecycleMethods.class);
+
+    private static final ClassValue<Map<Class<? extends Annotation>, LifecycleMethod[]>> lifecycleMethods = new ClassValue<>() {
+        @Override
+        protected Map<Class<? extends Annotation>, LifecycleMethod[]> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private LifecycleMethods() {
+    }
+
+    /**
+     * @param componentServiceClass component class
+     * @param annotation            lifecycle annotation
+     * @return public methods of the class annotated with the given annotation
+     */
+    static LifecycleMethod[] forClass(Class<?> componentServiceClass, Class<? extends Annotation> annotation) {
+        return lifecycleMethods.get(componentServiceClass).computeIfAbsent(annotation, key -> findLifecycleMethods(componentServiceClass, key));
+    }
+
+    private static LifecycleMethod[] findLifecycleMethods(Class<?> componentServiceClass, Class<? extends Annotation> annotation) {
+        List<LifecycleMethod> methods = new ArrayList<>();
+        for (Method method : componentServiceClass.getMethods()) {
+            if (method.getDeclaredAnnotation(annotation) != null)
+                methods.add(new LifecycleMethod(method));
+        }
+        return methods.toArray(new LifecycleMethod[0]);
+    }
+
+    static final class LifecycleMethod {
+        private final Method method;
+        //(Object component, Object[] args)Object handle, null if the method is not accessible through method handles
+        private final MethodHandle handle;
+        //same method found on proxy classes, empty if the proxy does not expose it
+        private final Map<Class<?>, Optional<Method>> proxyMethods = new ConcurrentHashMap<>();
+
+        private LifecycleMethod(Method method) {
+            this.method = method;
+            this.handle = bind(method);
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        Class<?>[] getParameterTypes() {
+            return method.getParameterTypes();
+        }
+
+        /**
+         * Invokes the method on the component, or on the proxy wrapping it.
+         *
+         * @param component  component or proxy
+         * @param parameters resolved parameters
+         * @throws Exception the exception thrown by the method, errors are propagated as they are
+         */
+        void invoke(Object component, Object[] parameters) throws Exception {
+            try {
+                if (method.getDeclaringClass().isInstance(component)) {
+                    if (handle != null) {
+                        Object ignored = (Object) handle.invokeExact(component, parameters);
+                        return;
+                    }
+                    invokeReflectively(method, component, parameters);
+                    return;
+                }
+                //proxies do not expose annotations so, basically we search for the same method on the proxy class
+                Optional<Method> proxyMethod = proxyMethods.computeIfAbsent(component.getClass(), this::findProxyMethod);
+                if (proxyMethod.isPresent())
+                    invokeReflectively(proxyMethod.get(), component, parameters);
+                else
+                    log.debug("Lifecycle method {} is not exposed by {}, skipping it", method.getName(), component.getClass().getName());
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new UndeclaredThrowableException(t);
+            }
+        }
+
+        private Optional<Method> findProxyMethod(Class<?> proxyClass) {
+            try {
+                return Optional.of(proxyClass.getMethod(method.getName(), method.getParameterTypes()));
+            } catch (NoSuchMethodException e) {
+                return Optional.empty();
+            }
+        }
+
+        private static void invokeReflectively(Method method, Object target, Object[] parameters) throws Throwable {
+            try {
+                method.invoke(target, parameters);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private static MethodHandle bind(Method method) {
+            try {
+                MethodHandle methodHandle = MethodHandles.lookup().unreflect(method).asFixedArity();
+                return methodHandle.asType(MethodType.genericMethodType(methodHandle.type().parameterCount()))
+                        .asSpreader(Object[].class, method.getParameterCount());
+            } catch (IllegalAccessException e) {
+                log.debug("Lifecycle method {} not accessible through method handles, using reflection", method);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.api.registry;
+
+import it.water.core.api.registry.filter.ComponentFilter;
+
+import java.util.Optional;
+
+/**
+ * @param <T> component type
+ * @Author Aristide Cittadino
+ * Reference which always returns the current highest priority component matching a class and a filter.
+ * The component is looked up once and then reused until the registry notifies a change for the same class and filter,
+ * so it can be kept by long living components instead of looking up the registry on every use.
+ * With registries which do not support listeners, every call performs a lookup.
+ * References must be closed when no longer used, in order to remove their listener from the registry.
+ */
+public final class LiveComponentReference<T> implements ComponentRegistryListener, AutoCloseable {
+    private final ComponentRegistry componentRegistry;
+    private final Class<T> componentClass;
+    private final ComponentFilter filter;
+    //set once the listener has been added, which happens after construction so that this does not escape the constructor
+    private volatile boolean tracked;
+    //incremented on every change, components resolved before a change are never reused after it
+    private volatile long version;
+    private volatile Resolved<T> resolved;
+
+    private LiveComponentReference(ComponentRegistry componentRegistry, Class<T> componentClass, ComponentFilter filter) {
+        this.componentRegistry = componentRegistry;
+        this.componentClass = componentClass;
+        this.filter = filter;
+    }
+
+    /**
+     * @param componentRegistry registry
+     * @param componentClass    component class
+     * @param filter            filter, can be null
+     * @param <T>               component type
+     * @return a reference to the highest priority component
+     */
+    public static <T> LiveComponentReference<T> of(ComponentRegistry componentRegistry, Class<T> componentClass, ComponentFilter filter) {
+        LiveComponentReference<T> reference = new LiveComponentReference<>(componentRegistry, componentClass, filter);
+        reference.tracked = componentRegistry.addComponentListener(componentClass, filter, reference);
+        return reference;
+    }
+
+    /**
+     * @return current component or null if no component matches
+     */
+    public T get() {
+        return getIfPresent().orElse(null);
+    }
+
+    public Optional<T> getIfPresent() {
+        if (!tracked)
+            return componentRegistry.findComponentIfPresent(componentClass, filter);
+        long currentVersion = this.version;
+        Resolved<T> current = this.resolved;
+        if (current == null || current.version != currentVersion) {
+            current = new Resolved<>(currentVersion, componentRegistry.findComponentIfPresent(componentClass, filter));
+            this.resolved = current;
+        }
+        return current.component;
+    }
+
+    /**
+     * @return true if the reference is updated through registry notifications
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    @Override
+    public synchronized void componentChanged(ComponentRegistryEvent event) {
+        this.version++;
+    }
+
+    @Override
+    public void close() {
+        if (tracked)
+            componentRegistry.removeComponentListener(this);
+        this.resolved = null;
+    }
+
+    private static final class Resolved<T> {
+        private final long version;
+        private final Optional<T> component;
+
+        private Resolved(long version, Optional<T> component) {
+            this.version = version;
+            this.component = component;
+        }
+    }
+}
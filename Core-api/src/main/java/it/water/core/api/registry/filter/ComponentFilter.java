@@ -39,4 +39,19 @@ public interface ComponentFilter {
 
     boolean isNot();
     boolean matches(Properties props);
+
+    /**
+     * Compiles the filter into a predicate which reads component configurations without copying them.
+     * The compiled filter reflects the filter state at compile time, so it must be compiled again if the filter changes.
+     * Default implementation adapts the configuration view to Properties, implementations should override it.
+     *
+     * @return compiled filter
+     */
+    default CompiledComponentFilter compile() {
+        return configuration -> {
+            Properties props = new Properties();
+            props.putAll(configuration);
+            return matches(props);
+        };
+    }
 }
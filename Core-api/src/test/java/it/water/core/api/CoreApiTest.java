@@ -17,9 +17,12 @@
 package it.water.core.api;
 
 import it.water.core.api.bundle.ApplicationProperties;
+import it.water.core.api.interceptors.OnActivate;
+import it.water.core.api.interceptors.OnDeactivate;
 import it.water.core.api.model.*;
 import it.water.core.api.permission.PermissionManager;
 import it.water.core.api.permission.PermissionManagerComponentProperties;
+import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.repository.query.Query;
 import it.water.core.api.repository.query.operands.FieldNameOperand;
 import it.water.core.api.repository.query.operands.FieldValueListOperand;
@@ -153,4 +156,46 @@ class CoreApiTest {
         Assertions.assertEquals(0, baseEntity.getTagIds().length);
     }
 
+    @Test
+    void checkLifecycleMethodsInvocation() {
+        ComponentRegistry registry = Mockito.mock(ComponentRegistry.class, Mockito.CALLS_REAL_METHODS);
+        ApplicationProperties applicationProperties = Mockito.mock(ApplicationProperties.class);
+        Mockito.doReturn(applicationProperties).when(registry).findComponent(ApplicationProperties.class, null);
+        LifecycleComponent component = new LifecycleComponent();
+        registry.invokeLifecycleMethod(OnActivate.class, LifecycleComponent.class, component);
+        registry.invokeLifecycleMethod(OnActivate.class, LifecycleComponent.class, component);
+        Assertions.assertEquals(2, component.activations);
+        Assertions.assertSame(applicationProperties, component.injectedProperties);
+        //exceptions thrown by lifecycle methods must not be propagated
+        Assertions.assertDoesNotThrow(() -> registry.invokeLifecycleMethod(OnDeactivate.class, LifecycleComponent.class, component));
+        Assertions.assertEquals(1, component.deactivations);
+        //errors are not hidden
+        Assertions.assertThrows(LinkageError.class, () -> registry.invokeLifecycleMethod(OnActivate.class, FailingLifecycleComponent.class, new FailingLifecycleComponent()));
+    }
+
+    public static class LifecycleComponent {
+        private int activations;
+        private int deactivations;
+        private ApplicationProperties injectedProperties;
+
+        @OnActivate
+        public void onActivate(ApplicationProperties applicationProperties) {
+            this.activations++;
+            this.injectedProperties = applicationProperties;
+        }
+
+        @OnDeactivate
+        public void onDeactivate() {
+            this.deactivations++;
+            throw new IllegalStateException("deactivation failure");
+        }
+    }
+
+    public static class FailingLifecycleComponent {
+        @OnActivate
+        public void onActivate() {
+            throw new LinkageError("activation error");
+        }
+    }
+
 }
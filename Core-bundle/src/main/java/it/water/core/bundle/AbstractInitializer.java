@@ -28,7 +28,6 @@ import it.water.core.api.service.rest.RestApi;
 import it.water.core.api.service.rest.RestApiRegistry;
 import it.water.core.interceptors.annotations.FrameworkComponent;
 import it.water.core.permission.annotations.AccessControl;
-import it.water.core.registry.model.exception.NoComponentRegistryFoundException;
 import lombok.Getter;
 import org.atteo.classindex.ClassIndex;
 import org.slf4j.Logger;
@@ -45,11 +44,17 @@ import java.util.concurrent.atomic.AtomicReference;
  * @Author Aristide Cittadino
  * Layer of abstraction which encapsulates the logic of initialize an water based environment.
  * Every framework that supports Framework should rely on hierarchy of this class to setup all needed components.
+ * Startup phases are measured by a StartupProfiler, runtimes can log the report with logStartupReport once started.
  */
 public abstract class AbstractInitializer<T, K> {
+    /**
+     * System property which makes the application initializer log the startup report once components are activated
+     */
+    public static final String PROP_STARTUP_REPORT = "water.core.startup.report";
     private static Logger log = LoggerFactory.getLogger(AbstractInitializer.class);
     @Getter
     protected List<ComponentRegistration<T, K>> registeredServices;
+    private final StartupProfiler startupProfiler = new StartupProfiler();
 
     protected AbstractInitializer() {
         registeredServices = new ArrayList<>();
@@ -63,11 +68,30 @@ public abstract class AbstractInitializer<T, K> {
      */
     protected abstract ComponentRegistry getComponentRegistry();
 
+    protected StartupProfiler getStartupProfiler() {
+        return startupProfiler;
+    }
+
+    /**
+     * @return wall clock time and allocations of the startup phases measured so far
+     */
+    public StartupReport getStartupReport() {
+        return startupProfiler.getReport();
+    }
+
+    /**
+     * Logs the startup report as a table
+     */
+    protected void logStartupReport() {
+        if (log.isInfoEnabled())
+            log.info("Startup report:{}{}", System.lineSeparator(), getStartupReport().toTable(10));
+    }
+
     /**
      * Loads all framework components declared inside the application or runtime
      */
     protected void initializeFrameworkComponents() {
-        this.setupFrameworkComponents(getAnnotatedClasses(FrameworkComponent.class));
+        this.setupFrameworkComponents(scanAnnotatedClasses(FrameworkComponent.class));
     }
 
     /**
@@ -83,19 +107,21 @@ public abstract class AbstractInitializer<T, K> {
      * @param <N>
      */
     protected <N extends Resource> void initializeResourcePermissionsAndActions() {
-        Iterable<Class<?>> accessControlledClasses = getAnnotatedClasses(AccessControl.class);
-        accessControlledClasses.forEach(accessControlledClass -> {
-            ActionsManager manager = this.getComponentRegistry().findComponent(ActionsManager.class, null);
-            try {
-                if (Resource.class.isAssignableFrom(accessControlledClass)) {
-                    @SuppressWarnings("unchecked")
-                    Class<N> resourceClass = (Class<N>) accessControlledClass;
-                    manager.registerActions(resourceClass);
+        try (StartupProfiler.Timer timer = startupProfiler.start(StartupProfiler.Phase.RESOURCE_PERMISSIONS)) {
+            Iterable<Class<?>> accessControlledClasses = scanAnnotatedClasses(AccessControl.class);
+            accessControlledClasses.forEach(accessControlledClass -> {
+                ActionsManager manager = this.getComponentRegistry().findComponent(ActionsManager.class, null);
+                try {
+                    if (Resource.class.isAssignableFrom(accessControlledClass)) {
+                        @SuppressWarnings("unchecked")
+                        Class<N> resourceClass = (Class<N>) accessControlledClass;
+                        manager.registerActions(resourceClass);
+                    }
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
-            }
-        });
+            });
+        }
     }
 
     /**
@@ -103,18 +129,19 @@ public abstract class AbstractInitializer<T, K> {
      * This method calls registerRestApis which will be implementend for each available runtime.
      */
     protected void initializeRestApis() {
-        //registering rest apis if any
-        try {
-            RestApiRegistry restApiRegistry = getComponentRegistry().findComponent(RestApiRegistry.class, null);
+        try (StartupProfiler.Timer timer = startupProfiler.start(StartupProfiler.Phase.REST_APIS)) {
+            //registering rest apis if any
+            Optional<RestApiRegistry> restApiRegistry = getComponentRegistry().findComponentIfPresent(RestApiRegistry.class, null);
+            if (restApiRegistry.isEmpty()) {
+                log.warn("No Rest API Manager or RestApiRegistry found, skipping rest api automatic registration...");
+                return;
+            }
             //discover all concrete implementation for every defined rest api
-            Iterable<Class<?>> moduleRestApis = getAnnotatedClasses(FrameworkRestController.class);
-            this.setupRestApis(moduleRestApis, restApiRegistry);
+            Iterable<Class<?>> moduleRestApis = scanAnnotatedClasses(FrameworkRestController.class);
+            this.setupRestApis(moduleRestApis, restApiRegistry.get());
             //request for server restart if any change is made
-            restApiRegistry.sendRestartApiManagerRestartRequest();
-        } catch (NoComponentRegistryFoundException e) {
-            log.warn("No Rest API Manager or RestApiRegistry found, skipping rest api automatic registration...");
+            restApiRegistry.get().sendRestartApiManagerRestartRequest();
         }
-
     }
 
     /**
@@ -135,7 +162,7 @@ public abstract class AbstractInitializer<T, K> {
                 if (restApiRegistry != null) {
                     //add a rest api service passing all registered Rest Apis in order to find the right one
                     Class<? extends RestApi> genericRestApi = frameworkRestControllerAnnotation.referredRestApi();
-                    Class<? extends RestApi> concreteRestApi = (Class<? extends RestApi>) findConcreteRestApi(getAnnotatedClasses(FrameworkRestApi.class), genericRestApi);
+                    Class<? extends RestApi> concreteRestApi = (Class<? extends RestApi>) findConcreteRestApi(scanAnnotatedClasses(FrameworkRestApi.class), genericRestApi);
                     log.debug("REST Controller Found, Rest API: {}, Implementation: {}", genericRestApi.getName(), concreteRestApi.getName());
                     restApiRegistry.addRestApiService(concreteRestApi, (Class<? extends RestApi>) restApiService);
                 }
@@ -147,13 +174,15 @@ public abstract class AbstractInitializer<T, K> {
      * If the current node is setup to run inside a cluster, it tries to register to it.
      */
     protected void setupClusterMode() {
-        try {
-            ClusterCoordinatorClient clusterCoordinatorClient = getComponentRegistry().findComponent(ClusterCoordinatorClient.class, null);
-            ClusterNodeOptions clusterNodeOptions = getComponentRegistry().findComponent(ClusterNodeOptions.class, null);
-            if (clusterNodeOptions.clusterModeEnabled())
-                clusterCoordinatorClient.registerToCluster();
-        } catch (NoComponentRegistryFoundException e) {
-            log.warn("No ClusterCoordinatorClient found, skipping Cluster configuration...");
+        try (StartupProfiler.Timer timer = startupProfiler.start(StartupProfiler.Phase.CLUSTER_SETUP)) {
+            Optional<ClusterCoordinatorClient> clusterCoordinatorClient = getComponentRegistry().findComponentIfPresent(ClusterCoordinatorClient.class, null);
+            Optional<ClusterNodeOptions> clusterNodeOptions = getComponentRegistry().findComponentIfPresent(ClusterNodeOptions.class, null);
+            if (clusterCoordinatorClient.isEmpty() || clusterNodeOptions.isEmpty()) {
+                log.warn("No ClusterCoordinatorClient found, skipping Cluster configuration...");
+                return;
+            }
+            if (clusterNodeOptions.get().clusterModeEnabled())
+                clusterCoordinatorClient.get().registerToCluster();
         }
     }
 
@@ -161,14 +190,14 @@ public abstract class AbstractInitializer<T, K> {
      * If the current node is setup to run inside a cluster, it tries to shutdown cluster registration.
      */
     protected void shutDownClusterMode() {
-        try {
-            ClusterCoordinatorClient clusterCoordinatorClient = getComponentRegistry().findComponent(ClusterCoordinatorClient.class, null);
-            ClusterNodeOptions clusterNodeOptions = getComponentRegistry().findComponent(ClusterNodeOptions.class, null);
-            if (clusterNodeOptions.clusterModeEnabled())
-                clusterCoordinatorClient.unregisterToCluster();
-        } catch (NoComponentRegistryFoundException e) {
+        Optional<ClusterCoordinatorClient> clusterCoordinatorClient = getComponentRegistry().findComponentIfPresent(ClusterCoordinatorClient.class, null);
+        Optional<ClusterNodeOptions> clusterNodeOptions = getComponentRegistry().findComponentIfPresent(ClusterNodeOptions.class, null);
+        if (clusterCoordinatorClient.isEmpty() || clusterNodeOptions.isEmpty()) {
             log.warn("No ClusterCoordinatorClient found, skipping Cluster shutdown...");
+            return;
         }
+        if (clusterNodeOptions.get().clusterModeEnabled())
+            clusterCoordinatorClient.get().unregisterToCluster();
     }
 
     private Class<?> findConcreteRestApi(Iterable<Class<?>> iterableFrameworkRestApis, Class<? extends RestApi> crossFrameworkRestApi) {
@@ -187,6 +216,15 @@ public abstract class AbstractInitializer<T, K> {
     }
 
 
+    /**
+     * Measured getAnnotatedClasses
+     */
+    private Iterable<Class<?>> scanAnnotatedClasses(Class<? extends Annotation> annotation) {
+        try (StartupProfiler.Timer timer = startupProfiler.start(StartupProfiler.Phase.CLASS_INDEX_SCAN, annotation.getSimpleName())) {
+            return getAnnotatedClasses(annotation);
+        }
+    }
+
     /**
      * Default implementation using ClassIndex.
      * This method can be overridden in order to implement different discover mechanisms.
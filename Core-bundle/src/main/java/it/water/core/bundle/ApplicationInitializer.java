@@ -19,19 +19,33 @@ import it.water.core.api.interceptors.OnActivate;
 import it.water.core.api.registry.ComponentConfiguration;
 import it.water.core.api.registry.ComponentRegistration;
 import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.api.repository.BaseRepository;
+import it.water.core.api.service.BaseEntitySystemApi;
 import it.water.core.api.service.Service;
 import it.water.core.api.service.integration.discovery.RestApiServiceRegistrationLifecycleManager;
 import it.water.core.interceptors.annotations.FrameworkComponent;
 import it.water.core.interceptors.annotations.Inject;
 import it.water.core.interceptors.annotations.implementation.WaterComponentsInjector;
+import it.water.core.interceptors.manifest.ComponentManifest;
+import it.water.core.interceptors.manifest.ComponentManifestEntry;
+import it.water.core.model.exceptions.WaterRuntimeException;
 import it.water.core.registry.model.ComponentConfigurationFactory;
+import it.water.core.registry.model.LazyComponentHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @param <T>
@@ -39,11 +53,25 @@ import java.util.*;
  * @Author Aristide Cittadino.
  * This class should be used/extended in order to setup an application which uses  Framework.
  * Basically the initializeFrameworkComponents method loads all framework components defined inside the source code.
+ * Components described by a ComponentManifest are set up from the manifest and created by the generated factories,
+ * the others through reflection.
+ * Components declared lazy, or all components when the PROP_LAZY_COMPONENTS system property is true, are created on first lookup
+ * if the component registry supports lazy components.
  */
 public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T, K> {
+    /**
+     * System property which makes every framework component lazy
+     */
+    public static final String PROP_LAZY_COMPONENTS = "water.core.components.lazy";
+    /**
+     * System property with the maximum number of components activated in parallel, defaults to 1 (activation on the starting thread)
+     */
+    public static final String PROP_ACTIVATION_PARALLELISM = "water.core.components.activation.parallelism";
     private static Logger log = LoggerFactory.getLogger(ApplicationInitializer.class);
-    //list of components to be initialized
-    private Map<Class<?>, List<Object>> toInitialize = new HashMap<>();
+    //list of components to be initialized, in discovery order
+    private Map<Class<?>, List<Object>> toInitialize = new LinkedHashMap<>();
+    private ComponentActivationReport activationReport;
+    private ComponentManifest componentManifest;
 
     /**
      * Method called at application startup in order to setup framework components
@@ -52,6 +80,7 @@ public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T
      */
     @Override
     protected void setupFrameworkComponents(Iterable<Class<?>> frameworkComponents) {
+        componentManifest = loadComponentManifest();
         Map<Class<?>, Integer> componentsPriorities = loadComponentPriorities(frameworkComponents);
         frameworkComponents.iterator().forEachRemaining(componentClass -> {
             log.debug("Found @FrameworkComponent {}", componentClass.getName());
@@ -63,10 +92,23 @@ public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T
             //if current component priority is listed in the component priority list
             //this means this component has the highest priority so it's primary
             boolean isPrimary = checkComponentIsPrimary(componentsPriorities, frameworkComponentAnnotation);
-            Dictionary<String, Object> dictionary = getComponentProperties(frameworkComponentAnnotation.properties());
+            ComponentManifestEntry manifestEntry = componentManifest.getEntry(componentClass.getName());
+            Dictionary<String, Object> dictionary = (manifestEntry != null) ? new Hashtable<>(manifestEntry.getProperties()) : getComponentProperties(frameworkComponentAnnotation.properties());
+            if (isLazyComponent(componentClass, frameworkComponentAnnotation)) {
+                setupLazyFrameworkComponent(componentClass, frameworkComponentAnnotation, isPrimary, dictionary);
+                return;
+            }
             try {
-                Object service = getServiceInstance(componentClass);
-                injectFields(service,true);
+                Object service;
+                try (StartupProfiler.Timer timer = getStartupProfiler().start(StartupProfiler.Phase.COMPONENT_INSTANTIATION, componentClass.getName())) {
+                    service = getServiceInstance(componentClass);
+                }
+                //manifest tells which fields must be injected at startup
+                if (manifestEntry == null || manifestEntry.hasStartupInjectedFields()) {
+                    try (StartupProfiler.Timer timer = getStartupProfiler().start(StartupProfiler.Phase.FIELD_INJECTION, componentClass.getName())) {
+                        injectStartupFields(service, manifestEntry);
+                    }
+                }
                 ComponentRegistry registry = getComponentRegistry();
                 List<Class<?>> services = null;
                 if (registerMultiInterfaceComponents()) {
@@ -78,7 +120,9 @@ public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T
                     services = Collections.singletonList(service.getClass());
                 }
                 log.debug("Component: {} implementing services {} with properties :\n {}", componentClass.getName(), services, Arrays.stream(frameworkComponentAnnotation.properties()).toArray());
-                registerComponent(services, service, frameworkComponentAnnotation, isPrimary, registry, dictionary);
+                try (StartupProfiler.Timer timer = getStartupProfiler().start(StartupProfiler.Phase.COMPONENT_REGISTRATION, componentClass.getName())) {
+                    registerComponent(services, service, frameworkComponentAnnotation, isPrimary, registry, dictionary);
+                }
                 toInitialize.computeIfAbsent(componentClass, key -> new ArrayList<>());
                 toInitialize.get(componentClass).add(service);
             } catch (InstantiationException | InvocationTargetException | IllegalAccessException e) {
@@ -87,43 +131,122 @@ public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T
         });
     }
 
+    /**
+     * @return components manifests visible from the current class loader
+     */
+    protected ComponentManifest loadComponentManifest() {
+        return ComponentManifest.load(getCurrentClassLoader());
+    }
+
+    /**
+     * Lazy components require a registry supporting them.
+     * Entity system apis and repositories are never lazy because the registry indexes them by their entity type.
+     *
+     * @param componentClass               component class
+     * @param frameworkComponentAnnotation component annotation
+     * @return true if the component must be created on first lookup
+     */
+    protected boolean isLazyComponent(Class<?> componentClass, FrameworkComponent frameworkComponentAnnotation) {
+        if (!frameworkComponentAnnotation.lazy() && !Boolean.getBoolean(PROP_LAZY_COMPONENTS))
+            return false;
+        return getComponentRegistry().supportsLazyComponents()
+                && !BaseEntitySystemApi.class.isAssignableFrom(componentClass) && !BaseRepository.class.isAssignableFrom(componentClass);
+    }
+
+    /**
+     * Registers the component with a factory shared by all its services, so the same instance is returned for every service.
+     * Startup injection and OnActivate are performed when the component is created.
+     */
+    private void setupLazyFrameworkComponent(Class<?> componentClass, FrameworkComponent frameworkComponentAnnotation, boolean isPrimary, Dictionary<String, Object> dictionary) {
+        List<Class<?>> services = (registerMultiInterfaceComponents()) ? getDeclaredServices(frameworkComponentAnnotation, componentClass, Service.class.isAssignableFrom(componentClass)) : Collections.singletonList(componentClass);
+        log.debug("Lazy component: {} implementing services {}", componentClass.getName(), services);
+        LazyComponentFactory factory = new LazyComponentFactory(componentClass);
+        try (StartupProfiler.Timer timer = getStartupProfiler().start(StartupProfiler.Phase.COMPONENT_REGISTRATION, componentClass.getName())) {
+            services.forEach(service -> registerComponent(service, frameworkComponentAnnotation, isPrimary, dictionary, componentConfiguration -> getComponentRegistry().registerLazyComponent(service, factory, componentConfiguration)));
+        }
+    }
+
     /**
      * Running OnActivate method on registered compoennts.
      * Based on the technology this method could be invoked at different times.
+     * Components are activated following their dependencies, independent components are activated in parallel
+     * on at most getActivationParallelism threads, see getActivationParallelism about its caveats.
+     * When the PROP_STARTUP_REPORT system property is true the startup report is logged once components are activated.
      */
     protected void activateComponents() {
         log.debug("Activating components...");
-        Iterator<Class<?>> it = toInitialize.keySet().iterator();
-        while (it.hasNext()) {
-            Class<?> componentClass = it.next();
-            List<Object> services = toInitialize.get(componentClass);
-            services.forEach(service -> {
-                try {
-                    //Activation method won't benefit from automatic injection
-                    //this because the instance where it's invoked the activation method are not proxied
-                    //if developer wants to have some service available he can insert the component as arg
-                    //the system automatically will inject the service for him
-                    //Activation methods are outside the scope of "managed" proxy and are invoked on real entities
-                    //this is because the activation method may not be exposed in the service interface
-                    getComponentRegistry().invokeLifecycleMethod(OnActivate.class, componentClass, service);
-                } catch (Exception e) {
-                    log.error(e.getMessage(), e);
-                }
-            });
+        ComponentActivationGraph activationGraph = new ComponentActivationGraph(toInitialize);
+        int parallelism = Math.max(1, Math.min(getActivationParallelism(), toInitialize.size()));
+        ExecutorService executor = (parallelism > 1) ? Executors.newFixedThreadPool(parallelism, activationThreadFactory()) : null;
+        try (StartupProfiler.Timer timer = getStartupProfiler().start(StartupProfiler.Phase.COMPONENT_ACTIVATION)) {
+            activationReport = activationGraph.activate(this::activateComponent, executor, parallelism);
+        } finally {
+            if (executor != null)
+                executor.shutdown();
         }
+        log.info("{}", activationReport);
         activateRestApiServiceRegistrations();
         toInitialize.clear();
+        if (Boolean.getBoolean(PROP_STARTUP_REPORT))
+            logStartupReport();
+    }
+
+    private void activateComponent(Class<?> componentClass, Object service) {
+        try (StartupProfiler.Timer timer = getStartupProfiler().start(StartupProfiler.Phase.COMPONENT_ACTIVATION, componentClass.getName())) {
+            //Activation method won't benefit from automatic injection
+            //this because the instance where it's invoked the activation method are not proxied
+            //if developer wants to have some service available he can insert the component as arg
+            //the system automatically will inject the service for him
+            //Activation methods are outside the scope of "managed" proxy and are invoked on real entities
+            //this is because the activation method may not be exposed in the service interface
+            getComponentRegistry().invokeLifecycleMethod(OnActivate.class, componentClass, service);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parallel activation is opt-in: activation threads inherit only the context class loader of the starting thread,
+     * thread locals, such as the security context, are not propagated.
+     * Dependencies looked up through the component registry inside @OnActivate methods are not part of the activation graph,
+     * in parallel they can be activated after the component looking them up, they should be declared as @OnActivate parameters or @Inject fields.
+     *
+     * @return maximum number of components activated in parallel, 1 activates components on the calling thread in discovery order
+     */
+    protected int getActivationParallelism() {
+        return Integer.getInteger(PROP_ACTIVATION_PARALLELISM, 1);
+    }
+
+    /**
+     * Activation threads use the context class loader of the thread starting the application
+     */
+    private ThreadFactory activationThreadFactory() {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "water-component-activation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        };
+    }
+
+    /**
+     * @return report of the last components activation, with its critical path, null if components have not been activated yet
+     */
+    public ComponentActivationReport getActivationReport() {
+        return activationReport;
     }
 
     protected void activateRestApiServiceRegistrations() {
         try {
             ComponentRegistry registry = getComponentRegistry();
-            RestApiServiceRegistrationLifecycleManager manager =
-                    registry.findComponent(RestApiServiceRegistrationLifecycleManager.class, null);
-            if (manager == null) {
+            Optional<RestApiServiceRegistrationLifecycleManager> manager =
+                    registry.findComponentIfPresent(RestApiServiceRegistrationLifecycleManager.class, null);
+            if (manager.isEmpty()) {
                 return;
             }
-            manager.activateRestApiRegistrations(registry, getCurrentClassLoader());
+            manager.get().activateRestApiRegistrations(registry, getCurrentClassLoader());
         } catch (Exception e) {
             log.warn("REST API service registration lifecycle skipped: {}", e.getMessage());
         }
@@ -167,8 +290,14 @@ public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T
      * @return
      */
     protected List<Class<?>> getDeclaredServices(FrameworkComponent frameworkComponentAnnotation, Class<?> component, Object instance) {
+        return getDeclaredServices(frameworkComponentAnnotation, component, instance != null && Service.class.isAssignableFrom(instance.getClass()));
+    }
+
+    private List<Class<?>> getDeclaredServices(FrameworkComponent frameworkComponentAnnotation, Class<?> component, boolean isWaterService) {
+        List<Class<?>> manifestServices = getManifestServices(component, isWaterService);
+        if (manifestServices != null)
+            return manifestServices;
         List<Class<?>> services = new ArrayList<>(Arrays.asList(frameworkComponentAnnotation.services()));
-        boolean isWaterService = instance != null && Service.class.isAssignableFrom(instance.getClass());
         //no services specified inside annotation let's take declared interfaces
         if (services.isEmpty()) {
             Class<?>[] declaredInterfaces = component.getInterfaces();
@@ -187,12 +316,38 @@ public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T
     }
 
     /**
-     * Creates the instance for specific service
+     * Same rules of getDeclaredServices applied to the manifest, where exposed services have been checked at build time
+     *
+     * @return declared services or null if the component is not described by a manifest
+     */
+    private List<Class<?>> getManifestServices(Class<?> component, boolean isWaterService) {
+        ComponentManifestEntry manifestEntry = (componentManifest != null) ? componentManifest.getEntry(component.getName()) : null;
+        if (manifestEntry == null)
+            return null;
+        List<String> serviceNames = manifestEntry.getServices().isEmpty() ? manifestEntry.getInterfaces() : manifestEntry.getServices();
+        List<Class<?>> services = new ArrayList<>();
+        try {
+            for (String serviceName : serviceNames)
+                services.add(Class.forName(serviceName, false, component.getClassLoader()));
+        } catch (ClassNotFoundException e) {
+            log.warn("Cannot load service {} of component {} from manifest", e.getMessage(), component.getName());
+            return null;
+        }
+        if (isWaterService && services.stream().noneMatch(Service.class::isAssignableFrom))
+            services.add(Service.class);
+        return services;
+    }
+
+    /**
+     * Creates the instance for specific service, through the generated factory when available
      *
      * @param componentClass
      * @return
      */
     private Object getServiceInstance(Class<?> componentClass) throws InvocationTargetException, InstantiationException, IllegalAccessException {
+        Object component = (componentManifest != null) ? componentManifest.newComponent(componentClass.getName()) : null;
+        if (component != null)
+            return component;
         Optional<Constructor<?>> defaultConstructor = Arrays.stream(componentClass.getConstructors()).filter(constructor -> constructor.getParameterCount() == 0).findAny();
         if (defaultConstructor.isEmpty()) {
             throw new UnsupportedOperationException("@FrameworkComponent " + componentClass.getName() + " must have default constructor!");
@@ -239,47 +394,110 @@ public abstract class ApplicationInitializer<T, K> extends AbstractInitializer<T
      */
     private <S> void injectFields(S component,boolean injectAtStartup) {
         log.debug("Injecting  Components into fields");
-        final ComponentRegistry componentRegistry = getComponentRegistry();
         Arrays.stream(component.getClass().getDeclaredFields()).filter(field -> Arrays.stream(field.getDeclaredAnnotations())
                 //filtering all Inject annotation that should be injected at startup, this is the moment
-                .anyMatch(annotation -> annotation.annotationType().equals(Inject.class) && (!injectAtStartup || ((Inject) annotation).injectOnceAtStartup()))).forEach(annotatedField -> {
-            Object service = null;
-            //avoiding to find component registry just injecting if some components require it
-            if (annotatedField.getType().equals(ComponentRegistry.class))
-                service = componentRegistry;
-            else
-                service = componentRegistry.findComponent(annotatedField.getType(), null);
+                .anyMatch(annotation -> annotation.annotationType().equals(Inject.class) && (!injectAtStartup || ((Inject) annotation).injectOnceAtStartup()))).forEach(annotatedField -> injectField(component, annotatedField));
+    }
 
+    /**
+     * Injects the startup fields listed by the manifest, components not described by it are scanned through reflection
+     *
+     * @param component     component
+     * @param manifestEntry manifest entry of the component, can be null
+     */
+    private <S> void injectStartupFields(S component, ComponentManifestEntry manifestEntry) {
+        if (manifestEntry == null) {
+            injectFields(component, true);
+            return;
+        }
+        for (String fieldName : manifestEntry.getStartupInjectedFields()) {
             try {
-                log.debug("Setting field {} on {}", annotatedField.getName(), component.getClass().getName());
-                Method m = WaterComponentsInjector.findSetterMethod(component, annotatedField);
-                m.invoke(component, service);
-            } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-                log.error(e.getMessage(), e);
+                injectField(component, component.getClass().getDeclaredField(fieldName));
+            } catch (NoSuchFieldException e) {
+                log.warn("Field {} listed by the components manifest not found on {}", fieldName, component.getClass().getName());
             }
-        });
+        }
+    }
+
+    private <S> void injectField(S component, Field annotatedField) {
+        final ComponentRegistry componentRegistry = getComponentRegistry();
+        Object service = null;
+        //avoiding to find component registry just injecting if some components require it
+        if (annotatedField.getType().equals(ComponentRegistry.class))
+            service = componentRegistry;
+        else
+            service = componentRegistry.findComponent(annotatedField.getType(), null);
+
+        try {
+            log.debug("Setting field {} on {}", annotatedField.getName(), component.getClass().getName());
+            Method m = WaterComponentsInjector.findSetterMethod(component, annotatedField);
+            m.invoke(component, service);
+        } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
+            log.error(e.getMessage(), e);
+        }
     }
 
     private void registerComponent(List<Class<?>> componentClasses, Object service, FrameworkComponent frameworkComponentAnnotation, boolean isPrimary, ComponentRegistry registry, Dictionary<String, Object> dictionary) {
-        componentClasses.forEach(componentClass -> {
+        componentClasses.forEach(componentClass -> registerComponent(componentClass, frameworkComponentAnnotation, isPrimary, dictionary, componentConfiguration -> {
+            ComponentRegistration<Object, Object> registration = registry.registerComponent(componentClass, service, componentConfiguration);
+            //registrations without component are not tracked
+            return (registration.getComponent() != null) ? registration : null;
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void registerComponent(Class<?> componentClass, FrameworkComponent frameworkComponentAnnotation, boolean isPrimary, Dictionary<String, Object> dictionary, Function<ComponentConfiguration, ComponentRegistration<?, ?>> registrationFunction) {
+        try {
+            //framework component is registered with the given priority
+            ComponentConfiguration componentConfiguration = ComponentConfigurationFactory.createNewComponentPropertyFactory()
+                    .withPriority(frameworkComponentAnnotation.priority())
+                    //set primary the component with the highest priority
+                    .setPrimary(isPrimary)
+                    .fromStringDictionary(dictionary)
+                    .build();
+            ComponentRegistration<T, K> registration = (ComponentRegistration<T, K>) registrationFunction.apply(componentConfiguration);
+            if (registration != null) {
+                registeredServices.add(registration);
+                log.debug("Component: {} succesfully registered!", componentClass.getName());
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a lazy component once, shared by all the registrations of its services.
+     * No lock is held while the component is created, so lazy components looking each other up from different threads do not deadlock.
+     * Lookups made while the component is being activated, by itself or by components it is waiting for, receive the injected instance.
+     * Lookups made before its startup fields are injected are circular and fail.
+     */
+    private class LazyComponentFactory implements Supplier<Object> {
+        private final Class<?> componentClass;
+        private final LazyComponentHolder<Object> holder = new LazyComponentHolder<>();
+
+        private LazyComponentFactory(Class<?> componentClass) {
+            this.componentClass = componentClass;
+        }
+
+        @Override
+        public Object get() {
+            return holder.get(this::create, () -> {
+                throw new WaterRuntimeException("Circular creation of lazy component " + componentClass.getName());
+            });
+        }
+
+        private Object create(Consumer<Object> injectedInstance) {
+            Object created;
             try {
-                //framework component is registered with the given priority
-                ComponentConfiguration componentConfiguration = ComponentConfigurationFactory.createNewComponentPropertyFactory()
-                        .withPriority(frameworkComponentAnnotation.priority())
-                        //set primary the component with the highest priority
-                        .setPrimary(isPrimary)
-                        .fromStringDictionary(dictionary)
-                        .build();
-                @SuppressWarnings("unchecked")
-                ComponentRegistration<T, K> registration = (ComponentRegistration<T, K>) registry.registerComponent(componentClass, service, componentConfiguration);
-                if (registration.getComponent() != null) {
-                    registeredServices.add(registration);
-                    log.debug("Component: {} succesfully registered!", componentClass.getName());
-                    log.debug("Searching for init method...");
-                }
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
+                created = getServiceInstance(componentClass);
+            } catch (InstantiationException | InvocationTargetException | IllegalAccessException e) {
+                throw new WaterRuntimeException("Cannot instantiate new class of " + componentClass.getName() + ": " + e.getMessage());
             }
-        });
+            injectStartupFields(created, (componentManifest != null) ? componentManifest.getEntry(componentClass.getName()) : null);
+            injectedInstance.accept(created);
+            log.debug("Activating lazy component {}", componentClass.getName());
+            getComponentRegistry().invokeLifecycleMethod(OnActivate.class, componentClass, created);
+            return created;
+        }
     }
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.bundle;
+
+import it.water.core.api.interceptors.OnActivate;
+import it.water.core.interceptors.annotations.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * @Author Aristide Cittadino
+ * Dependency graph of the components which must be activated.
+ * A component depends on the other components assignable to the types of its @Inject fields and of its @OnActivate parameters.
+ * Every component is activated after all its dependencies have been activated, otherwise components keep their discovery order.
+ * Independent components are activated in parallel when an executor is given.
+ * Components looked up through the registry inside @OnActivate methods are not dependencies, they are ordered only by discovery order.
+ * Components on dependency cycles, and the ones depending on them, are activated one by one after all the others.
+ */
+final class ComponentActivationGraph {
+    private static final Logger log = LoggerFactory.getLogger(ComponentActivationGraph.class);
+    private final List<Node> nodes = new ArrayList<>();
+
+    ComponentActivationGraph(Map<Class<?>, List<Object>> components) {
+        components.forEach((componentClass, instances) -> nodes.add(new Node(nodes.size(), componentClass, instances)));
+        for (Node node : nodes) {
+            for (Class<?> dependencyType : dependencyTypes(node.componentClass)) {
+                for (Node other : nodes) {
+                    if (other != node && dependencyType.isAssignableFrom(other.componentClass) && node.dependencies.add(other))
+                        other.dependents.add(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return types of the @Inject fields, including inherited ones, and of the @OnActivate parameters
+     */
+    static Set<Class<?>> dependencyTypes(Class<?> componentClass) {
+        Set<Class<?>> dependencyTypes = new LinkedHashSet<>();
+        for (Class<?> currentClass = componentClass; currentClass != null && currentClass != Object.class; currentClass = currentClass.getSuperclass()) {
+            for (Field field : currentClass.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Inject.class))
+                    dependencyTypes.add(field.getType());
+            }
+        }
+        for (Method method : componentClass.getMethods()) {
+            if (method.isAnnotationPresent(OnActivate.class))
+                dependencyTypes.addAll(Arrays.asList(method.getParameterTypes()));
+        }
+        //generic dependencies would make a component depend on all the others
+        dependencyTypes.remove(Object.class);
+        return dependencyTypes;
+    }
+
+    /**
+     * Activates all the components.
+     *
+     * @param activation  invoked for each component instance with its component class
+     * @param executor    executor running activations, if null components are activated on the calling thread
+     * @param parallelism number of threads of the executor, reported only
+     * @return the activation report
+     */
+    ComponentActivationReport activate(BiConsumer<Class<?>, Object> activation, Executor executor, int parallelism) {
+        long start = System.nanoTime();
+        List<Node> activationOrder = topologicalOrder();
+        if (executor == null) {
+            activationOrder.forEach(node -> node.activate(activation));
+        } else {
+            Map<Node, CompletableFuture<Void>> activations = new HashMap<>();
+            for (Node node : activationOrder) {
+                CompletableFuture<?>[] dependencies = node.dependencies.stream().map(activations::get).toArray(CompletableFuture[]::new);
+                activations.put(node, CompletableFuture.allOf(dependencies).thenRunAsync(() -> node.activate(activation), executor));
+            }
+            CompletableFuture.allOf(activations.values().toArray(new CompletableFuture[0])).join();
+        }
+        Set<Node> blocked = new LinkedHashSet<>(nodes);
+        activationOrder.forEach(blocked::remove);
+        List<List<Class<?>>> cycles = findCycles(blocked);
+        cycles.forEach(cycle -> log.warn("Dependency cycle between components {}, they will be activated one by one", cycle));
+        blocked.forEach(node -> node.activate(activation));
+        return new ComponentActivationReport(nodes.size(), parallelism, System.nanoTime() - start, criticalPath(activationOrder, blocked), cycles);
+    }
+
+    /**
+     * @return nodes not on or depending on cycles, each one after its dependencies and otherwise in discovery order
+     */
+    private List<Node> topologicalOrder() {
+        Map<Node, Integer> pendingDependencies = new HashMap<>();
+        Queue<Node> ready = new PriorityQueue<>(Comparator.comparingInt(node -> node.index));
+        for (Node node : nodes) {
+            pendingDependencies.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty())
+                ready.add(node);
+        }
+        List<Node> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            order.add(node);
+            for (Node dependent : node.dependents) {
+                if (pendingDependencies.merge(dependent, -1, Integer::sum) == 0)
+                    ready.add(dependent);
+            }
+        }
+        return order;
+    }
+
+    private List<List<Class<?>>> findCycles(Set<Node> blocked) {
+        List<List<Class<?>>> cycles = new ArrayList<>();
+        Set<Node> visited = new LinkedHashSet<>();
+        for (Node node : blocked) {
+            if (!visited.contains(node))
+                findCycles(node, new ArrayList<>(), visited, blocked, cycles);
+        }
+        return cycles;
+    }
+
+    private void findCycles(Node node, List<Node> path, Set<Node> visited, Set<Node> blocked, List<List<Class<?>>> cycles) {
+        visited.add(node);
+        path.add(node);
+        for (Node dependency : node.dependencies) {
+            if (!blocked.contains(dependency))
+                continue;
+            int cycleStart = path.indexOf(dependency);
+            if (cycleStart >= 0) {
+                List<Class<?>> cycle = new ArrayList<>();
+                path.subList(cycleStart, path.size()).forEach(cycleNode -> cycle.add(cycleNode.componentClass));
+                cycle.add(dependency.componentClass);
+                cycles.add(cycle);
+            } else if (!visited.contains(dependency)) {
+                findCycles(dependency, path, visited, blocked, cycles);
+            }
+        }
+        path.remove(path.size() - 1);
+    }
+
+    /**
+     * Longest chain of dependent activations, blocked nodes run one after the other at the end.
+     */
+    private List<ComponentActivationReport.Activation> criticalPath(List<Node> activationOrder, Set<Node> blocked) {
+        Node last = null;
+        for (Node node : activationOrder) {
+            node.pathNanos = node.durationNanos;
+            for (Node dependency : node.dependencies) {
+                if (dependency.pathNanos + node.durationNanos > node.pathNanos) {
+                    node.pathNanos = dependency.pathNanos + node.durationNanos;
+                    node.predecessor = dependency;
+                }
+            }
+            if (last == null || node.pathNanos > last.pathNanos)
+                last = node;
+        }
+        for (Node node : blocked) {
+            node.predecessor = last;
+            node.pathNanos = ((last != null) ? last.pathNanos : 0) + node.durationNanos;
+            last = node;
+        }
+        List<ComponentActivationReport.Activation> path = new ArrayList<>();
+        for (Node node = last; node != null; node = node.predecessor)
+            path.add(new ComponentActivationReport.Activation(node.componentClass, node.durationNanos));
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static final class Node {
+        //discovery order
+        private final int index;
+        private final Class<?> componentClass;
+        private final List<Object> instances;
+        private final Set<Node> dependencies = new LinkedHashSet<>();
+        private final List<Node> dependents = new ArrayList<>();
+        private long durationNanos;
+        private long pathNanos;
+        private Node predecessor;
+
+        private Node(int index, Class<?> componentClass, List<Object> instances) {
+            this.index = index;
+            this.componentClass = componentClass;
+            this.instances = instances;
+        }
+
+        private void activate(BiConsumer<Class<?>, Object> activation) {
+            long start = System.nanoTime();
+            instances.forEach(instance -> activation.accept(componentClass, instance));
+            durationNanos = System.nanoTime() - start;
+        }
+    }
+}
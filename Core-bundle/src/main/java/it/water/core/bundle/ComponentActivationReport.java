@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.bundle;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author Aristide Cittadino
+ * Summary of the activation of framework components.
+ * The critical path is the chain of dependent activations which determined the total activation time,
+ * speeding up any other activation does not shorten startup.
+ */
+@Getter
+public class ComponentActivationReport {
+    private final int activatedComponents;
+    private final int parallelism;
+    private final long elapsedNanos;
+    private final List<Activation> criticalPath;
+    //each cycle lists the component classes in dependency order, starting and ending with the same class
+    private final List<List<Class<?>>> cycles;
+
+    public ComponentActivationReport(int activatedComponents, int parallelism, long elapsedNanos, List<Activation> criticalPath, List<List<Class<?>>> cycles) {
+        this.activatedComponents = activatedComponents;
+        this.parallelism = parallelism;
+        this.elapsedNanos = elapsedNanos;
+        this.criticalPath = Collections.unmodifiableList(criticalPath);
+        this.cycles = Collections.unmodifiableList(cycles);
+    }
+
+    /**
+     * @return sum of the activation times of the components on the critical path
+     */
+    public long getCriticalPathNanos() {
+        return criticalPath.stream().mapToLong(Activation::getDurationNanos).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Activated ").append(activatedComponents).append(" components in ").append(toMillis(elapsedNanos))
+                .append(" ms with parallelism ").append(parallelism).append(", critical path ").append(toMillis(getCriticalPathNanos())).append(" ms");
+        criticalPath.forEach(activation -> sb.append(System.lineSeparator()).append("  ").append(activation.getComponentClass().getName())
+                .append(" ").append(toMillis(activation.getDurationNanos())).append(" ms"));
+        cycles.forEach(cycle -> sb.append(System.lineSeparator()).append("  dependency cycle: ").append(cycle.stream().map(Class::getSimpleName).reduce((a, b) -> a + " -> " + b).orElse("")));
+        return sb.toString();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Activation of a single component class
+     */
+    public static class Activation {
+        private final Class<?> componentClass;
+        private final long durationNanos;
+
+        public Activation(Class<?> componentClass, long durationNanos) {
+            this.componentClass = componentClass;
+            this.durationNanos = durationNanos;
+        }
+
+        public Class<?> getComponentClass() {
+            return componentClass;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+    }
+}
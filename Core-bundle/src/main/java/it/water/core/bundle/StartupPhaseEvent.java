@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.bundle;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @Author Aristide Cittadino
+ * Java Flight Recorder event emitted by StartupProfiler for each measured startup phase.
+ */
+@Name("it.water.core.StartupPhase")
+@Label("Water Startup Phase")
+@Category({"Water", "Startup"})
+@Description("Startup phase of a water framework initializer")
+class StartupPhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+    @Label("Subject")
+    String subject;
+    @Label("Allocated Bytes")
+    @DataAmount
+    long allocatedBytes;
+
+    static Object begin(String phase, String subject) {
+        StartupPhaseEvent event = new StartupPhaseEvent();
+        event.phase = phase;
+        event.subject = subject;
+        event.begin();
+        return event;
+    }
+
+    static void commit(Object startedEvent, long allocatedBytes) {
+        StartupPhaseEvent event = (StartupPhaseEvent) startedEvent;
+        event.allocatedBytes = allocatedBytes;
+        event.commit();
+    }
+}
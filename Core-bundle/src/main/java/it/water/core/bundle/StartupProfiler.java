@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.bundle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * @Author Aristide Cittadino
+ * Records wall clock time and allocated bytes of the startup phases of an initializer.
+ * Allocations are measured on the thread running each phase, when the JVM supports per thread allocation counters.
+ * Phases can be nested, for example the class index scan made while registering resource permissions.
+ * When the PROP_JFR_EVENTS system property is true every measurement is also emitted as a Java Flight Recorder event.
+ * Measurements can be recorded concurrently.
+ */
+public class StartupProfiler {
+    /**
+     * System property which enables Java Flight Recorder events for startup phases
+     */
+    public static final String PROP_JFR_EVENTS = "water.core.startup.profiler.jfr";
+    private static final Logger log = LoggerFactory.getLogger(StartupProfiler.class);
+    private static final boolean allocationsMeasured = isAllocationCounterAvailable();
+
+    public enum Phase {
+        CLASS_INDEX_SCAN,
+        COMPONENT_INSTANTIATION,
+        FIELD_INJECTION,
+        COMPONENT_REGISTRATION,
+        RESOURCE_PERMISSIONS,
+        COMPONENT_ACTIVATION,
+        REST_APIS,
+        CLUSTER_SETUP
+    }
+
+    private final long origin = System.nanoTime();
+    private final Queue<StartupReport.Measurement> measurements = new ConcurrentLinkedQueue<>();
+    private final boolean jfrEvents = Boolean.getBoolean(PROP_JFR_EVENTS);
+
+    /**
+     * @param phase startup phase
+     * @return running measurement of the whole phase, to be closed when the phase ends
+     */
+    public Timer start(Phase phase) {
+        return start(phase, null);
+    }
+
+    /**
+     * @param phase   startup phase
+     * @param subject what is being processed, for example the component class name
+     * @return running measurement, to be closed when the phase ends
+     */
+    public Timer start(Phase phase, String subject) {
+        return new Timer(phase, subject);
+    }
+
+    /**
+     * @return report of the measurements recorded so far
+     */
+    public StartupReport getReport() {
+        return new StartupReport(new ArrayList<>(measurements));
+    }
+
+    private static boolean isAllocationCounterAvailable() {
+        try {
+            return AllocationCounter.counter != null;
+        } catch (LinkageError e) {
+            //runtimes not exposing com.sun.management
+            log.debug("Thread allocation counters not available: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return allocationsMeasured ? AllocationCounter.counter.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Running measurement, it must be closed on the thread which started it
+     */
+    public final class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final String subject;
+        private final long start;
+        private final long startAllocatedBytes;
+        //typed as object so the event class is loaded only when events are enabled
+        private final Object jfrEvent;
+
+        private Timer(Phase phase, String subject) {
+            this.phase = phase;
+            this.subject = subject;
+            this.jfrEvent = jfrEvents ? StartupPhaseEvent.begin(phase.name(), subject) : null;
+            this.startAllocatedBytes = allocatedBytes();
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long end = System.nanoTime();
+            long endAllocatedBytes = allocatedBytes();
+            long allocated = (startAllocatedBytes >= 0 && endAllocatedBytes >= 0) ? endAllocatedBytes - startAllocatedBytes : -1;
+            measurements.add(new StartupReport.Measurement(phase, subject, start - origin, end - start, allocated, Thread.currentThread().getName()));
+            if (jfrEvent != null)
+                StartupPhaseEvent.commit(jfrEvent, allocated);
+        }
+    }
+
+    private static final class AllocationCounter {
+        private static final com.sun.management.ThreadMXBean counter = findCounter();
+
+        private static com.sun.management.ThreadMXBean findCounter() {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (allocationCounter.isThreadAllocatedMemorySupported() && allocationCounter.isThreadAllocatedMemoryEnabled())
+                    return allocationCounter;
+            }
+            return null;
+        }
+    }
+}
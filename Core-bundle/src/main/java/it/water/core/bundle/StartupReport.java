@@ -0,0 +1,199 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.bundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @Author Aristide Cittadino
+ * Measurements recorded by StartupProfiler, as a timeline and summarized per phase.
+ */
+public class StartupReport {
+    private static final int DEFAULT_SLOWEST_MEASUREMENTS = 10;
+    private final List<Measurement> timeline;
+
+    StartupReport(List<Measurement> measurements) {
+        List<Measurement> sorted = new ArrayList<>(measurements);
+        sorted.sort(Comparator.comparingLong(Measurement::getStartOffsetNanos));
+        this.timeline = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @return measurements ordered by start time
+     */
+    public List<Measurement> getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Phase wall time is the one of the whole phase measurement if recorded, otherwise the sum of its measurements.
+     * Phase allocations are the sum of the per subject measurements if recorded, since they are measured on the threads
+     * running them, otherwise the allocations of the whole phase.
+     *
+     * @return summary of each measured phase, in phase order
+     */
+    public List<PhaseSummary> getPhases() {
+        Map<StartupProfiler.Phase, List<Measurement>> byPhase = timeline.stream().collect(Collectors.groupingBy(Measurement::getPhase, () -> new EnumMap<>(StartupProfiler.Phase.class), Collectors.toList()));
+        List<PhaseSummary> phases = new ArrayList<>();
+        byPhase.forEach((phase, measurements) -> {
+            List<Measurement> whole = measurements.stream().filter(measurement -> measurement.getSubject() == null).collect(Collectors.toList());
+            List<Measurement> subjects = measurements.stream().filter(measurement -> measurement.getSubject() != null).collect(Collectors.toList());
+            long wallNanos = (whole.isEmpty() ? subjects : whole).stream().mapToLong(Measurement::getWallNanos).sum();
+            long allocatedBytes = sumAllocatedBytes(subjects.isEmpty() ? whole : subjects);
+            phases.add(new PhaseSummary(phase, subjects.size(), wallNanos, allocatedBytes));
+        });
+        return phases;
+    }
+
+    /**
+     * @param maxMeasurements number of measurements
+     * @return the slowest measurements of single subjects
+     */
+    public List<Measurement> getSlowest(int maxMeasurements) {
+        return timeline.stream().filter(measurement -> measurement.getSubject() != null)
+                .sorted(Comparator.comparingLong(Measurement::getWallNanos).reversed()).limit(maxMeasurements).collect(Collectors.toList());
+    }
+
+    private static long sumAllocatedBytes(List<Measurement> measurements) {
+        if (measurements.stream().anyMatch(measurement -> measurement.getAllocatedBytes() < 0))
+            return -1;
+        return measurements.stream().mapToLong(Measurement::getAllocatedBytes).sum();
+    }
+
+    /**
+     * @param slowestMeasurements number of slowest single measurements to list after the phases
+     * @return the report formatted as a table
+     */
+    public String toTable(int slowestMeasurements) {
+        StringBuilder sb = new StringBuilder();
+        String newLine = System.lineSeparator();
+        sb.append(String.format(Locale.ROOT, "%-24s %8s %12s %14s", "PHASE", "COUNT", "WALL (ms)", "ALLOC (KB)"));
+        getPhases().forEach(phase -> sb.append(newLine).append(String.format(Locale.ROOT, "%-24s %8d %12s %14s", phase.getPhase(), phase.getCount(), toMillis(phase.getWallNanos()), toKilobytes(phase.getAllocatedBytes()))));
+        List<Measurement> slowest = getSlowest(slowestMeasurements);
+        if (!slowest.isEmpty()) {
+            sb.append(newLine).append(String.format(Locale.ROOT, "%-24s %12s %12s %14s  %s", "SLOWEST", "START (ms)", "WALL (ms)", "ALLOC (KB)", "SUBJECT"));
+            slowest.forEach(measurement -> sb.append(newLine).append(String.format(Locale.ROOT, "%-24s %12s %12s %14s  %s", measurement.getPhase(), toMillis(measurement.getStartOffsetNanos()), toMillis(measurement.getWallNanos()), toKilobytes(measurement.getAllocatedBytes()), measurement.getSubject())));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toTable(DEFAULT_SLOWEST_MEASUREMENTS);
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static String toKilobytes(long bytes) {
+        return (bytes >= 0) ? Long.toString(bytes / 1024) : "n/a";
+    }
+
+    /**
+     * Single measurement, allocated bytes are -1 when allocations cannot be measured
+     */
+    public static class Measurement {
+        private final StartupProfiler.Phase phase;
+        private final String subject;
+        private final long startOffsetNanos;
+        private final long wallNanos;
+        private final long allocatedBytes;
+        private final String threadName;
+
+        public Measurement(StartupProfiler.Phase phase, String subject, long startOffsetNanos, long wallNanos, long allocatedBytes, String threadName) {
+            this.phase = phase;
+            this.subject = subject;
+            this.startOffsetNanos = startOffsetNanos;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.threadName = threadName;
+        }
+
+        public StartupProfiler.Phase getPhase() {
+            return phase;
+        }
+
+        /**
+         * @return what has been processed, null for whole phase measurements
+         */
+        public String getSubject() {
+            return subject;
+        }
+
+        /**
+         * @return start time relative to the creation of the profiler
+         */
+        public long getStartOffsetNanos() {
+            return startOffsetNanos;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+    }
+
+    /**
+     * Totals of a phase, count is the number of single subject measurements
+     */
+    public static class PhaseSummary {
+        private final StartupProfiler.Phase phase;
+        private final int count;
+        private final long wallNanos;
+        private final long allocatedBytes;
+
+        public PhaseSummary(StartupProfiler.Phase phase, int count, long wallNanos, long allocatedBytes) {
+            this.phase = phase;
+            this.count = count;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public StartupProfiler.Phase getPhase() {
+            return phase;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
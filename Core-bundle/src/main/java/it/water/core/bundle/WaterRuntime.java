@@ -25,7 +25,8 @@ import lombok.Setter;
 
 /**
  * @Author Aristide Cittadino.
- * Component which exposes global information such as : Security Context and application properties
+ * Component which exposes global information such as : Security Context and application properties.
+ * The security context is bound to the current thread, use SecurityContextPropagation to carry it into tasks executed by other threads.
  */
 @FrameworkComponent
 public class WaterRuntime implements Runtime {
@@ -43,7 +44,9 @@ public class WaterRuntime implements Runtime {
     @Override
     public void fillSecurityContext(SecurityContext securityContext) {
         currentThreadSecurityContext.remove();
-        currentThreadSecurityContext.set(securityContext);
+        //removing instead of storing null, so threads which leave a security context do not keep the thread local entry
+        if (securityContext != null)
+            currentThreadSecurityContext.set(securityContext);
     }
 
     @Override
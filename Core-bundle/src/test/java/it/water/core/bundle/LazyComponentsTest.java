@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.water.core.bundle;
+
+import it.water.core.api.interceptors.OnActivate;
+import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.interceptors.annotations.FrameworkComponent;
+import it.water.core.interceptors.annotations.Inject;
+import it.water.core.registry.InMemoryComponentRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Testing lazy components created by the application initializer on first lookup
+ */
+class LazyComponentsTest {
+
+    @Test
+    void lazyComponentIsCreatedOnFirstLookup() {
+        LazyServiceImpl.created.set(0);
+        ComponentRegistry registry = new InMemoryComponentRegistry();
+        new LazyTestInitializer(registry).start();
+        Assertions.assertEquals(0, LazyServiceImpl.created.get());
+        LazyService service = registry.findComponent(LazyService.class, null);
+        Assertions.assertEquals(1, LazyServiceImpl.created.get());
+        LazyServiceImpl created = (LazyServiceImpl) service;
+        //startup injection and activation run before the component is returned
+        Assertions.assertSame(registry, created.getComponentRegistry());
+        Assertions.assertSame(registry.findComponent(LazyDependency.class, null), created.getDependency());
+        Assertions.assertEquals(1, created.getActivations());
+        //lookups made during activation receive the instance being activated
+        Assertions.assertSame(service, created.getActivationLookup());
+        Assertions.assertSame(service, registry.findComponent(LazyService.class, null));
+        Assertions.assertEquals(1, LazyServiceImpl.created.get());
+        Assertions.assertEquals(1, created.getActivations());
+    }
+
+    private static class LazyTestInitializer extends RuntimeInitializer<Object, Object> {
+        private final ComponentRegistry registry;
+
+        private LazyTestInitializer(ComponentRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        protected Iterable<Class<?>> getAnnotatedClasses(Class<? extends Annotation> annotation) {
+            if (annotation.isAssignableFrom(FrameworkComponent.class))
+                return List.of(LazyServiceImpl.class, LazyDependencyImpl.class);
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected ComponentRegistry getComponentRegistry() {
+            return registry;
+        }
+
+        private void start() {
+            this.initializeFrameworkComponents();
+        }
+    }
+
+    public interface LazyService {
+    }
+
+    public interface LazyDependency {
+    }
+
+    @FrameworkComponent(lazy = true, services = LazyDependency.class)
+    public static class LazyDependencyImpl implements LazyDependency {
+    }
+
+    @FrameworkComponent(lazy = true, services = LazyService.class)
+    public static class LazyServiceImpl implements LazyService {
+        private static final AtomicInteger created = new AtomicInteger();
+
+        @Inject(injectOnceAtStartup = true)
+        private ComponentRegistry componentRegistry;
+        private LazyDependency dependency;
+        private LazyService activationLookup;
+        private int activations;
+
+        public LazyServiceImpl() {
+            created.incrementAndGet();
+        }
+
+        @OnActivate
+        public void onActivate(LazyDependency dependency) {
+            this.dependency = dependency;
+            this.activationLookup = componentRegistry.findComponent(LazyService.class, null);
+            this.activations++;
+        }
+
+        public ComponentRegistry getComponentRegistry() {
+            return componentRegistry;
+        }
+
+        public void setComponentRegistry(ComponentRegistry componentRegistry) {
+            this.componentRegistry = componentRegistry;
+        }
+
+        public LazyDependency getDependency() {
+            return dependency;
+        }
+
+        public LazyService getActivationLookup() {
+            return activationLookup;
+        }
+
+        public int getActivations() {
+            return activations;
+        }
+    }
+}
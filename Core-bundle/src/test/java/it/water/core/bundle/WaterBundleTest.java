@@ -16,6 +16,8 @@
 package it.water.core.bundle;
 
 import it.water.core.api.bundle.Runtime;
+import it.water.core.api.bundle.SecurityContextPropagation;
+import it.water.core.api.interceptors.OnActivate;
 import it.water.core.api.permission.SecurityContext;
 import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.registry.filter.ComponentFilter;
@@ -23,6 +25,7 @@ import it.water.core.api.service.cluster.ClusterCoordinatorClient;
 import it.water.core.api.service.cluster.ClusterNodeInfo;
 import it.water.core.api.service.rest.RestApiManager;
 import it.water.core.api.service.rest.RestApiRegistry;
+import it.water.core.interceptors.annotations.Inject;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -32,6 +35,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @ExtendWith(MockitoExtension.class)
 class BundleTest {
@@ -71,6 +76,10 @@ class BundleTest {
             }
         });
 
+        //optional lookups delegate to the stubbed findComponent and findComponents
+        Mockito.lenient().when(componentRegistry.findComponentIfPresent(Mockito.any(), Mockito.any())).thenCallRealMethod();
+        Mockito.lenient().when(componentRegistry.findComponentsOrEmpty(Mockito.any(), Mockito.any())).thenCallRealMethod();
+
         Mockito.lenient().when(componentRegistry.registerComponent(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(new Answer<Object>() {
             @Override
             public Object answer(InvocationOnMock invocation) throws Throwable {
@@ -129,7 +138,120 @@ class BundleTest {
 
     @Test
     @Order(3)
+    void securityContextPropagation() throws Exception {
+        WaterRuntime localRuntime = new WaterRuntime();
+        SecurityContext sampleSecContext = Mockito.mock(SecurityContext.class);
+        localRuntime.fillSecurityContext(null);
+        ExecutorService executorService = SecurityContextPropagation.newThreadPerTaskExecutor(localRuntime);
+        try {
+            localRuntime.runWithSecurityContext(sampleSecContext, () -> {
+                //context captured on submit and bound only while the task runs
+                Assertions.assertSame(sampleSecContext, executorService.submit(localRuntime::getSecurityContext).get());
+                Assertions.assertSame(sampleSecContext, SecurityContextPropagation.supplyAsync(localRuntime, localRuntime::getSecurityContext, executorService).get());
+                return null;
+            });
+            Assertions.assertNull(localRuntime.getSecurityContext());
+            Assertions.assertNull(executorService.submit(localRuntime::getSecurityContext).get());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    @Order(4)
     void shutDownlClusterMode(){
         Assertions.assertDoesNotThrow(() -> this.bundleTestInitializer.stop());
     }
+
+    @Test
+    @Order(5)
+    void componentsActivationFollowsDependencies() {
+        Map<Class<?>, List<Object>> toActivate = new LinkedHashMap<>();
+        toActivate.put(DependentComponent.class, List.of(new DependentComponent()));
+        toActivate.put(IndependentComponent.class, List.of(new IndependentComponent()));
+        toActivate.put(FirstCyclicComponent.class, List.of(new FirstCyclicComponent()));
+        toActivate.put(SecondCyclicComponent.class, List.of(new SecondCyclicComponent()));
+        List<Class<?>> activated = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            ComponentActivationReport report = new ComponentActivationGraph(toActivate).activate((componentClass, component) -> activated.add(componentClass), executorService, 2);
+            Assertions.assertEquals(4, activated.size());
+            Assertions.assertTrue(activated.indexOf(IndependentComponent.class) < activated.indexOf(DependentComponent.class));
+            Assertions.assertEquals(4, report.getActivatedComponents());
+            Assertions.assertEquals(1, report.getCycles().size());
+            Assertions.assertEquals(List.of(FirstCyclicComponent.class, SecondCyclicComponent.class, FirstCyclicComponent.class), report.getCycles().get(0));
+            Assertions.assertEquals(IndependentComponent.class, report.getCriticalPath().get(0).getComponentClass());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    @Order(6)
+    void sequentialActivationKeepsDiscoveryOrder() {
+        //parallel activation is opt-in
+        Assertions.assertEquals(1, bundleTestInitializer.getActivationParallelism());
+        Map<Class<?>, List<Object>> toActivate = new LinkedHashMap<>();
+        toActivate.put(LookedUpComponent.class, List.of(new LookedUpComponent()));
+        toActivate.put(DependentComponent.class, List.of(new DependentComponent()));
+        toActivate.put(IndependentComponent.class, List.of(new IndependentComponent()));
+        toActivate.put(LookingUpComponent.class, List.of(new LookingUpComponent()));
+        List<Class<?>> activated = new ArrayList<>();
+        new ComponentActivationGraph(toActivate).activate((componentClass, component) -> activated.add(componentClass), null, 1);
+        //components looked up through the registry are not dependencies, they are activated before the ones discovered after them
+        Assertions.assertEquals(List.of(LookedUpComponent.class, IndependentComponent.class, DependentComponent.class, LookingUpComponent.class), activated);
+    }
+
+    @Test
+    @Order(7)
+    void startupProfilerReportsPhases() {
+        StartupProfiler profiler = new StartupProfiler();
+        try (StartupProfiler.Timer timer = profiler.start(StartupProfiler.Phase.COMPONENT_ACTIVATION)) {
+            try (StartupProfiler.Timer componentTimer = profiler.start(StartupProfiler.Phase.COMPONENT_ACTIVATION, IndependentComponent.class.getName())) {
+                Assertions.assertNotNull(componentTimer);
+            }
+        }
+        try (StartupProfiler.Timer timer = profiler.start(StartupProfiler.Phase.COMPONENT_INSTANTIATION, DependentComponent.class.getName())) {
+            Assertions.assertNotNull(timer);
+        }
+        StartupReport report = profiler.getReport();
+        Assertions.assertEquals(3, report.getTimeline().size());
+        List<StartupReport.PhaseSummary> phases = report.getPhases();
+        Assertions.assertEquals(StartupProfiler.Phase.COMPONENT_INSTANTIATION, phases.get(0).getPhase());
+        Assertions.assertEquals(StartupProfiler.Phase.COMPONENT_ACTIVATION, phases.get(1).getPhase());
+        Assertions.assertEquals(1, phases.get(1).getCount());
+        //whole phase measurement includes the component one
+        Assertions.assertTrue(phases.get(1).getWallNanos() >= report.getSlowest(2).stream().filter(measurement -> measurement.getPhase() == StartupProfiler.Phase.COMPONENT_ACTIVATION).findAny().orElseThrow().getWallNanos());
+        Assertions.assertTrue(report.toTable(5).contains(DependentComponent.class.getName()));
+    }
+
+    public static class IndependentComponent {
+    }
+
+    public static class DependentComponent {
+        @OnActivate
+        public void activate(IndependentComponent independentComponent) {
+            //do nothing
+        }
+    }
+
+    public static class LookedUpComponent {
+    }
+
+    public static class LookingUpComponent {
+        @OnActivate
+        public void activate(ComponentRegistry componentRegistry) {
+            componentRegistry.findComponent(LookedUpComponent.class, null);
+        }
+    }
+
+    public static class FirstCyclicComponent {
+        @Inject
+        private SecondCyclicComponent secondCyclicComponent;
+    }
+
+    public static class SecondCyclicComponent {
+        @Inject
+        private FirstCyclicComponent firstCyclicComponent;
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors;
+
+import it.water.core.api.interceptors.MethodInterceptor;
+import it.water.core.api.interceptors.UsesInvocationContext;
+import it.water.core.api.registry.ComponentRegistry;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * @Author Aristide Cittadino
+ * Immutable set of interceptors resolved for a method against a specific registry generation.
+ * Interceptors, annotations and annotated fields are stored in parallel arrays in execution order.
+ * The chain also tells whether any of its annotations is marked with @UsesInvocationContext,
+ * invocations create the InvocationContext only in that case.
+ */
+public final class InterceptorChain {
+    static final InterceptorChain EMPTY = new InterceptorChain(null, ComponentRegistry.UNTRACKED_GENERATION, List.of(), List.of(), List.of(), List.of(), List.of(), List.of());
+
+    private final ComponentRegistry registry;
+    private final long generation;
+    final MethodInterceptor<?>[] beforeInterceptors;
+    final Annotation[] beforeAnnotations;
+    final List<Field>[] beforeFields;
+    final MethodInterceptor<?>[] afterInterceptors;
+    final Annotation[] afterAnnotations;
+    final List<Field>[] afterFields;
+    final boolean usesInvocationContext;
+
+    @SuppressWarnings("unchecked")
+    InterceptorChain(ComponentRegistry registry, long generation,
+                     List<MethodInterceptor<?>> before, List<Annotation> beforeAnnotations, List<List<Field>> beforeFields,
+                     List<MethodInterceptor<?>> after, List<Annotation> afterAnnotations, List<List<Field>> afterFields) {
+        this.registry = registry;
+        this.generation = generation;
+        this.beforeInterceptors = before.toArray(new MethodInterceptor[0]);
+        this.beforeAnnotations = beforeAnnotations.toArray(new Annotation[0]);
+        this.beforeFields = beforeFields.toArray(new List[0]);
+        this.afterInterceptors = after.toArray(new MethodInterceptor[0]);
+        this.afterAnnotations = afterAnnotations.toArray(new Annotation[0]);
+        this.afterFields = afterFields.toArray(new List[0]);
+        this.usesInvocationContext = usesInvocationContext(this.beforeAnnotations) || usesInvocationContext(this.afterAnnotations);
+    }
+
+    private static boolean usesInvocationContext(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation != null && annotation.annotationType().isAnnotationPresent(UsesInvocationContext.class))
+                return true;
+        }
+        return false;
+    }
+
+    boolean isResolvedFor(ComponentRegistry registry, long generation) {
+        return this.registry == registry && this.generation == generation && generation != ComponentRegistry.UNTRACKED_GENERATION;
+    }
+
+    public int countBeforeInterceptors() {
+        return beforeInterceptors.length;
+    }
+
+    public int countAfterInterceptors() {
+        return afterInterceptors.length;
+    }
+
+    public boolean usesInvocationContext() {
+        return usesInvocationContext;
+    }
+
+    public boolean isEmpty() {
+        return beforeInterceptors.length == 0 && afterInterceptors.length == 0;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors;
+
+import it.water.core.api.interceptors.AfterMethodInterceptor;
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.MethodInterceptor;
+import it.water.core.api.registry.ComponentRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+
+/**
+ * @Author Aristide Cittadino
+ * Index of registered interceptors by the annotation they handle.
+ * When more interceptors handle the same annotation only the first one returned by the component registry,
+ * which is the one with the highest priority, is executed. This way an interceptor can be overridden
+ * registering another one with a higher priority.
+ * The index is built once for each registry generation, so interceptors are searched inside the registry
+ * only after components have been registered or unregistered.
+ */
+final class InterceptorsIndex {
+    private static Logger log = LoggerFactory.getLogger(InterceptorsIndex.class);
+    private static final MethodInterceptor<?>[] NO_INTERCEPTORS = new MethodInterceptor<?>[0];
+
+    //last built index, registries which do not track generations build a new index every time
+    private static volatile InterceptorsIndex lastIndex;
+
+    private final ComponentRegistry registry;
+    private final long generation;
+    private final Map<Class<? extends Annotation>, MethodInterceptor<?>[]> beforeInterceptors;
+    private final Map<Class<? extends Annotation>, MethodInterceptor<?>[]> afterInterceptors;
+
+    private InterceptorsIndex(ComponentRegistry registry, long generation) {
+        this.registry = registry;
+        this.generation = generation;
+        this.beforeInterceptors = buildIndex(registry, BeforeMethodInterceptor.class);
+        this.afterInterceptors = buildIndex(registry, AfterMethodInterceptor.class);
+    }
+
+    /**
+     * @param registry component registry
+     * @return the index of the interceptors currently registered inside the registry
+     */
+    static InterceptorsIndex forRegistry(ComponentRegistry registry) {
+        long generation = registry.getGeneration();
+        InterceptorsIndex index = lastIndex;
+        if (index != null && index.registry == registry && index.generation == generation && generation != ComponentRegistry.UNTRACKED_GENERATION)
+            return index;
+        index = new InterceptorsIndex(registry, generation);
+        if (generation != ComponentRegistry.UNTRACKED_GENERATION)
+            lastIndex = index;
+        return index;
+    }
+
+    /**
+     * @param annotationType annotation type
+     * @return the before method interceptor handling the annotation, empty array if there is none
+     */
+    MethodInterceptor<?>[] getBeforeInterceptors(Class<? extends Annotation> annotationType) {
+        return beforeInterceptors.getOrDefault(annotationType, NO_INTERCEPTORS);
+    }
+
+    /**
+     * @param annotationType annotation type
+     * @return the after method interceptor handling the annotation, empty array if there is none
+     */
+    MethodInterceptor<?>[] getAfterInterceptors(Class<? extends Annotation> annotationType) {
+        return afterInterceptors.getOrDefault(annotationType, NO_INTERCEPTORS);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map<Class<? extends Annotation>, MethodInterceptor<?>[]> buildIndex(ComponentRegistry registry, Class<? extends MethodInterceptor> interceptorClass) {
+        Map<Class<? extends Annotation>, MethodInterceptor<?>[]> index = new HashMap<>();
+        //registry returns components ordered by priority, so the first interceptor found for an annotation wins
+        List<? extends MethodInterceptor> registeredInterceptors = registry.findComponentsOrEmpty(interceptorClass, null);
+        for (MethodInterceptor<?> interceptor : registeredInterceptors) {
+            if (interceptor != null && interceptor.getAnnotation() != null && interceptorClass.isAssignableFrom(interceptor.getClass()))
+                index.putIfAbsent(interceptor.getAnnotation(), new MethodInterceptor<?>[]{interceptor});
+        }
+        if (registeredInterceptors.isEmpty())
+            log.debug("No component found for: {}", interceptorClass);
+        return Collections.unmodifiableMap(index);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors;
+
+import it.water.core.api.interceptors.AfterMethodInterceptor;
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.InterceptorExecutor;
+import it.water.core.api.interceptors.MethodInterceptor;
+import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.Async;
+import it.water.core.interceptors.annotations.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Aristide Cittadino
+ * Precomputed interception data for a (concrete service class, method) pair.
+ * All the reflection work (annotated fields scan, concrete method lookup, InterceptorExecutor checks) is done once when the plan is created.
+ * Interceptors are resolved against the component registry and reused until the registry generation changes,
+ * so a steady state invocation does neither reflection nor allocation.
+ * The target method is bound once to a MethodHandle, so the call to the real service is not a reflective call.
+ */
+public final class InvocationPlan {
+    private static Logger log = LoggerFactory.getLogger(InvocationPlan.class);
+
+    private static final ClassValue<Map<Method, InvocationPlan>> plans = new ClassValue<>() {
+        @Override
+        protected Map<Method, InvocationPlan> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Method method;
+    //annotations related to interceptors found on fields first and then on the concrete method
+    private final Annotation[] annotations;
+    //for each annotation the list of annotated fields, null for method annotations
+    private final List<Field>[] annotatedFields;
+    //for each annotation the executor declared with @InterceptorExecutor, null if it must be searched inside the registry
+    private final Class<? extends MethodInterceptor<?>>[] declaredExecutors;
+    //(Object service, Object[] args)Object handle to the target method, null if the method cannot be accessed through method handles
+    private final MethodHandle invoker;
+    //true if the method must be executed asynchronously
+    private final boolean async;
+    private volatile InterceptorChain chain;
+
+    @SuppressWarnings("unchecked")
+    private InvocationPlan(Class<?> serviceClass, Method method) {
+        this.method = method;
+        List<Annotation> annotationsList = new ArrayList<>();
+        List<List<Field>> fieldsList = new ArrayList<>();
+        findAnnotationsOnFields(serviceClass, annotationsList, fieldsList);
+        findAnnotationsOnMethod(serviceClass, method, annotationsList, fieldsList);
+        this.annotations = annotationsList.toArray(new Annotation[0]);
+        this.annotatedFields = fieldsList.toArray(new List[0]);
+        this.declaredExecutors = new Class[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            InterceptorExecutor interceptorExecutor = annotations[i].annotationType().getDeclaredAnnotation(InterceptorExecutor.class);
+            if (interceptorExecutor != null)
+                declaredExecutors[i] = interceptorExecutor.interceptor();
+        }
+        this.invoker = bindInvoker(serviceClass, method);
+        this.async = isAsync(method, annotations);
+    }
+
+    /**
+     * Returns the plan for the given concrete service class and method, creating it the first time.
+     *
+     * @param serviceClass concrete service class
+     * @param method       invoked method
+     * @return invocation plan
+     */
+    public static InvocationPlan forMethod(Class<?> serviceClass, Method method) {
+        Map<Method, InvocationPlan> classPlans = plans.get(serviceClass);
+        InvocationPlan plan = classPlans.get(method);
+        if (plan == null)
+            plan = classPlans.computeIfAbsent(method, key -> new InvocationPlan(serviceClass, key));
+        return plan;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return true if the method is annotated with @Async and returns a type which can hold a CompletableFuture
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * @return true if the method or the service fields declare annotations which may be related to interceptors
+     */
+    public boolean mayBeIntercepted() {
+        return annotations.length > 0;
+    }
+
+    /**
+     * Invokes the method on the given service.
+     * The exception thrown by the service is propagated as is, without wrapping it inside InvocationTargetException.
+     *
+     * @param service target service
+     * @param args    method arguments, can be null for methods without parameters
+     * @return method result, null for void methods
+     * @throws Throwable the exception thrown by the service
+     */
+    public Object invoke(Object service, Object[] args) throws Throwable {
+        if (invoker != null)
+            return (Object) invoker.invokeExact(service, args);
+        try {
+            return method.invoke(service, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Returns the interceptors which must be run for this method.
+     * The chain is resolved again only when the registry changes or it is not the one used for the last resolution.
+     *
+     * @param registry component registry used to find interceptors
+     * @return resolved interceptor chain
+     */
+    public InterceptorChain getChain(ComponentRegistry registry) {
+        //no annotations means no interceptors whatever is registered, the registry is not even checked
+        if (registry == null || annotations.length == 0)
+            return InterceptorChain.EMPTY;
+        InterceptorChain currentChain = this.chain;
+        long generation = registry.getGeneration();
+        if (currentChain != null && currentChain.isResolvedFor(registry, generation))
+            return currentChain;
+        currentChain = resolve(registry, generation);
+        if (generation != ComponentRegistry.UNTRACKED_GENERATION)
+            this.chain = currentChain;
+        return currentChain;
+    }
+
+    private InterceptorChain resolve(ComponentRegistry registry, long generation) {
+        InterceptorsIndex index = null;
+        List<MethodInterceptor<?>> before = new ArrayList<>();
+        List<Annotation> beforeAnnotations = new ArrayList<>();
+        List<List<Field>> beforeFields = new ArrayList<>();
+        List<MethodInterceptor<?>> after = new ArrayList<>();
+        List<Annotation> afterAnnotations = new ArrayList<>();
+        List<List<Field>> afterFields = new ArrayList<>();
+        for (int i = 0; i < annotations.length; i++) {
+            MethodInterceptor<?>[] beforeInterceptors;
+            MethodInterceptor<?>[] afterInterceptors;
+            if (declaredExecutors[i] != null) {
+                MethodInterceptor<?> executor = findDeclaredExecutor(registry, declaredExecutors[i]);
+                beforeInterceptors = executorAsArray(executor, BeforeMethodInterceptor.class);
+                afterInterceptors = executorAsArray(executor, AfterMethodInterceptor.class);
+            } else {
+                //find the executors implementation based on registerd components which expose for example BeforeMethodInterceptor or AfterMethodInterceptor
+                if (index == null)
+                    index = InterceptorsIndex.forRegistry(registry);
+                beforeInterceptors = index.getBeforeInterceptors(annotations[i].annotationType());
+                afterInterceptors = index.getAfterInterceptors(annotations[i].annotationType());
+            }
+            for (MethodInterceptor<?> beforeInterceptor : beforeInterceptors) {
+                before.add(beforeInterceptor);
+                beforeAnnotations.add(annotations[i]);
+                beforeFields.add(annotatedFields[i]);
+            }
+            for (MethodInterceptor<?> afterInterceptor : afterInterceptors) {
+                after.add(afterInterceptor);
+                afterAnnotations.add(annotations[i]);
+                afterFields.add(annotatedFields[i]);
+            }
+        }
+        return new InterceptorChain(registry, generation, before, beforeAnnotations, beforeFields, after, afterAnnotations, afterFields);
+    }
+
+    /**
+     * Searches the interceptor defined inside the annotation with InterceptorExecutor.
+     *
+     * @param registry      component registry
+     * @param executorClass interceptor class declared by the annotation
+     * @return the interceptor or null
+     */
+    private static MethodInterceptor<?> findDeclaredExecutor(ComponentRegistry registry, Class<? extends MethodInterceptor<?>> executorClass) {
+        MethodInterceptor<?> executor = registry.findComponentIfPresent(executorClass, null).orElse(null);
+        if (executor == null)
+            log.debug("No component found for: {}", executorClass);
+        return executor;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static MethodInterceptor<?>[] executorAsArray(MethodInterceptor<?> executor, Class<? extends MethodInterceptor> interceptorClass) {
+        if (executor != null && interceptorClass.isAssignableFrom(executor.getClass()))
+            return new MethodInterceptor<?>[]{executor};
+        return new MethodInterceptor<?>[0];
+    }
+
+    private static boolean isAsync(Method method, Annotation[] annotations) {
+        if (Arrays.stream(annotations).noneMatch(annotation -> annotation.annotationType() == Async.class))
+            return false;
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class || returnType.isAssignableFrom(CompletableFuture.class))
+            return true;
+        log.warn("@Async method {} must return CompletableFuture or void, it will be executed synchronously", method);
+        return false;
+    }
+
+    /**
+     * Binds the method to a handle with the generic (Object, Object[])Object type,
+     * arguments are unboxed and the result is boxed by the handle itself.
+     * Methods which are not implemented by the service class or which are not accessible are invoked through reflection.
+     */
+    private static MethodHandle bindInvoker(Class<?> serviceClass, Method method) {
+        if (!method.getDeclaringClass().isAssignableFrom(serviceClass))
+            return null;
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+            return handle.asType(MethodType.genericMethodType(handle.type().parameterCount()))
+                    .asSpreader(Object[].class, method.getParameterCount());
+        } catch (IllegalAccessException e) {
+            log.debug("Method {} not accessible through method handles, using reflection", method);
+            return null;
+        }
+    }
+
+    /**
+     * Scans fields searching for annotations which are related to InterceptorExecutor.
+     * Fields sharing the same annotation are grouped together.
+     * Fields injected once at startup are skipped since the injector never touches them at invocation time.
+     */
+    private static void findAnnotationsOnFields(Class<?> serviceClass, List<Annotation> annotationsList, List<List<Field>> fieldsList) {
+        Map<Annotation, List<Field>> annotationsMap = new LinkedHashMap<>();
+        for (Field field : getAllDeclaredFields(serviceClass)) {
+            for (Annotation annotation : field.getDeclaredAnnotations()) {
+                //ex. WaterInject annotation that are not injected at startup
+                if (annotation.annotationType().isAnnotationPresent(InterceptorExecutor.class) && !isInjectedOnceAtStartup(annotation))
+                    annotationsMap.computeIfAbsent(annotation, key -> new ArrayList<>()).add(field);
+            }
+        }
+        annotationsMap.forEach((annotation, fields) -> {
+            annotationsList.add(annotation);
+            fieldsList.add(Collections.unmodifiableList(fields));
+        });
+    }
+
+    private static boolean isInjectedOnceAtStartup(Annotation annotation) {
+        return annotation instanceof Inject && ((Inject) annotation).injectOnceAtStartup();
+    }
+
+    /**
+     * Collects annotations declared on the concrete method, since interfaces methods do not expose them.
+     */
+    private static void findAnnotationsOnMethod(Class<?> serviceClass, Method method, List<Annotation> annotationsList, List<List<Field>> fieldsList) {
+        try {
+            Annotation[] methodAnnotations = serviceClass.getMethod(method.getName(), method.getParameterTypes()).getDeclaredAnnotations();
+            for (Annotation annotation : methodAnnotations) {
+                annotationsList.add(annotation);
+                fieldsList.add(null);
+            }
+        } catch (NoSuchMethodException e) {
+            log.debug(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returs all declared fields inside a class and its service superclasses
+     *
+     * @param serviceClass
+     * @return
+     */
+    private static List<Field> getAllDeclaredFields(Class<?> serviceClass) {
+        List<Field> fieldsList = new ArrayList<>();
+        Class<?> currentClass = serviceClass;
+        while (currentClass != null) {
+            Field[] fields = currentClass.getDeclaredFields();
+            fieldsList.addAll(Arrays.asList(fields));
+            Class<?> superclass = currentClass.getSuperclass();
+            if (superclass != null && !superclass.equals(currentClass) && Service.class.isAssignableFrom(superclass))
+                currentClass = superclass;
+            else currentClass = null;
+        }
+        return fieldsList;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors;
+
+import it.water.core.api.interceptors.Proxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Aristide Cittadino
+ * Generates proxy classes for services as an alternative to java.lang.reflect.Proxy.
+ * A concrete class is generated once for each service class and exposed interfaces, its methods invoke the service
+ * directly with typed parameters when the method has no interceptors, otherwise they delegate to the WaterAbstractInterceptor
+ * which runs the interceptor chain. Object methods (equals, hashCode and toString) are forwarded to the service like
+ * java.lang.reflect.Proxy does, while it.water.core.api.interceptors.Proxy methods are answered by the interceptor.
+ * <p>
+ * Proxy classes are defined as hidden classes inside the package of the service class.
+ * When this is not possible, for example because the service class loader cannot see the exposed interfaces,
+ * no proxy is returned and callers are expected to fall back to java.lang.reflect.Proxy.
+ */
+public final class ProxyClassGenerator {
+    private static Logger log = LoggerFactory.getLogger(ProxyClassGenerator.class);
+    private static final String PROXY_CLASS_SUFFIX = "$$WaterProxy";
+
+    //for each service class and list of exposed interfaces the generated class constructor, empty if generation failed
+    private static final ClassValue<Map<List<Class<?>>, Optional<MethodHandle>>> proxyConstructors = new ClassValue<>() {
+        @Override
+        protected Map<List<Class<?>>, Optional<MethodHandle>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private ProxyClassGenerator() {
+    }
+
+    /**
+     * Creates a proxy of the service wrapped by the given interceptor.
+     *
+     * @param interfaces interfaces exposed by the proxy
+     * @param handler    interceptor wrapping the service
+     * @return the proxy or an empty optional if the proxy class cannot be generated
+     */
+    public static Optional<Object> newProxyInstance(Class<?>[] interfaces, WaterAbstractInterceptor<?> handler) {
+        Object service = handler.getService();
+        if (service == null)
+            return Optional.empty();
+        Class<?> serviceClass = service.getClass();
+        List<Class<?>> interfacesList = List.copyOf(new LinkedHashSet<>(Arrays.asList(interfaces)));
+        Optional<MethodHandle> constructor = proxyConstructors.get(serviceClass).computeIfAbsent(interfacesList, key -> defineProxyClass(serviceClass, key));
+        if (constructor.isEmpty())
+            return Optional.empty();
+        try {
+            return Optional.of((Object) constructor.get().invokeExact(handler, service));
+        } catch (Throwable t) {
+            log.warn("Error while creating proxy for {}: {}", serviceClass.getName(), t.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<MethodHandle> defineProxyClass(Class<?> serviceClass, List<Class<?>> interfaces) {
+        try {
+            List<Method> forwardedMethods = new ArrayList<>();
+            List<Method> handlerMethods = new ArrayList<>();
+            collectMethods(interfaces, forwardedMethods, handlerMethods);
+            if (!canGenerate(serviceClass, interfaces, forwardedMethods))
+                return Optional.empty();
+            String className = ProxyClassWriter.internalName(serviceClass) + PROXY_CLASS_SUFFIX;
+            byte[] classBytes = new ProxyClassWriter(className, interfaces, forwardedMethods, handlerMethods).toByteArray();
+            MethodHandles.Lookup proxyLookup = MethodHandles.privateLookupIn(serviceClass, MethodHandles.lookup()).defineHiddenClass(classBytes, true);
+            Class<?> proxyClass = proxyLookup.lookupClass();
+            for (int i = 0; i < forwardedMethods.size(); i++) {
+                MethodHandle planSetter = proxyLookup.findStaticSetter(proxyClass, ProxyClassWriter.PLAN_FIELD_PREFIX + i, InvocationPlan.class);
+                planSetter.invokeExact(InvocationPlan.forMethod(serviceClass, forwardedMethods.get(i)));
+            }
+            MethodHandle constructor = proxyLookup.findConstructor(proxyClass, MethodType.methodType(void.class, WaterAbstractInterceptor.class, Object.class));
+            log.debug("Generated proxy class {} for {}", proxyClass.getName(), serviceClass.getName());
+            return Optional.of(constructor.asType(MethodType.methodType(Object.class, WaterAbstractInterceptor.class, Object.class)));
+        } catch (Throwable t) {
+            log.debug("Cannot generate proxy class for {}, falling back to dynamic proxies: {}", serviceClass.getName(), t.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Proxy classes live in the service class loader, so it must see the same interfaces and interceptors classes.
+     * They are also defined in the service class package, so the types they cast to must be accessible from there:
+     * a failure would otherwise show up as IllegalAccessError on the first invocation, when falling back to
+     * java.lang.reflect.Proxy is not possible anymore.
+     */
+    private static boolean canGenerate(Class<?> serviceClass, List<Class<?>> interfaces, List<Method> forwardedMethods) {
+        if (serviceClass.isHidden() || serviceClass.isArray() || serviceClass.isPrimitive())
+            return false;
+        ClassLoader classLoader = serviceClass.getClassLoader();
+        if (!isVisible(classLoader, WaterAbstractInterceptor.class) || !isVisible(classLoader, InvocationPlan.class))
+            return false;
+        for (Class<?> iface : interfaces) {
+            if (!iface.isInterface() || !isVisible(classLoader, iface) || !isAccessible(serviceClass, iface))
+                return false;
+        }
+        for (Method method : forwardedMethods) {
+            if (!isAccessible(serviceClass, method.getDeclaringClass()) || !isAccessible(serviceClass, method.getReturnType()))
+                return false;
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                if (!isAccessible(serviceClass, parameterType))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Class<?> serviceClass, Class<?> type) {
+        while (type.isArray())
+            type = type.getComponentType();
+        if (type.isPrimitive() || Modifier.isPublic(type.getModifiers()))
+            return true;
+        return type.getClassLoader() == serviceClass.getClassLoader() && type.getPackageName().equals(serviceClass.getPackageName());
+    }
+
+    private static boolean isVisible(ClassLoader classLoader, Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, classLoader) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Collects methods which must be implemented by the proxy class.
+     * Methods with the same name and descriptor are implemented once, the first one found is used as invocation target.
+     */
+    private static void collectMethods(List<Class<?>> interfaces, List<Method> forwardedMethods, List<Method> handlerMethods) throws NoSuchMethodException {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        addMethod(methods, Object.class.getMethod("equals", Object.class));
+        addMethod(methods, Object.class.getMethod("hashCode"));
+        addMethod(methods, Object.class.getMethod("toString"));
+        for (Class<?> iface : interfaces) {
+            if (iface == Proxy.class)
+                continue;
+            for (Method method : iface.getMethods()) {
+                if (!Modifier.isStatic(method.getModifiers()))
+                    addMethod(methods, method);
+            }
+        }
+        forwardedMethods.addAll(methods.values());
+        if (interfaces.contains(Proxy.class)) {
+            for (Method method : Proxy.class.getMethods()) {
+                if (!methods.containsKey(method.getName() + ProxyClassWriter.methodDescriptor(method)))
+                    handlerMethods.add(method);
+            }
+        }
+    }
+
+    private static void addMethod(Map<String, Method> methods, Method method) {
+        methods.putIfAbsent(method.getName() + ProxyClassWriter.methodDescriptor(method), method);
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author Aristide Cittadino
+ * Minimal class file writer used by ProxyClassGenerator.
+ * It emits a final class which implements the given interfaces and holds the proxy handler, the wrapped service
+ * and, for each forwarded method, a static field with the related invocation plan.
+ * Each forwarded method asks the handler whether the method is intercepted: if not the service is invoked directly
+ * with the same typed parameters, otherwise arguments are boxed and the handler runs the whole interceptor chain.
+ */
+final class ProxyClassWriter {
+    static final String HANDLER_FIELD = "handler";
+    static final String TARGET_FIELD = "target";
+    static final String PLAN_FIELD_PREFIX = "plan";
+
+    //Java 17 class file
+    private static final int CLASS_VERSION = 61;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int FLOAD = 0x17;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int AASTORE = 0x53;
+    private static final int POP = 0x57;
+    private static final int DUP = 0x59;
+    private static final int IFNE = 0x9a;
+    private static final int IRETURN = 0xac;
+    private static final int LRETURN = 0xad;
+    private static final int FRETURN = 0xae;
+    private static final int DRETURN = 0xaf;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int ANEWARRAY = 0xbd;
+    private static final int CHECKCAST = 0xc0;
+    //same_frame_extended stack map frame type
+    private static final int SAME_FRAME_EXTENDED = 251;
+
+    private static final String OBJECT_TYPE = "java/lang/Object";
+    private static final String HANDLER_TYPE = internalName(WaterAbstractInterceptor.class);
+    private static final String HANDLER_DESCRIPTOR = WaterAbstractInterceptor.class.descriptorString();
+    private static final String PLAN_DESCRIPTOR = InvocationPlan.class.descriptorString();
+    private static final String OBJECT_DESCRIPTOR = Object.class.descriptorString();
+
+    private final String className;
+    private final List<Class<?>> interfaces;
+    private final List<Method> forwardedMethods;
+    private final List<Method> handlerMethods;
+    private final Map<String, Integer> constants = new HashMap<>();
+    private final ByteVector constantPool = new ByteVector();
+    private int constantPoolCount = 1;
+
+    /**
+     * @param className        internal name of the generated class
+     * @param interfaces       interfaces implemented by the generated class
+     * @param forwardedMethods methods forwarded to the service, the i-th method uses the plan stored in the "plan" + i field
+     * @param handlerMethods   methods forwarded directly to the handler without interception
+     */
+    ProxyClassWriter(String className, List<Class<?>> interfaces, List<Method> forwardedMethods, List<Method> handlerMethods) {
+        this.className = className;
+        this.interfaces = interfaces;
+        this.forwardedMethods = forwardedMethods;
+        this.handlerMethods = handlerMethods;
+    }
+
+    byte[] toByteArray() {
+        //methods are written first since they fill the constant pool
+        ByteVector body = new ByteVector();
+        body.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        body.u2(classConstant(className));
+        body.u2(classConstant(OBJECT_TYPE));
+        body.u2(interfaces.size());
+        interfaces.forEach(iface -> body.u2(classConstant(internalName(iface))));
+        body.u2(2 + forwardedMethods.size());
+        writeField(body, ACC_PRIVATE | ACC_FINAL, HANDLER_FIELD, HANDLER_DESCRIPTOR);
+        writeField(body, ACC_PRIVATE | ACC_FINAL, TARGET_FIELD, OBJECT_DESCRIPTOR);
+        for (int i = 0; i < forwardedMethods.size(); i++)
+            writeField(body, ACC_PRIVATE | ACC_STATIC, PLAN_FIELD_PREFIX + i, PLAN_DESCRIPTOR);
+        body.u2(1 + forwardedMethods.size() + handlerMethods.size());
+        writeConstructor(body);
+        for (int i = 0; i < forwardedMethods.size(); i++)
+            writeForwardedMethod(body, forwardedMethods.get(i), PLAN_FIELD_PREFIX + i);
+        handlerMethods.forEach(method -> writeHandlerMethod(body, method));
+        //no class attributes
+        body.u2(0);
+
+        ByteVector classFile = new ByteVector();
+        classFile.u4(0xCAFEBABE);
+        classFile.u2(0);
+        classFile.u2(CLASS_VERSION);
+        classFile.u2(constantPoolCount);
+        classFile.append(constantPool);
+        classFile.append(body);
+        return classFile.toByteArray();
+    }
+
+    private void writeField(ByteVector out, int access, String name, String descriptor) {
+        out.u2(access);
+        out.u2(utf8Constant(name));
+        out.u2(utf8Constant(descriptor));
+        out.u2(0);
+    }
+
+    /**
+     * Constructor receiving the handler and the wrapped service
+     */
+    private void writeConstructor(ByteVector out) {
+        ByteVector code = new ByteVector();
+        code.u1(ALOAD_0);
+        code.u1(INVOKESPECIAL);
+        code.u2(methodConstant(OBJECT_TYPE, "<init>", "()V", false));
+        code.u1(ALOAD_0);
+        code.u1(ALOAD_1);
+        code.u1(PUTFIELD);
+        code.u2(fieldConstant(className, HANDLER_FIELD, HANDLER_DESCRIPTOR));
+        code.u1(ALOAD_0);
+        code.u1(ALOAD_2);
+        code.u1(PUTFIELD);
+        code.u2(fieldConstant(className, TARGET_FIELD, OBJECT_DESCRIPTOR));
+        code.u1(RETURN);
+        writeMethod(out, "<init>", "(" + HANDLER_DESCRIPTOR + OBJECT_DESCRIPTOR + ")V", code, 2, 3, -1);
+    }
+
+    /**
+     * Method invoking the service directly when no interceptor must run, otherwise the handler with boxed arguments.
+     */
+    private void writeForwardedMethod(ByteVector out, Method method, String planField) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Class<?> owner = method.getDeclaringClass();
+        String descriptor = methodDescriptor(method);
+        int planConstant = fieldConstant(className, planField, PLAN_DESCRIPTOR);
+        ByteVector code = new ByteVector();
+        //if (handler.isIntercepted(plan)) goto intercepted
+        code.u1(ALOAD_0);
+        code.u1(GETFIELD);
+        code.u2(fieldConstant(className, HANDLER_FIELD, HANDLER_DESCRIPTOR));
+        code.u1(GETSTATIC);
+        code.u2(planConstant);
+        code.u1(INVOKEVIRTUAL);
+        code.u2(methodConstant(HANDLER_TYPE, "isIntercepted", "(" + PLAN_DESCRIPTOR + ")Z", false));
+        int branchPosition = code.size();
+        code.u1(IFNE);
+        code.u2(0);
+        //return ((Owner) target).method(params)
+        code.u1(ALOAD_0);
+        code.u1(GETFIELD);
+        code.u2(fieldConstant(className, TARGET_FIELD, OBJECT_DESCRIPTOR));
+        if (owner != Object.class) {
+            code.u1(CHECKCAST);
+            code.u2(classConstant(internalName(owner)));
+        }
+        int slot = 1;
+        for (Class<?> parameterType : parameterTypes) {
+            load(code, parameterType, slot);
+            slot += slotSize(parameterType);
+        }
+        int parametersSlots = slot - 1;
+        if (owner.isInterface()) {
+            code.u1(INVOKEINTERFACE);
+            code.u2(methodConstant(internalName(owner), method.getName(), descriptor, true));
+            code.u1(1 + parametersSlots);
+            code.u1(0);
+        } else {
+            code.u1(INVOKEVIRTUAL);
+            code.u2(methodConstant(internalName(owner), method.getName(), descriptor, false));
+        }
+        code.u1(returnOpcode(method.getReturnType()));
+        //intercepted: return handler.invokeIntercepted(plan, new Object[]{params})
+        int interceptedPosition = code.size();
+        code.patchU2(branchPosition + 1, interceptedPosition - branchPosition);
+        code.u1(ALOAD_0);
+        code.u1(GETFIELD);
+        code.u2(fieldConstant(className, HANDLER_FIELD, HANDLER_DESCRIPTOR));
+        code.u1(GETSTATIC);
+        code.u2(planConstant);
+        if (parameterTypes.length == 0) {
+            code.u1(ACONST_NULL);
+        } else {
+            pushInt(code, parameterTypes.length);
+            code.u1(ANEWARRAY);
+            code.u2(classConstant(OBJECT_TYPE));
+            slot = 1;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                code.u1(DUP);
+                pushInt(code, i);
+                load(code, parameterTypes[i], slot);
+                box(code, parameterTypes[i]);
+                code.u1(AASTORE);
+                slot += slotSize(parameterTypes[i]);
+            }
+        }
+        code.u1(INVOKEVIRTUAL);
+        code.u2(methodConstant(HANDLER_TYPE, "invokeIntercepted", "(" + PLAN_DESCRIPTOR + "[" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR, false));
+        unboxReturn(code, method.getReturnType());
+        //handler, plan, array, array copy, index and a long or double value
+        int maxStack = Math.max(1 + parametersSlots, 7);
+        writeMethod(out, method.getName(), descriptor, code, maxStack, 1 + parametersSlots, interceptedPosition);
+    }
+
+    /**
+     * Method without parameters invoked on the handler, used for the Proxy interface
+     */
+    private void writeHandlerMethod(ByteVector out, Method method) {
+        String descriptor = methodDescriptor(method);
+        ByteVector code = new ByteVector();
+        code.u1(ALOAD_0);
+        code.u1(GETFIELD);
+        code.u2(fieldConstant(className, HANDLER_FIELD, HANDLER_DESCRIPTOR));
+        code.u1(INVOKEVIRTUAL);
+        code.u2(methodConstant(HANDLER_TYPE, method.getName(), descriptor, false));
+        code.u1(returnOpcode(method.getReturnType()));
+        writeMethod(out, method.getName(), descriptor, code, 1, 1, -1);
+    }
+
+    /**
+     * Writes a public method with its Code attribute.
+     *
+     * @param framePosition bytecode offset which is the target of the only branch, -1 if the method has no branches.
+     *                      At that offset locals are the same of the method entry and the operand stack is empty.
+     */
+    private void writeMethod(ByteVector out, String name, String descriptor, ByteVector code, int maxStack, int maxLocals, int framePosition) {
+        ByteVector stackMapTable = null;
+        if (framePosition >= 0) {
+            stackMapTable = new ByteVector();
+            stackMapTable.u2(1);
+            stackMapTable.u1(SAME_FRAME_EXTENDED);
+            stackMapTable.u2(framePosition);
+        }
+        out.u2(ACC_PUBLIC);
+        out.u2(utf8Constant(name));
+        out.u2(utf8Constant(descriptor));
+        out.u2(1);
+        out.u2(utf8Constant("Code"));
+        int stackMapTableLength = (stackMapTable != null) ? 6 + stackMapTable.size() : 0;
+        out.u4(12 + code.size() + stackMapTableLength);
+        out.u2(maxStack);
+        out.u2(maxLocals);
+        out.u4(code.size());
+        out.append(code);
+        //no exception table
+        out.u2(0);
+        if (stackMapTable != null) {
+            out.u2(1);
+            out.u2(utf8Constant("StackMapTable"));
+            out.u4(stackMapTable.size());
+            out.append(stackMapTable);
+        } else {
+            out.u2(0);
+        }
+    }
+
+    private static void load(ByteVector code, Class<?> type, int slot) {
+        int opcode = ALOAD;
+        if (type == long.class)
+            opcode = LLOAD;
+        else if (type == float.class)
+            opcode = FLOAD;
+        else if (type == double.class)
+            opcode = DLOAD;
+        else if (type.isPrimitive())
+            opcode = ILOAD;
+        //a method cannot have more than 255 parameters slots so the index always fits one byte
+        code.u1(opcode);
+        code.u1(slot);
+    }
+
+    private static void pushInt(ByteVector code, int value) {
+        if (value <= 5) {
+            code.u1(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.u1(BIPUSH);
+            code.u1(value);
+        } else {
+            code.u1(SIPUSH);
+            code.u2(value);
+        }
+    }
+
+    private void box(ByteVector code, Class<?> type) {
+        if (!type.isPrimitive())
+            return;
+        Class<?> wrapper = wrapperType(type);
+        code.u1(INVOKESTATIC);
+        code.u2(methodConstant(internalName(wrapper), "valueOf", "(" + type.descriptorString() + ")" + wrapper.descriptorString(), false));
+    }
+
+    private void unboxReturn(ByteVector code, Class<?> returnType) {
+        if (returnType == void.class) {
+            code.u1(POP);
+        } else if (returnType.isPrimitive()) {
+            Class<?> wrapper = wrapperType(returnType);
+            code.u1(CHECKCAST);
+            code.u2(classConstant(internalName(wrapper)));
+            code.u1(INVOKEVIRTUAL);
+            code.u2(methodConstant(internalName(wrapper), returnType.getName() + "Value", "()" + returnType.descriptorString(), false));
+        } else if (returnType != Object.class) {
+            code.u1(CHECKCAST);
+            code.u2(classConstant(internalName(returnType)));
+        }
+        code.u1(returnOpcode(returnType));
+    }
+
+    private static int returnOpcode(Class<?> type) {
+        if (type == void.class)
+            return RETURN;
+        if (type == long.class)
+            return LRETURN;
+        if (type == float.class)
+            return FRETURN;
+        if (type == double.class)
+            return DRETURN;
+        if (type.isPrimitive())
+            return IRETURN;
+        return ARETURN;
+    }
+
+    private static int slotSize(Class<?> type) {
+        return (type == long.class || type == double.class) ? 2 : 1;
+    }
+
+    private static Class<?> wrapperType(Class<?> primitiveType) {
+        return MethodType.methodType(primitiveType).wrap().returnType();
+    }
+
+    static String methodDescriptor(Method method) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> parameterType : method.getParameterTypes())
+            sb.append(parameterType.descriptorString());
+        return sb.append(')').append(method.getReturnType().descriptorString()).toString();
+    }
+
+    static String internalName(Class<?> type) {
+        return type.isArray() ? type.descriptorString() : type.getName().replace('.', '/');
+    }
+
+    private int utf8Constant(String value) {
+        Integer index = constants.get("U" + value);
+        if (index != null)
+            return index;
+        constantPool.u1(CONSTANT_UTF8);
+        constantPool.utf8(value);
+        return addConstant("U" + value);
+    }
+
+    private int classConstant(String internalName) {
+        Integer index = constants.get("C" + internalName);
+        if (index != null)
+            return index;
+        int nameIndex = utf8Constant(internalName);
+        constantPool.u1(CONSTANT_CLASS);
+        constantPool.u2(nameIndex);
+        return addConstant("C" + internalName);
+    }
+
+    private int nameAndTypeConstant(String name, String descriptor) {
+        String key = "N" + name + ":" + descriptor;
+        Integer index = constants.get(key);
+        if (index != null)
+            return index;
+        int nameIndex = utf8Constant(name);
+        int descriptorIndex = utf8Constant(descriptor);
+        constantPool.u1(CONSTANT_NAME_AND_TYPE);
+        constantPool.u2(nameIndex);
+        constantPool.u2(descriptorIndex);
+        return addConstant(key);
+    }
+
+    private int fieldConstant(String owner, String name, String descriptor) {
+        return memberConstant(CONSTANT_FIELD_REF, owner, name, descriptor);
+    }
+
+    private int methodConstant(String owner, String name, String descriptor, boolean interfaceMethod) {
+        return memberConstant(interfaceMethod ? CONSTANT_INTERFACE_METHOD_REF : CONSTANT_METHOD_REF, owner, name, descriptor);
+    }
+
+    private int memberConstant(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + ":" + descriptor;
+        Integer index = constants.get(key);
+        if (index != null)
+            return index;
+        int ownerIndex = classConstant(owner);
+        int nameAndTypeIndex = nameAndTypeConstant(name, descriptor);
+        constantPool.u1(tag);
+        constantPool.u2(ownerIndex);
+        constantPool.u2(nameAndTypeIndex);
+        return addConstant(key);
+    }
+
+    private int addConstant(String key) {
+        int index = constantPoolCount++;
+        constants.put(key, index);
+        return index;
+    }
+
+    /**
+     * Growable byte array with big endian writers as required by the class file format
+     */
+    private static class ByteVector extends ByteArrayOutputStream {
+        void u1(int value) {
+            write(value);
+        }
+
+        void u2(int value) {
+            write(value >>> 8);
+            write(value);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void patchU2(int position, int value) {
+            buf[position] = (byte) (value >>> 8);
+            buf[position + 1] = (byte) value;
+        }
+
+        void append(ByteVector other) {
+            write(other.buf, 0, other.count);
+        }
+
+        /**
+         * Modified UTF-8 encoding used by the class file constant pool
+         */
+        void utf8(String value) {
+            ByteVector encoded = new ByteVector();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    encoded.u1(c);
+                } else if (c <= 0x07FF) {
+                    encoded.u1(0xC0 | (c >> 6));
+                    encoded.u1(0x80 | (c & 0x3F));
+                } else {
+                    encoded.u1(0xE0 | (c >> 12));
+                    encoded.u1(0x80 | ((c >> 6) & 0x3F));
+                    encoded.u1(0x80 | (c & 0x3F));
+                }
+            }
+            u2(encoded.size());
+            append(encoded);
+        }
+    }
+}
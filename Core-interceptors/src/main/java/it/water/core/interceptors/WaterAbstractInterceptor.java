@@ -16,19 +16,26 @@
 
 package it.water.core.interceptors;
 
+import it.water.core.api.bundle.Runtime;
 import it.water.core.api.interceptors.*;
+import it.water.core.api.permission.SecurityContext;
 import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.service.Service;
-import it.water.core.registry.model.exception.NoComponentRegistryFoundException;
+import it.water.core.interceptors.annotations.implementation.AsyncMethodExecutor;
 import lombok.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
@@ -38,6 +45,11 @@ import java.util.*;
 @NoArgsConstructor
 public abstract class WaterAbstractInterceptor<S extends Service> implements it.water.core.api.interceptors.Proxy {
     private static Logger log = LoggerFactory.getLogger(WaterAbstractInterceptor.class);
+    //runtime and executor used by @Async methods, found inside the registry for the last registry generation
+    private static volatile AsyncComponents lastAsyncComponents;
+    private static volatile boolean missingAsyncExecutorLogged;
+    //marks invocation contexts opened by executeInterceptorBeforeMethod
+    private static final Object SPLIT_INVOCATION_ATTRIBUTE = new Object();
 
     //original service
     @Getter(AccessLevel.PROTECTED)
@@ -46,18 +58,37 @@ public abstract class WaterAbstractInterceptor<S extends Service> implements it.
 
 
     /**
-     * Loads all BeforeMethodInterceptor Components registered as OSGi services and execute them before method invocation
+     * Loads all BeforeMethodInterceptor Components registered as OSGi services and execute them before method invocation.
+     * Used by runtime proxies which run before and after interceptors separately.
+     * When interceptors of the method use the InvocationContext, it is opened here and stays bound to the current thread
+     * until executeInterceptorAfterMethod or, if the method fails, completeInvocation is called.
+     * Before interceptors may provide the result themselves: proxies should check
+     * InvocationContext.find(service, method) and, if the invocation is skipped, return its result without invoking the method.
      *
      * @param method
      * @param args
      * @throws NoSuchMethodException
      */
     protected void executeInterceptorBeforeMethod(S service, Method method, Object[] args) throws NoSuchMethodException {
-        this.executeInterceptor(service, method, args, null, BeforeMethodInterceptor.class);
+        InterceptorChain chain = getInterceptorChain(service, method);
+        if (!chain.usesInvocationContext) {
+            doInterceptionBeforeMethod(chain, service, method, args);
+            return;
+        }
+        InvocationContext context = InvocationContext.begin(service, method, args);
+        context.setAttribute(SPLIT_INVOCATION_ATTRIBUTE, Boolean.TRUE);
+        try {
+            doInterceptionBeforeMethod(chain, service, method, args);
+        } catch (RuntimeException | Error e) {
+            context.end();
+            throw e;
+        }
     }
 
     /**
-     * Loads all AfterMethodInterceptor Components registered as OSGi services and execute them after method invocation
+     * Loads all AfterMethodInterceptor Components registered as OSGi services and execute them after method invocation.
+     * Completes the InvocationContext opened by executeInterceptorBeforeMethod, if any.
+     * When a before interceptor skipped the invocation, after interceptors receive the result it provided.
      *
      * @param method
      * @param args
@@ -65,11 +96,39 @@ public abstract class WaterAbstractInterceptor<S extends Service> implements it.
      * @throws NoSuchMethodException
      */
     protected void executeInterceptorAfterMethod(S service, Method method, Object[] args, Object result) throws NoSuchMethodException {
-        this.executeInterceptor(service, method, args, result, AfterMethodInterceptor.class);
+        InterceptorChain chain = getInterceptorChain(service, method);
+        InvocationContext context = findSplitInvocationContext(service, method);
+        try {
+            Object afterResult = (context != null && context.isInvocationSkipped()) ? context.getResult() : result;
+            doInterceptionAfterMethod(chain, service, method, args, afterResult);
+        } finally {
+            if (context != null)
+                context.end();
+        }
+    }
+
+    /**
+     * Completes the InvocationContext opened by executeInterceptorBeforeMethod without running after interceptors.
+     * Runtime proxies must call it when the method, or a before interceptor, fails so resources held by interceptors are released.
+     *
+     * @param service
+     * @param method
+     */
+    protected void completeInvocation(S service, Method method) {
+        InvocationContext context = findSplitInvocationContext(service, method);
+        if (context != null)
+            context.end();
+    }
+
+    private static InvocationContext findSplitInvocationContext(Object service, Method method) {
+        InvocationContext context = InvocationContext.find(service, method);
+        return (context != null && context.getAttribute(SPLIT_INVOCATION_ATTRIBUTE) != null) ? context : null;
     }
 
     /**
      * Analyzes the method invocation searching for WaterInterceptorExecutor Annotation.
+     * Interceptors are taken from the invocation plan related to the concrete service class and method,
+     * so annotations scan and interceptors resolution are not repeated on every invocation.
      *
      * @param method
      * @param args
@@ -78,10 +137,76 @@ public abstract class WaterAbstractInterceptor<S extends Service> implements it.
      * @throws NoSuchMethodException
      */
     protected void executeInterceptor(S service, Method method, Object[] args, Object result, @SuppressWarnings("rawtypes") Class<? extends MethodInterceptor> interceptorClass) throws NoSuchMethodException {
-        interceptAnnotationsOnFields(service, method, args, result, interceptorClass);
-        interceptAnnotationsOnMethod(service, method, args, result, interceptorClass);
+        InterceptorChain chain = getInterceptorChain(service, method);
+        if (AfterMethodInterceptor.class.isAssignableFrom(interceptorClass))
+            doInterceptionAfterMethod(chain, service, method, args, result);
+        else
+            doInterceptionBeforeMethod(chain, service, method, args);
     }
 
+    /**
+     * Invokes the method on the service running before and after interceptors.
+     * Methods without interceptors are dispatched straight to the service.
+     * When the method carries annotations marked with @UsesInvocationContext, the invocation is exposed through InvocationContext
+     * while interceptors are running, so a before interceptor can skip the service invocation providing the result itself.
+     * When InvocationTracing is enabled, synchronous invocations are traced.
+     *
+     * @param service
+     * @param method
+     * @param args
+     * @return the method result
+     * @throws Throwable the exception thrown by the service or by an interceptor
+     */
+    protected Object invokeWithInterceptors(S service, Method method, Object[] args) throws Throwable {
+        return invokeWithInterceptors(service, InvocationPlan.forMethod(service.getClass(), method), args);
+    }
+
+    /**
+     * Used by generated proxy classes to check whether the method can be dispatched straight to the service.
+     *
+     * @param plan invocation plan of the invoked method
+     * @return true if interceptors must be executed
+     */
+    public boolean isIntercepted(InvocationPlan plan) {
+        return plan.isAsync() || !plan.getChain(this.getComponentsRegistry()).isEmpty();
+    }
+
+    /**
+     * Used by generated proxy classes to invoke the method on the wrapped service running interceptors.
+     *
+     * @param plan invocation plan of the invoked method
+     * @param args boxed arguments, null for methods without parameters
+     * @return the method result
+     * @throws Throwable the exception thrown by the service or by an interceptor
+     */
+    public Object invokeIntercepted(InvocationPlan plan, Object[] args) throws Throwable {
+        return invokeWithInterceptors(this.getService(), plan, args);
+    }
+
+    /**
+     * Invokes the method on the real service, unwrapping the exception thrown by the service itself.
+     * The method is dispatched through the handle bound by the invocation plan.
+     *
+     * @param service
+     * @param method
+     * @param args
+     * @return
+     * @throws Throwable
+     */
+    protected Object invokeService(S service, Method method, Object[] args) throws Throwable {
+        return InvocationPlan.forMethod(service.getClass(), method).invoke(service, args);
+    }
+
+    /**
+     * Returns the interceptors which must be executed on the given method.
+     *
+     * @param service
+     * @param method
+     * @return
+     */
+    protected InterceptorChain getInterceptorChain(S service, Method method) {
+        return InvocationPlan.forMethod(service.getClass(), method).getChain(this.getComponentsRegistry());
+    }
 
     /**
      * Returns the original component generic interfaces
@@ -99,175 +224,285 @@ public abstract class WaterAbstractInterceptor<S extends Service> implements it.
 
     protected abstract ComponentRegistry getComponentsRegistry();
 
+    private Object invokeWithInterceptors(S service, InvocationPlan plan, Object[] args) throws Throwable {
+        InterceptorChain chain = plan.getChain(this.getComponentsRegistry());
+        if (plan.isAsync())
+            return invokeAsync(service, plan, chain, args);
+        if (chain.isEmpty())
+            return plan.invoke(service, args);
+        if (InvocationTracing.isEnabled())
+            return invokeTraced(service, plan, chain, args);
+        Method method = plan.getMethod();
+        //the context is created only when an interceptor of the chain uses it
+        InvocationContext context = chain.usesInvocationContext ? InvocationContext.begin(service, method, args) : null;
+        try {
+            doInterceptionBeforeMethod(chain, service, method, args);
+            //before interceptors may have already provided the result
+            Object result = (context != null && context.isInvocationSkipped()) ? context.getResult() : plan.invoke(service, args);
+            doInterceptionAfterMethod(chain, service, method, args, result);
+            return result;
+        } finally {
+            if (context != null)
+                context.end();
+        }
+    }
+
     /**
-     * Method which scans fields searching for annotations which are related to WaterInterceptorExecutor.
-     * If it is found, it means that the current field must be intercepted by the defined interceptor inside the annotation or a registed interceptor component.
-     *
-     * @param service
-     * @param method
-     * @param args
-     * @param result
-     * @param interceptorClass
+     * Same as invokeWithInterceptors but measures each interceptor and the service method, recording the trace
+     * inside the ring buffer of the current thread.
      */
-    private void interceptAnnotationsOnFields(S service, Method method, Object[] args, Object result, @SuppressWarnings("rawtypes") Class<? extends MethodInterceptor> interceptorClass) {
-        Map<Annotation, List<Field>> annotationsMap = new HashMap<>();
-        Arrays.stream(getAllDeclaredFields(service)).forEach(field -> Arrays.stream(field.getDeclaredAnnotations())
-                //ex. WaterInject annotation that are not injected at startup
-                .filter(annotation -> annotation.annotationType().isAnnotationPresent(InterceptorExecutor.class)).forEach(annotation -> {
-                    if (!annotationsMap.containsKey(annotation)) annotationsMap.put(annotation, new ArrayList<>());
-                    annotationsMap.get(annotation).add(field);
-                }));
-        annotationsMap.keySet().iterator().forEachRemaining(annotation -> {
-            boolean intercepted = interceptBasedOnAnnotationInterceptorExecutor(annotation, annotationsMap.get(annotation), service, method, args, result, interceptorClass);
-            if (!intercepted)
-                interceptBasedOnRegisterdInterceptorExecutor(annotation, annotationsMap.get(annotation), service, method, args, result, interceptorClass);
-        });
+    private Object invokeTraced(S service, InvocationPlan plan, InterceptorChain chain, Object[] args) throws Throwable {
+        Method method = plan.getMethod();
+        List<InvocationTrace.Step> steps = new ArrayList<>(chain.beforeInterceptors.length + chain.afterInterceptors.length + 1);
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Throwable failure = null;
+        InvocationContext context = chain.usesInvocationContext ? InvocationContext.begin(service, method, args) : null;
+        try {
+            for (int i = 0; i < chain.beforeInterceptors.length; i++) {
+                long stepStart = System.nanoTime();
+                boolean stepFailed = true;
+                try {
+                    interceptBefore(chain, i, service, method, args);
+                    stepFailed = false;
+                } finally {
+                    steps.add(new InvocationTrace.Step(InvocationTrace.Phase.BEFORE, interceptorName(chain.beforeInterceptors[i]), System.nanoTime() - stepStart, stepFailed));
+                }
+            }
+            Object result;
+            if (context != null && context.isInvocationSkipped()) {
+                result = context.getResult();
+            } else {
+                long stepStart = System.nanoTime();
+                boolean stepFailed = true;
+                try {
+                    result = plan.invoke(service, args);
+                    stepFailed = false;
+                } finally {
+                    steps.add(new InvocationTrace.Step(InvocationTrace.Phase.INVOCATION, method.getName(), System.nanoTime() - stepStart, stepFailed));
+                }
+            }
+            for (int i = 0; i < chain.afterInterceptors.length; i++) {
+                long stepStart = System.nanoTime();
+                boolean stepFailed = true;
+                try {
+                    interceptAfter(chain, i, service, method, args, result);
+                    stepFailed = false;
+                } finally {
+                    steps.add(new InvocationTrace.Step(InvocationTrace.Phase.AFTER, interceptorName(chain.afterInterceptors[i]), System.nanoTime() - stepStart, stepFailed));
+                }
+            }
+            return result;
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            if (context != null)
+                context.end();
+            String failureDescription = (failure != null) ? failure.getClass().getName() + ": " + failure.getMessage() : null;
+            InvocationTracing.record(new InvocationTrace(service.getClass().getName(), method.getName(), Thread.currentThread().getName(), timestamp, System.nanoTime() - start, failureDescription, steps));
+        }
+    }
+
+    private static String interceptorName(MethodInterceptor<?> interceptor) {
+        //interceptors which are services are proxied
+        if (interceptor instanceof it.water.core.api.interceptors.Proxy)
+            return ((it.water.core.api.interceptors.Proxy) interceptor).getOriginalConcreteClass().getSimpleName();
+        return interceptor.getClass().getSimpleName();
     }
 
     /**
-     * Method which scans method searching for annotations extending WaterInterceptorExecutor.
-     * If found this means that the current field must be intercepted by the defined interceptor inside the annotation ir a registered interceptor component..
-     *
-     * @param service
-     * @param method
-     * @param args
-     * @param result
-     * @param interceptorClass
-     * @throws NoSuchMethodException
+     * Runs before method interceptors on the caller thread, then invokes the method on the AsyncMethodExecutor component
+     * with the caller security context. After method interceptors run when the future returned by the method completes.
+     * If no AsyncMethodExecutor is registered the method runs on the caller thread.
      */
-    private void interceptAnnotationsOnMethod(S service, Method method, Object[] args, Object result, @SuppressWarnings("rawtypes") Class<? extends MethodInterceptor> interceptorClass) throws NoSuchMethodException {
+    private CompletableFuture<Object> invokeAsync(S service, InvocationPlan plan, InterceptorChain chain, Object[] args) {
+        Method method = plan.getMethod();
+        InvocationContext context = InvocationContext.begin(service, method, args);
         try {
-            Annotation[] annotations = service.getClass().getMethod(method.getName(), method.getParameterTypes()).getDeclaredAnnotations();
-            for (int i = 0; i < annotations.length; i++) {
-                Annotation annotation = annotations[i];
-                //trying to intercept first looking at annotation definition, if it contains WaterInterceptorExecutor annotation definition which specifies the implementation
-                boolean intercepted = interceptBasedOnAnnotationInterceptorExecutor(annotation, null, service, method, args, result, interceptorClass);
-                //if no annotation WaterInterceptorExecutor is found then we search inside the registry for an implementation for that interceptor
-                if (!intercepted)
-                    interceptBasedOnRegisterdInterceptorExecutor(annotation, null, service, method, args, result, interceptorClass);
+            doInterceptionBeforeMethod(chain, service, method, args);
+            if (context.isInvocationSkipped()) {
+                Object result = context.getResult();
+                doInterceptionAfterMethod(chain, service, method, args, result);
+                context.end();
+                return CompletableFuture.completedFuture(result);
+            }
+        } catch (RuntimeException | Error e) {
+            context.end();
+            throw e;
+        }
+        //the invocation continues on the async thread
+        context.detach();
+        AsyncComponents asyncComponents = findAsyncComponents();
+        Runtime runtime = asyncComponents.runtime;
+        SecurityContext securityContext = (runtime != null) ? runtime.getSecurityContext() : null;
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            context.attach();
+            Object result;
+            try {
+                result = plan.invoke(service, args);
+            } catch (Throwable t) {
+                context.end();
+                future.completeExceptionally(t);
+                return;
             }
-        } catch (NoSuchMethodException e) {
-            log.debug(e.getMessage(), e);
+            context.detach();
+            if (result instanceof CompletionStage) {
+                //the returned future may be completed by any thread, so the security context is bound again
+                ((CompletionStage<?>) result).whenComplete((value, failure) -> runWithSecurityContext(runtime, securityContext, () -> completeAsync(chain, service, method, args, context, future, value, failure)));
+            } else if (result instanceof Future) {
+                //plain futures cannot notify their completion, so the async thread waits for their value
+                completeAsync(chain, service, method, args, context, future, (Future<?>) result);
+            } else {
+                completeAsync(chain, service, method, args, context, future, result, null);
+            }
+        };
+        try {
+            if (asyncComponents.executor != null)
+                asyncComponents.executor.execute(() -> runWithSecurityContext(runtime, securityContext, task));
+            else
+                task.run();
+        } catch (RejectedExecutionException e) {
+            context.attach();
+            context.end();
+            throw e;
         }
+        return future;
     }
 
     /**
-     * Method which searches for WaterInterceptorExecutor annotation definition and execute the interceptor configured inside the annotation
-     *
-     * @param annotation
-     * @param annotatedFields
-     * @param service
-     * @param method
-     * @param args
-     * @param result
-     * @param interceptorClass
-     * @return
+     * Waits for the future returned by an async method, then completes the future returned to the caller with its value.
      */
-    private boolean interceptBasedOnAnnotationInterceptorExecutor(Annotation annotation, List<Field> annotatedFields, S service, Method method, Object[] args, Object result, @SuppressWarnings("rawtypes") Class<? extends MethodInterceptor> interceptorClass) {
-        if (annotation.annotationType().isAnnotationPresent(InterceptorExecutor.class)) {
-            InterceptorExecutor interceptorAnnotation = annotation.annotationType().getDeclaredAnnotation(InterceptorExecutor.class);
-            Class<? extends MethodInterceptor<?>> executor = interceptorAnnotation.interceptor();
-            if (this.getComponentsRegistry() != null) {
-                MethodInterceptor<?> interceptor = this.getComponentsRegistry().findComponent(executor, null);
-                if (interceptorClass.isAssignableFrom(interceptor.getClass())) {
-                    doInterception(annotation, annotatedFields, service, method, args, result, interceptor);
-                }
-                return true;
-            }
+    private void completeAsync(InterceptorChain chain, S service, Method method, Object[] args, InvocationContext context, CompletableFuture<Object> future, Future<?> result) {
+        Object value = null;
+        Throwable failure = null;
+        try {
+            value = result.get();
+        } catch (ExecutionException e) {
+            failure = (e.getCause() != null) ? e.getCause() : e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        completeAsync(chain, service, method, args, context, future, value, failure);
+    }
+
+    /**
+     * Runs after method interceptors on the value produced by an async method and completes the future returned to the caller.
+     */
+    private void completeAsync(InterceptorChain chain, S service, Method method, Object[] args, InvocationContext context, CompletableFuture<Object> future, Object value, Throwable failure) {
+        Throwable error = (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure;
+        context.attach();
+        try {
+            if (error == null)
+                doInterceptionAfterMethod(chain, service, method, args, value);
+        } catch (RuntimeException | Error e) {
+            error = e;
+        } finally {
+            context.end();
         }
-        return false;
+        if (error != null)
+            future.completeExceptionally(error);
+        else
+            future.complete(value);
     }
 
     /**
-     * Method which searches for compoents exposed as a service implementing WaterInterceptorExecutor
+     * Searches the runtime and the async executor inside the registry, they are searched again only when the registry changes.
+     */
+    private AsyncComponents findAsyncComponents() {
+        ComponentRegistry registry = this.getComponentsRegistry();
+        if (registry == null)
+            return AsyncComponents.NONE;
+        long generation = registry.getGeneration();
+        AsyncComponents asyncComponents = lastAsyncComponents;
+        if (asyncComponents != null && asyncComponents.registry == registry && asyncComponents.generation == generation && generation != ComponentRegistry.UNTRACKED_GENERATION)
+            return asyncComponents;
+        Runtime runtime = registry.findComponentIfPresent(Runtime.class, null).orElse(null);
+        if (runtime == null)
+            log.debug("No runtime found, async invocation will not propagate the security context");
+        AsyncMethodExecutor executor = registry.findComponentIfPresent(AsyncMethodExecutor.class, null).orElse(null);
+        if (executor == null && !missingAsyncExecutorLogged) {
+            missingAsyncExecutorLogged = true;
+            log.warn("No AsyncMethodExecutor component found, @Async methods will run on the caller thread");
+        }
+        asyncComponents = new AsyncComponents(registry, generation, runtime, executor);
+        if (generation != ComponentRegistry.UNTRACKED_GENERATION)
+            lastAsyncComponents = asyncComponents;
+        return asyncComponents;
+    }
+
+    private static void runWithSecurityContext(Runtime runtime, SecurityContext securityContext, Runnable task) {
+        if (runtime != null)
+            runtime.runWithSecurityContext(securityContext, task);
+        else
+            task.run();
+    }
+
+    /**
+     * Runs before method interceptors, field interceptors receive the list of annotated fields
      *
-     * @param annotation
-     * @param annotatedFields
+     * @param chain
      * @param service
      * @param method
      * @param args
-     * @param result
-     * @param interceptorClass
-     * @return
      */
-    private boolean interceptBasedOnRegisterdInterceptorExecutor(Annotation annotation, List<Field> annotatedFields, S service, Method method, Object[] args, Object result, @SuppressWarnings("rawtypes") Class<? extends MethodInterceptor> interceptorClass) {
-        if (this.getComponentsRegistry() != null) {
-            //find the executor implementation based on registerd components which expose for example BeforeMethodInterceptor or AfterMethodInterceptor
-            try {
-                @SuppressWarnings("rawtypes")
-                List<? extends MethodInterceptor> interceptors = this.getComponentsRegistry().findComponents(interceptorClass, null);
-                //Filter amongs all interceptors which use the same annotation
-                @SuppressWarnings("rawtypes")
-                Optional<? extends MethodInterceptor> executor = interceptors.stream().filter(interceptor -> interceptor.getAnnotation().equals(annotation.annotationType())).findFirst();
-                //if an interceptor is matched then run the interception
-                if (executor.isPresent()) {
-                    if (interceptorClass.isAssignableFrom(executor.get().getClass())) {
-                        doInterception(annotation, annotatedFields, service, method, args, result, executor.get());
-                    }
-                    return true;
-                }
-            } catch (NoComponentRegistryFoundException e) {
-                log.debug("No component found for: {}", interceptorClass);
-            }
-        }
-        return false;
+    private void doInterceptionBeforeMethod(InterceptorChain chain, S service, Method method, Object[] args) {
+        for (int i = 0; i < chain.beforeInterceptors.length; i++)
+            interceptBefore(chain, i, service, method, args);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void interceptBefore(InterceptorChain chain, int i, S service, Method method, Object[] args) {
+        MethodInterceptor<?> interceptor = chain.beforeInterceptors[i];
+        //first most specific types since BeforeMethodFieldInterceptor is also BeforeMethodInterceptor
+        if (interceptor instanceof BeforeMethodFieldInterceptor)
+            ((BeforeMethodFieldInterceptor) interceptor).interceptMethod(service, method, chain.beforeFields[i], args, chain.beforeAnnotations[i]);
+        else
+            ((BeforeMethodInterceptor) interceptor).interceptMethod(service, method, args, chain.beforeAnnotations[i]);
     }
 
     /**
-     * Method which executes interception logic on field or methods based on the current interceptor type
+     * Runs after method interceptors, field interceptors receive the list of annotated fields
      *
-     * @param annotation
-     * @param annotatedFields
+     * @param chain
      * @param service
      * @param method
      * @param args
      * @param result
-     * @param interceptor
      */
-    private void doInterception(Annotation annotation, List<Field> annotatedFields, S service, Method method, Object[] args, Object result, MethodInterceptor<?> interceptor) {
-        //avoiding calling after method with before methods
-        if (interceptor != null) {
-            //first most specific types since BeforeMethodFieldInterceptor is also BeforeMethodInterceptor
-            if (BeforeMethodFieldInterceptor.class.isAssignableFrom(interceptor.getClass())) {
-                @SuppressWarnings({ "rawtypes", "unchecked" })
-                BeforeMethodFieldInterceptor<Annotation> beforeInterceptor = (BeforeMethodFieldInterceptor) interceptor;
-                beforeInterceptor.interceptMethod(service, method, annotatedFields, args, annotation);
-            } else if (AfterMethodFieldInterceptor.class.isAssignableFrom(interceptor.getClass())) {
-                @SuppressWarnings({ "rawtypes", "unchecked" })
-                AfterMethodFieldInterceptor<Annotation> afterInterceptor = (AfterMethodFieldInterceptor) interceptor;
-                afterInterceptor.interceptMethod(service, method, annotatedFields, args, annotation);
-            }
-            //Then we compare generic types
-            else if (BeforeMethodInterceptor.class.isAssignableFrom(interceptor.getClass())) {
-                @SuppressWarnings({ "rawtypes", "unchecked" })
-                BeforeMethodInterceptor<Annotation> beforeInterceptor = (BeforeMethodInterceptor) interceptor;
-                beforeInterceptor.interceptMethod(service, method, args, annotation);
-            } else if (AfterMethodInterceptor.class.isAssignableFrom(interceptor.getClass())) {
-                @SuppressWarnings({ "rawtypes", "unchecked" })
-                AfterMethodInterceptor<Annotation> afterInterceptor = (AfterMethodInterceptor) interceptor;
-                afterInterceptor.interceptMethod(service, method, args, result, annotation);
-            }
-        }
+    private void doInterceptionAfterMethod(InterceptorChain chain, S service, Method method, Object[] args, Object result) {
+        for (int i = 0; i < chain.afterInterceptors.length; i++)
+            interceptAfter(chain, i, service, method, args, result);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void interceptAfter(InterceptorChain chain, int i, S service, Method method, Object[] args, Object result) {
+        MethodInterceptor<?> interceptor = chain.afterInterceptors[i];
+        if (interceptor instanceof AfterMethodFieldInterceptor)
+            ((AfterMethodFieldInterceptor) interceptor).interceptMethod(service, method, chain.afterFields[i], args, chain.afterAnnotations[i]);
+        else
+            ((AfterMethodInterceptor) interceptor).interceptMethod(service, method, args, result, chain.afterAnnotations[i]);
     }
 
     /**
-     * Returs all declared fields inside a class
-     *
-     * @param service
-     * @return
+     * Components used by @Async methods for a specific registry generation
      */
-    private Field[] getAllDeclaredFields(S service) {
-        List<Field> fieldsList = new ArrayList<>();
-        Class<?> currentClass = service.getClass();
-        while (currentClass != null) {
-            Field[] fields = currentClass.getDeclaredFields();
-            fieldsList.addAll(Arrays.asList(fields));
-            Class<?> superclass = currentClass.getSuperclass();
-            if (!superclass.equals(currentClass) && Service.class.isAssignableFrom(superclass))
-                currentClass = superclass;
-            else currentClass = null;
+    private static class AsyncComponents {
+        private static final AsyncComponents NONE = new AsyncComponents(null, ComponentRegistry.UNTRACKED_GENERATION, null, null);
+        private final ComponentRegistry registry;
+        private final long generation;
+        private final Runtime runtime;
+        private final AsyncMethodExecutor executor;
+
+        private AsyncComponents(ComponentRegistry registry, long generation, Runtime runtime, AsyncMethodExecutor executor) {
+            this.registry = registry;
+            this.generation = generation;
+            this.runtime = runtime;
+            this.executor = executor;
         }
-        Field[] fields = new Field[fieldsList.size()];
-        return fieldsList.toArray(fields);
     }
 }
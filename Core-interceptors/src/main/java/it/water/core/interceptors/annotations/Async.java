@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @Author Aristide Cittadino
+ * Runs the annotated service method on a separate thread, taken from the bounded pool of the AsyncMethodExecutor component.
+ * When the pool and its queue are full the invocation is rejected with RejectedExecutionException.
+ * The method must return CompletableFuture (or CompletionStage, Future) or void: the proxy returns to the caller a future
+ * completed with the value of the future returned by the method, for example CompletableFuture.completedFuture(result).
+ * A Future which is not a CompletionStage cannot notify its completion, so the async thread waits for its value.
+ * Before method interceptors run on the caller thread, so their exceptions are thrown to the caller,
+ * while after method interceptors run when the method completes and receive the future value.
+ * The method runs with the security context of the caller.
+ */
+@Target({ElementType.METHOD})
+@Retention(value = RetentionPolicy.RUNTIME)
+public @interface Async {
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations;
+
+import it.water.core.api.interceptors.UsesInvocationContext;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author Aristide Cittadino
+ * Memoizes the return value of read methods like find or countAll.
+ * Results are cached per method and keyed by the method arguments (queries are compared by their definition).
+ * Every annotated method has its own cache configured by this annotation.
+ * Cached values are returned as they are, so callers must not modify them.
+ * Entries are not invalidated by writes, they expire after timeToLive.
+ * Results are cached only when the method is invoked through a Water proxy, which exposes the InvocationContext,
+ * otherwise the method runs without caching.
+ */
+@Target({ElementType.METHOD})
+@Retention(value = RetentionPolicy.RUNTIME)
+@UsesInvocationContext
+public @interface CacheResult {
+    /**
+     * Maximum number of entries kept for the annotated method
+     */
+    int maxSize() default 1000;
+
+    /**
+     * Time to live of each entry, values less or equal to 0 mean no expiration
+     */
+    long timeToLive() default 60;
+
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * Which entry is removed when the cache is full
+     */
+    Eviction eviction() default Eviction.LRU;
+
+    /**
+     * When true results are cached per logged user, use it for methods whose result depends on the caller permissions
+     */
+    boolean perUser() default true;
+
+    enum Eviction {
+        /**
+         * Removes the least recently used entry
+         */
+        LRU,
+        /**
+         * Removes the oldest inserted entry
+         */
+        FIFO
+    }
+}
@@ -50,4 +50,13 @@ public @interface FrameworkComponent {
      * @return
      */
     int priority() default 1;
+
+    /**
+     * Lazy components are created, injected and activated the first time they are looked up,
+     * instead of at application startup.
+     * It is honoured only by runtimes whose component registry supports lazy components.
+     *
+     * @return true if the component must be created on first lookup
+     */
+    boolean lazy() default false;
 }
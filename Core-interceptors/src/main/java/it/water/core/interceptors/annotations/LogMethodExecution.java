@@ -25,4 +25,9 @@ import java.lang.annotation.Target;
 @Retention(value = RetentionPolicy.RUNTIME)
 public @interface LogMethodExecution {
     boolean logDebug() default true;
+
+    /**
+     * Maximum number of characters rendered for each argument, longer values are truncated
+     */
+    int maxArgumentLength() default 256;
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations;
+
+import it.water.core.api.interceptors.UsesInvocationContext;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author Aristide Cittadino
+ * Coalesces concurrent invocations of the annotated method with the same arguments.
+ * The first invocation (leader) runs, the others wait for its result instead of invoking the method again.
+ * If the leader fails or does not complete within maxWait, waiting invocations run the method on their own.
+ * The same result instance is returned to all coalesced callers, so they must not modify it.
+ */
+@Target({ElementType.METHOD})
+@Retention(value = RetentionPolicy.RUNTIME)
+@UsesInvocationContext
+public @interface SingleFlight {
+    /**
+     * Maximum time an invocation waits for the leader result, values less or equal to 0 mean waiting until the leader completes
+     */
+    long maxWait() default 5;
+
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * When true only invocations of the same logged user are coalesced
+     */
+    boolean perUser() default true;
+}
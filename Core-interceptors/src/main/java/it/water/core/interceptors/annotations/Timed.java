@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations;
+
+import it.water.core.api.interceptors.UsesInvocationContext;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @Author Aristide Cittadino
+ * Records the latency of the annotated method in a histogram per service class and method.
+ * Latencies are exposed by the MethodMetrics component and, optionally, as JMX MBeans.
+ */
+@Target({ElementType.METHOD})
+@Retention(value = RetentionPolicy.RUNTIME)
+@UsesInvocationContext
+public @interface Timed {
+    /**
+     * When true the method latency is registered as an MBean under the it.water.core domain
+     */
+    boolean jmx() default true;
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @Author Aristide Cittadino
+ * Asynchronous appender for method execution logs.
+ * Messages are rendered by the caller, so arguments are read on the invoking thread and inside its transaction,
+ * then they are stored inside a preallocated ring buffer slot and written by a single background thread.
+ * When the buffer is full events are dropped and the number of dropped events is logged later,
+ * so callers are never blocked by logging.
+ * The background thread is started on the first event and stopped by shutdown, after writing pending events.
+ * A new event published after shutdown starts it again.
+ * The consumer thread is started and stopped through compare and set, so producers never wait for a shutdown in progress.
+ */
+final class AsyncLogAppender {
+    private static Logger log = LoggerFactory.getLogger(AsyncLogAppender.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicReference<Thread> consumer = new AtomicReference<>();
+    //held by the consumer thread, so a restarted consumer waits for the previous one to finish
+    private final Object consumerLock = new Object();
+    private long head;
+    private long reportedDrops;
+    private volatile boolean consumerSleeping;
+
+    /**
+     * @param capacity ring buffer size, rounded up to a power of 2
+     */
+    AsyncLogAppender(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++)
+            slots[i] = new Slot(i);
+    }
+
+    /**
+     * Renders the method execution message.
+     *
+     * @param methodName        invoked method
+     * @param args              method arguments, can be null
+     * @param maxArgumentLength maximum number of characters rendered for each argument, negative for no limit
+     * @return the message to log
+     */
+    static String render(String methodName, Object[] args, int maxArgumentLength) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Invoking ").append(methodName);
+        if (args != null && args.length > 0) {
+            sb.append(", args: ");
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0)
+                    sb.append(", ");
+                appendArgument(sb, args[i], maxArgumentLength);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Enqueues a method execution log event.
+     *
+     * @param logger  logger used to write the message
+     * @param debug   true to log at debug level, false for info level
+     * @param message message already rendered by the caller
+     * @return false if the event has been dropped because the buffer is full
+     */
+    boolean append(Logger logger, boolean debug, String message) {
+        long position = tail.get();
+        Slot slot;
+        while (true) {
+            slot = slots[(int) (position & mask)];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1))
+                    break;
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        slot.logger = logger;
+        slot.debug = debug;
+        slot.message = message;
+        //publishing the slot to the consumer
+        slot.sequence = position + 1;
+        Thread currentConsumer = consumer.get();
+        if (currentConsumer == null)
+            startConsumer();
+        else if (consumerSleeping)
+            LockSupport.unpark(currentConsumer);
+        return true;
+    }
+
+    /**
+     * @return number of events dropped since the appender has been created
+     */
+    long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the background thread after it has written the pending events.
+     * Waits at most SHUTDOWN_TIMEOUT_MILLIS for the thread to finish.
+     */
+    void shutdown() {
+        Thread currentConsumer = consumer.getAndSet(null);
+        if (currentConsumer == null)
+            return;
+        LockSupport.unpark(currentConsumer);
+        try {
+            currentConsumer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (currentConsumer.isAlive())
+            log.warn("Method execution log writer did not stop in {} ms", SHUTDOWN_TIMEOUT_MILLIS);
+    }
+
+    private void startConsumer() {
+        Thread thread = new Thread(this::consume, "water-log-method-execution");
+        thread.setDaemon(true);
+        //only the producer which installs the thread starts it
+        if (consumer.compareAndSet(null, thread))
+            thread.start();
+    }
+
+    private void consume() {
+        synchronized (consumerLock) {
+            Thread self = Thread.currentThread();
+            while (consumer.get() == self) {
+                if (!writeNext()) {
+                    reportDrops();
+                    consumerSleeping = true;
+                    //checking again since a producer may have published before the flag was set
+                    if (consumer.get() == self && slots[(int) (head & mask)].sequence != head + 1)
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    consumerSleeping = false;
+                }
+            }
+            //writing events published before shutdown
+            while (writeNext()) {
+                //draining
+            }
+            reportDrops();
+        }
+    }
+
+    private void reportDrops() {
+        long drops = dropped.sum();
+        if (drops != reportedDrops) {
+            log.warn("{} method execution log events have been dropped, log buffer is full", drops - reportedDrops);
+            reportedDrops = drops;
+        }
+    }
+
+    /**
+     * Writes the next published event, if any.
+     *
+     * @return false if there are no events to write
+     */
+    private boolean writeNext() {
+        Slot slot = slots[(int) (head & mask)];
+        if (slot.sequence != head + 1)
+            return false;
+        try {
+            if (slot.debug)
+                slot.logger.debug(slot.message);
+            else
+                slot.logger.info(slot.message);
+        } catch (RuntimeException e) {
+            log.debug("Error while writing method execution log: {}", e.getMessage());
+        } finally {
+            slot.clear();
+            //releasing the slot to producers
+            slot.sequence = head + slots.length;
+            head++;
+        }
+        return true;
+    }
+
+    private static void appendArgument(StringBuilder sb, Object arg, int maxArgumentLength) {
+        String value;
+        try {
+            value = String.valueOf(arg);
+        } catch (RuntimeException e) {
+            value = "<" + arg.getClass().getName() + ">";
+        }
+        if (maxArgumentLength >= 0 && value.length() > maxArgumentLength)
+            sb.append(value, 0, maxArgumentLength).append("...");
+        else
+            sb.append(value);
+    }
+
+    /**
+     * Ring buffer slot, sequence tells whether the slot is free for the producer claiming that position
+     * or published for the consumer
+     */
+    private static class Slot {
+        private volatile long sequence;
+        private Logger logger;
+        private boolean debug;
+        private String message;
+
+        private Slot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        private void clear() {
+            logger = null;
+            message = null;
+        }
+    }
+}
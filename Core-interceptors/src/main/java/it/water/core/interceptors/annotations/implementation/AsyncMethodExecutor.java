@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.interceptors.OnDeactivate;
+import it.water.core.interceptors.annotations.FrameworkComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author Aristide Cittadino
+ * Runs service methods annotated with @Async.
+ * Tasks are executed by a bounded pool of daemon threads with a bounded queue, when both are full new invocations
+ * are rejected with RejectedExecutionException. Threads are started on demand and stopped when idle.
+ * Pool size and queue size can be set with the water.core.async.threads and water.core.async.queue.size system properties.
+ * The pool is shut down when the component is deactivated, so it follows the component registry lifecycle.
+ */
+@FrameworkComponent(services = AsyncMethodExecutor.class)
+public class AsyncMethodExecutor {
+    private static Logger log = LoggerFactory.getLogger(AsyncMethodExecutor.class);
+    public static final String PROP_ASYNC_THREADS = "water.core.async.threads";
+    public static final String PROP_ASYNC_QUEUE_SIZE = "water.core.async.queue.size";
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * @param task task to run
+     * @throws java.util.concurrent.RejectedExecutionException if the pool and its queue are full or the executor has been shut down
+     */
+    public void execute(Runnable task) {
+        ThreadPoolExecutor currentExecutor = this.executor;
+        if (currentExecutor == null)
+            currentExecutor = getOrCreateExecutor();
+        currentExecutor.execute(task);
+    }
+
+    /**
+     * Stops accepting new tasks and waits for running ones to complete.
+     * A new pool is created if the component is used again.
+     */
+    @OnDeactivate
+    public synchronized void onDeactivate() {
+        ThreadPoolExecutor currentExecutor = this.executor;
+        if (currentExecutor == null)
+            return;
+        this.executor = null;
+        currentExecutor.shutdown();
+        try {
+            if (!currentExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                log.warn("Async methods still running after {} seconds, shutdown will not wait for them", SHUTDOWN_TIMEOUT_SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getOrCreateExecutor() {
+        if (executor == null) {
+            int threads = Math.max(1, Integer.getInteger(PROP_ASYNC_THREADS, java.lang.Runtime.getRuntime().availableProcessors() * 2));
+            int queueSize = Math.max(1, Integer.getInteger(PROP_ASYNC_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize), new AsyncThreadFactory());
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            log.debug("Async methods executor created with {} threads and queue size {}", threads, queueSize);
+            executor = threadPoolExecutor;
+        }
+        return executor;
+    }
+
+    private static class AsyncThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "water-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.interceptors.AfterMethodInterceptor;
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.InvocationContext;
+import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.CacheResult;
+import it.water.core.interceptors.annotations.FrameworkComponent;
+import it.water.core.interceptors.annotations.Inject;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Aristide Cittadino
+ * <p>
+ * Memoizes results of methods annotated with CacheResult.
+ * Before the invocation the cache of the method is checked and, on hit, the service invocation is skipped
+ * returning the cached value. Other interceptors (like permission checks) still run.
+ * After a successful invocation the result is stored. Methods which throw exceptions are never cached.
+ * Caching requires the InvocationContext created by Water proxies: services invoked without it run normally
+ * without caching, and a warning is logged once for each method.
+ */
+@FrameworkComponent(services = {BeforeMethodInterceptor.class, AfterMethodInterceptor.class})
+public class CacheResultInterceptor implements BeforeMethodInterceptor<CacheResult>, AfterMethodInterceptor<CacheResult> {
+    private static Logger log = LoggerFactory.getLogger(CacheResultInterceptor.class);
+    private static final Object CACHE_KEY_ATTRIBUTE = new Object();
+
+    @Inject(injectOnceAtStartup = true)
+    @Setter
+    @Getter
+    private ComponentRegistry componentRegistry;
+
+    private Map<Class<?>, Map<Method, ResultCache>> caches;
+    private Set<Method> methodsWithoutContext;
+    private CurrentUserResolver currentUserResolver;
+
+    public CacheResultInterceptor() {
+        caches = new ConcurrentHashMap<>();
+        methodsWithoutContext = ConcurrentHashMap.newKeySet();
+        currentUserResolver = new CurrentUserResolver();
+    }
+
+    @Override
+    public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, CacheResult annotation) {
+        InvocationContext context = InvocationContext.find(destination, m);
+        //results can be served from the cache only when the proxy exposes the invocation context
+        if (context == null) {
+            if (methodsWithoutContext.add(m))
+                log.warn("Method {}.{} is not invoked through a proxy exposing the invocation context, @CacheResult is ignored", m.getDeclaringClass().getName(), m.getName());
+            return;
+        }
+        if (context.isInvocationSkipped())
+            return;
+        ResultCache cache = getCache(destination, m, annotation);
+        InvocationKey key = InvocationKey.of(destination.getClass(), m, annotation.perUser() ? currentUserResolver.currentUser(componentRegistry) : null, args);
+        Object cachedResult = cache.get(key);
+        if (cachedResult != ResultCache.MISS) {
+            log.debug("Returning cached result for method {}", m.getName());
+            context.skipInvocation(cachedResult);
+        } else {
+            context.setAttribute(CACHE_KEY_ATTRIBUTE, key);
+        }
+    }
+
+    @Override
+    public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, Object returnResult, CacheResult annotation) {
+        InvocationContext context = InvocationContext.find(destination, m);
+        if (context == null || context.isInvocationSkipped())
+            return;
+        InvocationKey key = context.getAttribute(CACHE_KEY_ATTRIBUTE);
+        if (key != null)
+            getCache(destination, m, annotation).put(key, returnResult);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Class getAnnotation() {
+        return CacheResult.class;
+    }
+
+    /**
+     * Removes all cached results of the given service class
+     *
+     * @param serviceClass concrete service class
+     */
+    public void invalidate(Class<?> serviceClass) {
+        Map<Method, ResultCache> serviceCaches = caches.get(serviceClass);
+        if (serviceCaches != null)
+            serviceCaches.values().forEach(ResultCache::clear);
+    }
+
+    /**
+     * Removes all cached results
+     */
+    public void invalidateAll() {
+        caches.values().forEach(serviceCaches -> serviceCaches.values().forEach(ResultCache::clear));
+    }
+
+    private ResultCache getCache(Object destination, Method m, CacheResult annotation) {
+        return caches.computeIfAbsent(destination.getClass(), serviceClass -> new ConcurrentHashMap<>())
+                .computeIfAbsent(m, method -> new ResultCache(annotation.maxSize(), annotation.timeUnit().toNanos(annotation.timeToLive()), annotation.eviction() == CacheResult.Eviction.LRU));
+    }
+}
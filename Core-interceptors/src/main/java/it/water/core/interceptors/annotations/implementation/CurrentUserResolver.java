@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.bundle.Runtime;
+import it.water.core.api.permission.SecurityContext;
+import it.water.core.api.registry.ComponentRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @Author Aristide Cittadino
+ * Returns the user logged on the current thread.
+ * The runtime is looked up once per registry generation.
+ */
+final class CurrentUserResolver {
+    private static Logger log = LoggerFactory.getLogger(CurrentUserResolver.class);
+
+    private volatile RuntimeReference runtimeReference;
+
+    /**
+     * @param componentRegistry registry used to find the runtime, can be null
+     * @return the logged username or null if no user is logged
+     */
+    String currentUser(ComponentRegistry componentRegistry) {
+        Runtime runtime = findRuntime(componentRegistry);
+        SecurityContext securityContext = (runtime != null) ? runtime.getSecurityContext() : null;
+        return (securityContext != null) ? securityContext.getLoggedUsername() : null;
+    }
+
+    private Runtime findRuntime(ComponentRegistry componentRegistry) {
+        if (componentRegistry == null)
+            return null;
+        long generation = componentRegistry.getGeneration();
+        RuntimeReference reference = runtimeReference;
+        if (reference != null && reference.registry == componentRegistry && generation != ComponentRegistry.UNTRACKED_GENERATION && reference.generation == generation)
+            return reference.runtime;
+        Runtime runtime = componentRegistry.findComponentIfPresent(Runtime.class, null).orElse(null);
+        if (runtime == null)
+            log.debug("No runtime found, user scope not available");
+        runtimeReference = new RuntimeReference(componentRegistry, runtime, generation);
+        return runtime;
+    }
+
+    private static final class RuntimeReference {
+        private final ComponentRegistry registry;
+        private final Runtime runtime;
+        private final long generation;
+
+        private RuntimeReference(ComponentRegistry registry, Runtime runtime, long generation) {
+            this.registry = registry;
+            this.runtime = runtime;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.registry.ComponentNotFound;
+import it.water.core.api.registry.ComponentRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Aristide Cittadino
+ * Injection data for a field annotated with @Inject on a specific class.
+ * Setter and field getter are resolved once as MethodHandles.
+ * The component found inside the registry, or its absence, is reused until the registry generation changes,
+ * and the setter is invoked only when the field does not already contain that component.
+ * When nothing has ever been registered for the field type the field is not modified,
+ * when the type is registered but no component is available anymore the field is set to null.
+ */
+final class InjectedField {
+    private static Logger log = LoggerFactory.getLogger(InjectedField.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    //marks field types which have no registration inside the registry
+    private static final Object NOT_REGISTERED = new Object();
+
+    private static final ClassValue<Map<Field, InjectedField>> injectedFields = new ClassValue<>() {
+        @Override
+        protected Map<Field, InjectedField> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Field field;
+    //null if the class does not define a setter for the field
+    private final MethodHandle setter;
+    //null if the field cannot be read, in that case the setter is always invoked
+    private final MethodHandle getter;
+    private volatile ResolvedComponent resolvedComponent;
+
+    private InjectedField(Class<?> destinationClass, Field field) {
+        this.field = field;
+        this.setter = findSetter(destinationClass, field);
+        this.getter = (setter != null) ? findGetter(field) : null;
+    }
+
+    static InjectedField forField(Class<?> destinationClass, Field field) {
+        Map<Field, InjectedField> classFields = injectedFields.get(destinationClass);
+        InjectedField injectedField = classFields.get(field);
+        if (injectedField == null)
+            injectedField = classFields.computeIfAbsent(field, key -> new InjectedField(destinationClass, key));
+        return injectedField;
+    }
+
+    /**
+     * Injects the component registered for the field type into the destination object.
+     *
+     * @param componentRegistry registry used to find the component
+     * @param destination       object which declares the field
+     */
+    void inject(ComponentRegistry componentRegistry, Object destination) {
+        if (setter == null)
+            return;
+        Object component = findComponent(componentRegistry);
+        //nothing registered for the field type, the current value is left untouched
+        if (component == NOT_REGISTERED)
+            return;
+        try {
+            if (getter != null && (Object) getter.invokeExact(destination) == component)
+                return;
+            log.debug("Setting field {} on {}", field.getName(), destination.getClass().getName());
+            setter.invokeExact(destination, component);
+        } catch (Throwable t) {
+            log.error("Cannot inject {} field, error while invoking setter method {},", field, t.getMessage(), t);
+        }
+    }
+
+    private Object findComponent(ComponentRegistry componentRegistry) {
+        long generation = componentRegistry.getGeneration();
+        ResolvedComponent current = this.resolvedComponent;
+        if (current != null && current.registry == componentRegistry && current.generation == generation && generation != ComponentRegistry.UNTRACKED_GENERATION)
+            return current.component;
+        Object component;
+        try {
+            component = componentRegistry.findComponent(field.getType(), null);
+        } catch (RuntimeException e) {
+            if (!(e instanceof ComponentNotFound))
+                throw e;
+            log.debug("No component found for {} not injecting", field.getType());
+            component = NOT_REGISTERED;
+        }
+        this.resolvedComponent = new ResolvedComponent(componentRegistry, generation, component);
+        return component;
+    }
+
+    private static MethodHandle findSetter(Class<?> destinationClass, Field field) {
+        try {
+            Method setterMethod = WaterComponentsInjector.findSetterMethod(destinationClass, field.getName(), field.getType());
+            return MethodHandles.lookup().unreflect(setterMethod).asType(SETTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            log.error("Cannot inject {} field, no accessible setter method found on {}", field, destinationClass.getName());
+            return null;
+        }
+    }
+
+    private static MethodHandle findGetter(Field field) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            log.debug("Field {} cannot be read, setter will be always invoked", field);
+            return null;
+        }
+    }
+
+    /**
+     * Component found inside the registry for a specific registry generation
+     */
+    private static class ResolvedComponent {
+        private final ComponentRegistry registry;
+        private final long generation;
+        private final Object component;
+
+        private ResolvedComponent(ComponentRegistry registry, long generation, Object component) {
+            this.registry = registry;
+            this.generation = generation;
+            this.component = component;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.repository.query.Query;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * @Author Aristide Cittadino
+ * Identifies an invocation by service class, method, caller scope and arguments.
+ * Used by interceptors which share results between identical invocations.
+ */
+final class InvocationKey {
+    private static final int ARGS_OFFSET = 3;
+    private final Object[] values;
+    private final int hash;
+
+    private InvocationKey(Object[] values) {
+        this.values = values;
+        this.hash = Arrays.deepHashCode(values);
+    }
+
+    /**
+     * @param serviceClass concrete service class
+     * @param method       invoked method
+     * @param scope        value which separates invocations of different callers, can be null
+     * @param args         method arguments
+     * @return the key identifying the invocation
+     */
+    static InvocationKey of(Class<?> serviceClass, Method method, Object scope, Object[] args) {
+        Object[] values = new Object[args != null ? args.length + ARGS_OFFSET : ARGS_OFFSET];
+        values[0] = serviceClass;
+        values[1] = method;
+        values[2] = scope;
+        for (int i = ARGS_OFFSET; i < values.length; i++) {
+            Object arg = args[i - ARGS_OFFSET];
+            //queries do not implement equals, their definition identifies them
+            values[i] = (arg instanceof Query) ? ((Query) arg).getDefinition() : arg;
+        }
+        return new InvocationKey(values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof InvocationKey))
+            return false;
+        InvocationKey other = (InvocationKey) o;
+        return hash == other.hash && Arrays.deepEquals(values, other.values);
+    }
+}
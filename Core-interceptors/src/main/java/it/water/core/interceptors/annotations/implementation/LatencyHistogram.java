@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author Aristide Cittadino
+ * Lock free histogram of non negative values with logarithmic buckets, in the style of HdrHistogram.
+ * Each power of 2 is split in 32 linear sub buckets, so recorded values are approximated with a relative error below 3%
+ * using a fixed amount of memory. Recording is a single atomic increment.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        long recordedValue = Math.max(0, value);
+        counts.incrementAndGet(bucketIndex(recordedValue));
+        sum.add(recordedValue);
+        long currentMax = max.get();
+        while (recordedValue > currentMax && !max.compareAndSet(currentMax, recordedValue))
+            currentMax = max.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return counts of each bucket, copied so that percentiles are computed on a consistent view
+     */
+    long[] snapshot() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            snapshot[i] = counts.get(i);
+        return snapshot;
+    }
+
+    static long count(long[] snapshot) {
+        long count = 0;
+        for (long bucketCount : snapshot)
+            count += bucketCount;
+        return count;
+    }
+
+    /**
+     * @param snapshot   bucket counts
+     * @param percentile percentile between 0 and 100
+     * @return highest value equivalent to the bucket containing the percentile, 0 if nothing has been recorded
+     */
+    static long valueAtPercentile(long[] snapshot, double percentile) {
+        long count = count(snapshot);
+        if (count == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long cumulative = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target)
+                return highestEquivalentValue(i);
+        }
+        return highestEquivalentValue(snapshot.length - 1);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+        return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestEquivalentValue(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT)
+            return bucketIndex;
+        int exponent = (bucketIndex - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS;
+        int subBucket = (bucketIndex - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + subBucket * width + width - 1;
+    }
+}
@@ -17,6 +17,7 @@
 package it.water.core.interceptors.annotations.implementation;
 
 import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.OnDeactivate;
 import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.service.Service;
 import it.water.core.interceptors.WaterAbstractInterceptor;
@@ -31,42 +32,46 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @Author Aristide Cittadino
  * <p>
  * Logs every method or class annotated with LogMethodExecution.
+ * The log level is checked before rendering anything, then arguments (truncated to LogMethodExecution.maxArgumentLength)
+ * are rendered on the invoking thread and the message is handed to an asynchronous appender shared by all instances,
+ * which writes it on a background thread. The writer thread is stopped when the interceptor is deactivated.
  */
 @FrameworkComponent(services = {BeforeMethodInterceptor.class})
 public class LogMethodExecutionInterceptor extends WaterAbstractInterceptor<Service> implements BeforeMethodInterceptor<LogMethodExecution> {
+    private static final int LOG_BUFFER_SIZE = 8192;
+
     @Inject
     @Setter
     @Getter
     private ComponentRegistry componentsRegistry;
 
+    private static final AsyncLogAppender appender = new AsyncLogAppender(LOG_BUFFER_SIZE);
+
     private Map<Class<?>, Logger> loggersMap;
 
     public LogMethodExecutionInterceptor() {
-        loggersMap = new HashMap<>();
+        loggersMap = new ConcurrentHashMap<>();
+    }
+
+    @OnDeactivate
+    public void onDeactivate() {
+        appender.shutdown();
     }
 
     @Override
     public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, LogMethodExecution annotation) {
         Class<?> destinationRealClass = computeServiceClass(destination);
-        loggersMap.computeIfAbsent(destinationRealClass, key -> LoggerFactory.getLogger(destinationRealClass));
-        StringBuilder sb = new StringBuilder();
-        sb.append("Invoking " + m.getName());
-        if (args.length > 0)
-            sb.append(", args: ");
-        Arrays.stream(args).forEach(arg -> sb.append(arg.toString()));
-        if (annotation.logDebug() && loggersMap.get(destinationRealClass).isDebugEnabled()) {
-            loggersMap.get(destinationRealClass).debug(sb.toString());
-        } else {
-            loggersMap.get(destinationRealClass).info(sb.toString());
-        }
+        Logger logger = loggersMap.computeIfAbsent(destinationRealClass, LoggerFactory::getLogger);
+        boolean debug = annotation.logDebug() && logger.isDebugEnabled();
+        if (debug || logger.isInfoEnabled())
+            appender.append(logger, debug, AsyncLogAppender.render(m.getName(), args, annotation.maxArgumentLength()));
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
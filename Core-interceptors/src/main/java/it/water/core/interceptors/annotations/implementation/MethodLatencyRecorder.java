@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.metrics.MethodLatency;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * @Author Aristide Cittadino
+ * Latencies recorded for a single method of a service class.
+ */
+final class MethodLatencyRecorder implements MethodLatency, MethodLatencyMXBean {
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String serviceClassName;
+    private final String methodSignature;
+    private final LatencyHistogram histogram;
+    private final LongAdder errorCount;
+
+    MethodLatencyRecorder(Class<?> serviceClass, Method method) {
+        this.serviceClassName = serviceClass.getName();
+        this.methodSignature = signature(method);
+        this.histogram = new LatencyHistogram();
+        this.errorCount = new LongAdder();
+    }
+
+    static String signature(Method method) {
+        return method.getName() + Arrays.stream(method.getParameterTypes()).map(Class::getSimpleName).collect(Collectors.joining(",", "(", ")"));
+    }
+
+    void recordSuccess(long latencyNanos) {
+        histogram.record(latencyNanos);
+    }
+
+    void recordError() {
+        errorCount.increment();
+    }
+
+    boolean matches(String method) {
+        return methodSignature.equals(method) || (methodSignature.startsWith(method) && methodSignature.charAt(method.length()) == '(');
+    }
+
+    @Override
+    public String getServiceClassName() {
+        return serviceClassName;
+    }
+
+    @Override
+    public String getMethodSignature() {
+        return methodSignature;
+    }
+
+    @Override
+    public long getCount() {
+        return LatencyHistogram.count(histogram.snapshot());
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) histogram.getSum() / count;
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return histogram.getMax();
+    }
+
+    @Override
+    public long getPercentileNanos(double percentile) {
+        return Math.min(LatencyHistogram.valueAtPercentile(histogram.snapshot(), percentile), histogram.getMax());
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return getMaxNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return getPercentileNanos(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return getPercentileNanos(90) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return getPercentileNanos(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return getPercentileNanos(99.9) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @Author Aristide Cittadino
+ * Bounded cache of method results used by CacheResultInterceptor.
+ * Entries expire after the configured time to live and, when the cache is full, the least recently used
+ * or the oldest inserted entry is removed.
+ */
+final class ResultCache {
+    /**
+     * Returned by get when no valid entry has been found
+     */
+    static final Object MISS = new Object();
+
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final LinkedHashMap<InvocationKey, Entry> entries;
+
+    ResultCache(int maxSize, long timeToLiveNanos, boolean accessOrder) {
+        this.maxSize = Math.max(1, maxSize);
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.entries = new LinkedHashMap<>(16, 0.75f, accessOrder) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InvocationKey, Entry> eldest) {
+                return size() > ResultCache.this.maxSize;
+            }
+        };
+    }
+
+    synchronized Object get(InvocationKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return MISS;
+        if (timeToLiveNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(key);
+            return MISS;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(InvocationKey key, Object value) {
+        entries.put(key, new Entry(value, System.nanoTime() + timeToLiveNanos));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
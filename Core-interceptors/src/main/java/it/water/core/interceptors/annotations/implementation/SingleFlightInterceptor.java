@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.interceptors.AfterMethodInterceptor;
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.InvocationContext;
+import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.FrameworkComponent;
+import it.water.core.interceptors.annotations.Inject;
+import it.water.core.interceptors.annotations.SingleFlight;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @Author Aristide Cittadino
+ * <p>
+ * Coalesces concurrent identical invocations of methods annotated with SingleFlight.
+ * The first invocation becomes the leader and is registered as in flight, identical invocations arriving meanwhile
+ * wait for the leader result and skip the service invocation.
+ * The flight is released when the leader invocation completes, even if it fails: in that case waiting invocations
+ * run the method on their own.
+ */
+@FrameworkComponent(services = {BeforeMethodInterceptor.class, AfterMethodInterceptor.class})
+public class SingleFlightInterceptor implements BeforeMethodInterceptor<SingleFlight>, AfterMethodInterceptor<SingleFlight> {
+    private static Logger log = LoggerFactory.getLogger(SingleFlightInterceptor.class);
+    private static final Object FLIGHT_ATTRIBUTE = new Object();
+
+    @Inject(injectOnceAtStartup = true)
+    @Setter
+    @Getter
+    private ComponentRegistry componentRegistry;
+
+    private Map<InvocationKey, Flight> flights;
+    private CurrentUserResolver currentUserResolver;
+
+    public SingleFlightInterceptor() {
+        flights = new ConcurrentHashMap<>();
+        currentUserResolver = new CurrentUserResolver();
+    }
+
+    @Override
+    public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, SingleFlight annotation) {
+        InvocationContext context = InvocationContext.find(destination, m);
+        //invocations can be coalesced only when the proxy exposes the invocation context
+        if (context == null || context.isInvocationSkipped())
+            return;
+        InvocationKey key = InvocationKey.of(destination.getClass(), m, annotation.perUser() ? currentUserResolver.currentUser(componentRegistry) : null, args);
+        Flight flight = new Flight();
+        Flight inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight == null) {
+            context.setAttribute(FLIGHT_ATTRIBUTE, flight);
+            //releasing followers also when the leader fails, since after interceptors are not invoked
+            context.onCompletion(() -> {
+                flights.remove(key, flight);
+                flight.release();
+            });
+            return;
+        }
+        //reentrant invocations from the leader thread cannot wait for themselves
+        if (inFlight.leader == Thread.currentThread())
+            return;
+        Object result = inFlight.await(annotation.timeUnit().toNanos(annotation.maxWait()));
+        if (result != Flight.NO_RESULT) {
+            log.debug("Coalesced invocation of method {}", m.getName());
+            context.skipInvocation(result);
+        } else {
+            log.debug("No result from in flight invocation of method {}, invoking it", m.getName());
+        }
+    }
+
+    @Override
+    public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, Object returnResult, SingleFlight annotation) {
+        InvocationContext context = InvocationContext.find(destination, m);
+        if (context == null)
+            return;
+        Flight flight = context.getAttribute(FLIGHT_ATTRIBUTE);
+        if (flight != null)
+            flight.complete(returnResult);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Class getAnnotation() {
+        return SingleFlight.class;
+    }
+
+    /**
+     * @return number of invocations currently acting as leaders
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    private static final class Flight {
+        private static final Object NO_RESULT = new Object();
+        private final Thread leader = Thread.currentThread();
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private void complete(Object value) {
+            result.complete(value);
+        }
+
+        /**
+         * Lets followers go on if the leader has not produced a result
+         */
+        private void release() {
+            result.complete(NO_RESULT);
+        }
+
+        private Object await(long maxWaitNanos) {
+            try {
+                return (maxWaitNanos > 0) ? result.get(maxWaitNanos, TimeUnit.NANOSECONDS) : result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                log.debug("Stop waiting in flight invocation: {}", e.getMessage());
+            }
+            return NO_RESULT;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.annotations.implementation;
+
+import it.water.core.api.interceptors.AfterMethodInterceptor;
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.InvocationContext;
+import it.water.core.api.metrics.MethodLatency;
+import it.water.core.api.metrics.MethodMetrics;
+import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.FrameworkComponent;
+import it.water.core.interceptors.annotations.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Aristide Cittadino
+ * <p>
+ * Records latencies of methods annotated with Timed.
+ * The start time is taken before the invocation and the latency is recorded after it,
+ * invocations which throw an exception are counted as errors.
+ * The same component exposes recorded latencies as MethodMetrics.
+ */
+@FrameworkComponent(services = {BeforeMethodInterceptor.class, AfterMethodInterceptor.class, MethodMetrics.class})
+public class TimedInterceptor implements BeforeMethodInterceptor<Timed>, AfterMethodInterceptor<Timed>, MethodMetrics {
+    private static Logger log = LoggerFactory.getLogger(TimedInterceptor.class);
+    private static final String JMX_DOMAIN = "it.water.core";
+    private static final Object TIMING_ATTRIBUTE = new Object();
+
+    private Map<Class<?>, Map<Method, MethodLatencyRecorder>> recorders;
+
+    public TimedInterceptor() {
+        recorders = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, Timed annotation) {
+        InvocationContext context = InvocationContext.find(destination, m);
+        //latency can be measured only when the proxy exposes the invocation context
+        if (context == null)
+            return;
+        Timing timing = new Timing(getRecorder(destination.getClass(), m, annotation));
+        context.setAttribute(TIMING_ATTRIBUTE, timing);
+        context.onCompletion(timing::completed);
+    }
+
+    @Override
+    public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, Object returnResult, Timed annotation) {
+        InvocationContext context = InvocationContext.find(destination, m);
+        if (context == null)
+            return;
+        Timing timing = context.getAttribute(TIMING_ATTRIBUTE);
+        if (timing != null)
+            timing.succeeded();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Class getAnnotation() {
+        return Timed.class;
+    }
+
+    @Override
+    public Collection<MethodLatency> getMethodLatencies() {
+        List<MethodLatency> latencies = new ArrayList<>();
+        recorders.values().forEach(serviceRecorders -> latencies.addAll(serviceRecorders.values()));
+        return Collections.unmodifiableList(latencies);
+    }
+
+    @Override
+    public MethodLatency getMethodLatency(Class<?> serviceClass, String method) {
+        Map<Method, MethodLatencyRecorder> serviceRecorders = recorders.get(serviceClass);
+        if (serviceRecorders == null)
+            return null;
+        return serviceRecorders.values().stream().filter(recorder -> recorder.matches(method)).findFirst().orElse(null);
+    }
+
+    private MethodLatencyRecorder getRecorder(Class<?> serviceClass, Method m, Timed annotation) {
+        Map<Method, MethodLatencyRecorder> serviceRecorders = recorders.computeIfAbsent(serviceClass, key -> new ConcurrentHashMap<>());
+        MethodLatencyRecorder recorder = serviceRecorders.get(m);
+        if (recorder == null) {
+            recorder = serviceRecorders.computeIfAbsent(m, method -> {
+                MethodLatencyRecorder newRecorder = new MethodLatencyRecorder(serviceClass, method);
+                if (annotation.jmx())
+                    registerMBean(newRecorder);
+                return newRecorder;
+            });
+        }
+        return recorder;
+    }
+
+    private void registerMBean(MethodLatencyRecorder recorder) {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=MethodLatency,service=" + ObjectName.quote(recorder.getServiceClassName()) + ",method=" + ObjectName.quote(recorder.getMethodSignature()));
+            //replacing MBeans registered by previous instances, for example after a bundle restart
+            if (mBeanServer.isRegistered(objectName))
+                mBeanServer.unregisterMBean(objectName);
+            mBeanServer.registerMBean(recorder, objectName);
+        } catch (JMException | RuntimeException e) {
+            log.warn("Cannot register latency MBean for {}.{}: {}", recorder.getServiceClassName(), recorder.getMethodSignature(), e.getMessage());
+        }
+    }
+
+    private static final class Timing {
+        private final MethodLatencyRecorder recorder;
+        private final long start;
+        private boolean recorded;
+
+        private Timing(MethodLatencyRecorder recorder) {
+            this.recorder = recorder;
+            this.start = System.nanoTime();
+        }
+
+        private void succeeded() {
+            recorder.recordSuccess(System.nanoTime() - start);
+            recorded = true;
+        }
+
+        private void completed() {
+            if (!recorded)
+                recorder.recordError();
+        }
+    }
+}
@@ -21,13 +21,11 @@ import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.service.Service;
 import it.water.core.interceptors.annotations.FrameworkComponent;
 import it.water.core.interceptors.annotations.Inject;
-import it.water.core.registry.model.exception.NoComponentRegistryFoundException;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 
@@ -71,6 +69,9 @@ public class WaterComponentsInjector implements BeforeMethodFieldInterceptor<Inj
     }
 
     /**
+     * Injects components inside the given fields.
+     * Setters are resolved once per class and the registry is searched again only when it changes.
+     *
      * @param componentRegistry
      * @param destination
      * @param fields
@@ -78,20 +79,10 @@ public class WaterComponentsInjector implements BeforeMethodFieldInterceptor<Inj
      */
     public static <S extends Service> void inject(ComponentRegistry componentRegistry, S destination, List<Field> fields) {
         log.debug("Injecting Water Components into fields");
-        fields.forEach(annotatedField -> {
-            Object service = null;
-            try {
-                service = componentRegistry.findComponent(annotatedField.getType(), null);
-                Method setterMethod = findSetterMethod(destination, annotatedField);
-                log.debug("Setting field {} on {}", annotatedField.getName(), destination.getClass().getName());
-                setterMethod.invoke(destination, service);
-            } catch (NoComponentRegistryFoundException e) {
-                log.debug("No component found for {} not injecting",annotatedField.getType());
-            } catch (IllegalAccessException | NoSuchMethodException |
-                     InvocationTargetException e) {
-                log.error("Cannot inject {} field, error while invoking setter method {},", annotatedField, e.getMessage(), e);
-            }
-        });
+        Class<?> destinationClass = destination.getClass();
+        for (int i = 0; i < fields.size(); i++) {
+            InjectedField.forField(destinationClass, fields.get(i)).inject(componentRegistry, destination);
+        }
     }
 
     /**
@@ -102,20 +93,33 @@ public class WaterComponentsInjector implements BeforeMethodFieldInterceptor<Inj
      * @throws NoSuchMethodException
      */
     public static <S> Method findSetterMethod(S destination, Field annotatedField) throws NoSuchMethodException {
-        Class<?> objClass = destination.getClass();
+        return findSetterMethod(destination.getClass(), annotatedField.getName(), annotatedField.getType());
+    }
+
+    /**
+     * Searches the setter method of a field inside the class and its superclasses
+     *
+     * @param destinationClass
+     * @param fieldName
+     * @param fieldType
+     * @return
+     * @throws NoSuchMethodException
+     */
+    static Method findSetterMethod(Class<?> destinationClass, String fieldName, Class<?> fieldType) throws NoSuchMethodException {
+        Class<?> objClass = destinationClass;
         //annotated field must have a related setter method
-        String setterMethodName = "set" + annotatedField.getName().substring(0, 1).toUpperCase() + annotatedField.getName().substring(1);
+        String setterMethodName = "set" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
         while (objClass != null) {
-            try {
-                Method m = objClass.getDeclaredMethod(setterMethodName, annotatedField.getType());
-                //forcing setter to be accessible
-                m.setAccessible(true);
-                return m;
-            } catch (NoSuchMethodException e) {
-                log.debug("No setter method {} found on {}, trying with superclass ", setterMethodName, destination.getClass().getName());
+            for (Method m : objClass.getDeclaredMethods()) {
+                if (m.getName().equals(setterMethodName) && m.getParameterCount() == 1 && m.getParameterTypes()[0].equals(fieldType)) {
+                    //forcing setter to be accessible
+                    m.setAccessible(true);
+                    return m;
+                }
             }
+            log.debug("No setter method {} found on {}, trying with superclass ", setterMethodName, objClass.getName());
             objClass = objClass.getSuperclass();
         }
-        throw new NoSuchMethodException();
+        throw new NoSuchMethodException(setterMethodName);
     }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.manifest;
+
+/**
+ * @Author Aristide Cittadino
+ * Factory generated at build time which creates the framework components of a module without reflection.
+ */
+public interface ComponentFactory {
+    /**
+     * @param componentClassName binary name of the component class
+     * @return a new component instance, or null if the factory does not create the given class
+     */
+    Object newComponent(String componentClassName);
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.manifest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author Aristide Cittadino
+ * Framework components described at build time by ComponentManifestProcessor.
+ * Every module has its own manifest resource, listing its components and the generated factories which create them.
+ * Runtimes use the manifest to setup components without inspecting their classes through reflection,
+ * components not listed inside any manifest are still set up through reflection.
+ * <p>
+ * The manifest is a text file, each line contains a keyword and its value.
+ * The "component" keyword starts the description of a new component.
+ * Only what runtimes read is written: generated factory, services, implemented interfaces, properties
+ * and the fields injected at startup.
+ */
+public class ComponentManifest {
+    private static final Logger log = LoggerFactory.getLogger(ComponentManifest.class);
+    public static final String MANIFEST_RESOURCE = "META-INF/water/framework-components";
+    static final String FACTORY = "factory";
+    static final String COMPONENT = "component";
+    static final String SERVICE = "service";
+    static final String INTERFACE = "interface";
+    static final String PROPERTY = "property";
+    static final String STARTUP_INJECT = "startupInject";
+
+    private final Map<String, ComponentManifestEntry> entries;
+    private final Map<String, ComponentFactory> factories;
+
+    private ComponentManifest(Map<String, ComponentManifestEntry> entries, Map<String, ComponentFactory> factories) {
+        this.entries = entries;
+        this.factories = factories;
+    }
+
+    /**
+     * Loads all the manifests visible from the class loader, manifests which cannot be read are skipped.
+     *
+     * @param classLoader class loader of the application
+     * @return the components manifest
+     */
+    public static ComponentManifest load(ClassLoader classLoader) {
+        Map<String, ComponentManifestEntry> entries = new HashMap<>();
+        Map<String, ComponentFactory> factories = new HashMap<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(MANIFEST_RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try (Reader reader = new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8)) {
+                    List<ComponentManifestEntry> moduleEntries = new ArrayList<>();
+                    read(reader, moduleEntries);
+                    moduleEntries.forEach(entry -> entries.putIfAbsent(entry.getComponentClassName(), entry));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Skipping components manifest {}: {}", resource, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot load components manifests: {}", e.getMessage());
+        }
+        //factories are shared by the components created in the same compilation round
+        Map<String, ComponentFactory> factoriesByName = new HashMap<>();
+        entries.values().stream().filter(entry -> entry.getFactoryClassName() != null).forEach(entry -> {
+            ComponentFactory factory = factoriesByName.computeIfAbsent(entry.getFactoryClassName(), factoryClassName -> loadFactory(factoryClassName, classLoader));
+            if (factory != null)
+                factories.put(entry.getComponentClassName(), factory);
+        });
+        log.debug("Loaded {} components from manifests", entries.size());
+        return new ComponentManifest(entries, factories);
+    }
+
+    private static ComponentFactory loadFactory(String factoryClassName, ClassLoader classLoader) {
+        try {
+            return (ComponentFactory) Class.forName(factoryClassName, true, classLoader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+            log.warn("Cannot create component factory {}: {}", factoryClassName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param componentClassName binary name of the component class
+     * @return the manifest entry, or null if the component is not described by any manifest
+     */
+    public ComponentManifestEntry getEntry(String componentClassName) {
+        return entries.get(componentClassName);
+    }
+
+    /**
+     * @param componentClassName binary name of the component class
+     * @return a new component created by the generated factory, or null if no factory creates it
+     */
+    public Object newComponent(String componentClassName) {
+        ComponentFactory factory = factories.get(componentClassName);
+        return (factory != null) ? factory.newComponent(componentClassName) : null;
+    }
+
+    public Collection<ComponentManifestEntry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Reads a single manifest.
+     *
+     * @param reader  manifest content
+     * @param entries list filled with the described components
+     */
+    static void read(Reader reader, List<ComponentManifestEntry> entries) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        ComponentManifestEntry current = null;
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            int separator = line.indexOf(' ');
+            if (line.isBlank() || line.startsWith("#") || separator < 0)
+                continue;
+            String keyword = line.substring(0, separator);
+            String value = line.substring(separator + 1);
+            if (COMPONENT.equals(keyword)) {
+                current = new ComponentManifestEntry(value);
+                entries.add(current);
+            } else if (current != null) {
+                readComponentLine(current, keyword, value);
+            }
+        }
+    }
+
+    private static void readComponentLine(ComponentManifestEntry entry, String keyword, String value) {
+        switch (keyword) {
+            case FACTORY:
+                entry.setFactoryClassName(value);
+                break;
+            case SERVICE:
+                entry.addService(value);
+                break;
+            case INTERFACE:
+                entry.addInterface(value);
+                break;
+            case PROPERTY:
+                int equals = value.indexOf('=');
+                if (equals > 0)
+                    entry.addProperty(value.substring(0, equals), value.substring(equals + 1));
+                break;
+            case STARTUP_INJECT:
+                entry.addStartupInjectedField(value);
+                break;
+            default:
+                log.debug("Unknown components manifest keyword {}", keyword);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.manifest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author Aristide Cittadino
+ * Description of a @FrameworkComponent class written at build time inside the component manifest.
+ * Class names are binary names, so they can be loaded with Class.forName.
+ */
+public class ComponentManifestEntry {
+    private final String componentClassName;
+    //services declared inside @FrameworkComponent
+    private final List<String> services = new ArrayList<>();
+    //interfaces directly implemented by the component class
+    private final List<String> interfaces = new ArrayList<>();
+    private final Map<String, String> properties = new LinkedHashMap<>();
+    //names of the fields declared by the component class with @Inject(injectOnceAtStartup = true)
+    private final List<String> startupInjectedFields = new ArrayList<>();
+    //generated factory creating the component, null if the component cannot be created without reflection
+    private String factoryClassName;
+
+    public ComponentManifestEntry(String componentClassName) {
+        this.componentClassName = componentClassName;
+    }
+
+    public String getComponentClassName() {
+        return componentClassName;
+    }
+
+    public List<String> getServices() {
+        return Collections.unmodifiableList(services);
+    }
+
+    public List<String> getInterfaces() {
+        return Collections.unmodifiableList(interfaces);
+    }
+
+    public Map<String, String> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    public List<String> getStartupInjectedFields() {
+        return Collections.unmodifiableList(startupInjectedFields);
+    }
+
+    public String getFactoryClassName() {
+        return factoryClassName;
+    }
+
+    /**
+     * @return true if the component declares fields which must be injected at startup
+     */
+    public boolean hasStartupInjectedFields() {
+        return !startupInjectedFields.isEmpty();
+    }
+
+    void addService(String service) {
+        services.add(service);
+    }
+
+    void addInterface(String implementedInterface) {
+        interfaces.add(implementedInterface);
+    }
+
+    void addProperty(String name, String value) {
+        properties.put(name, value);
+    }
+
+    void addStartupInjectedField(String fieldName) {
+        startupInjectedFields.add(fieldName);
+    }
+
+    void setFactoryClassName(String factoryClassName) {
+        this.factoryClassName = factoryClassName;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.interceptors.manifest;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * @Author Aristide Cittadino
+ * Annotation processor which writes the ComponentManifest of the compiled module.
+ * For each @FrameworkComponent it records exposed services, implemented interfaces, parsed properties
+ * and fields injected at startup, then it generates a factory creating components with public default constructors without reflection.
+ * Priority and lazy flag are read by runtimes from the annotation, which is loaded anyway, so they are not written.
+ * The processor is registered only inside the processor classifier jar, so it is never discovered from the runtime classpath.
+ * Components which declare services they do not implement are not written, so runtimes report the error at startup as before.
+ */
+@SupportedAnnotationTypes(ComponentManifestProcessor.FRAMEWORK_COMPONENT)
+public class ComponentManifestProcessor extends AbstractProcessor {
+    static final String FRAMEWORK_COMPONENT = "it.water.core.interceptors.annotations.FrameworkComponent";
+    private static final String INJECT = "it.water.core.interceptors.annotations.Inject";
+    private static final String FACTORY_CLASS_PREFIX = "WaterComponentFactory_";
+    private final Map<String, ComponentManifestEntry> entries = new TreeMap<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!entries.isEmpty())
+                writeManifest();
+            return false;
+        }
+        TypeElement frameworkComponent = processingEnv.getElementUtils().getTypeElement(FRAMEWORK_COMPONENT);
+        if (frameworkComponent == null)
+            return false;
+        //binary name -> canonical name of the components created by this round factory
+        Map<String, String> roundFactoryComponents = new TreeMap<>();
+        List<ComponentManifestEntry> roundEntries = new ArrayList<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(frameworkComponent)) {
+            if (element.getKind() != ElementKind.CLASS)
+                continue;
+            TypeElement componentType = (TypeElement) element;
+            ComponentManifestEntry entry = createEntry(componentType, frameworkComponent);
+            if (entry == null)
+                continue;
+            entries.put(entry.getComponentClassName(), entry);
+            originatingElements.add(componentType);
+            if (hasPublicDefaultConstructor(componentType)) {
+                roundFactoryComponents.put(entry.getComponentClassName(), componentType.getQualifiedName().toString());
+                roundEntries.add(entry);
+            }
+        }
+        if (!roundFactoryComponents.isEmpty()) {
+            String factoryClassName = writeFactory(roundFactoryComponents);
+            if (factoryClassName != null)
+                roundEntries.forEach(entry -> entry.setFactoryClassName(factoryClassName));
+        }
+        return false;
+    }
+
+    private ComponentManifestEntry createEntry(TypeElement componentType, TypeElement frameworkComponent) {
+        AnnotationMirror annotation = findAnnotation(componentType, frameworkComponent.getQualifiedName().toString());
+        if (annotation == null)
+            return null;
+        ComponentManifestEntry entry = new ComponentManifestEntry(binaryName(componentType));
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+            String name = value.getKey().getSimpleName().toString();
+            Object annotationValue = value.getValue().getValue();
+            if ("services".equals(name)) {
+                for (AnnotationValue service : asList(annotationValue)) {
+                    TypeMirror serviceType = (TypeMirror) service.getValue();
+                    if (!processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(componentType.asType()), processingEnv.getTypeUtils().erasure(serviceType))) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@FrameworkComponent must implement exposed services interfaces!", componentType);
+                        return null;
+                    }
+                    entry.addService(binaryName(serviceType));
+                }
+            } else if ("properties".equals(name)) {
+                for (AnnotationValue property : asList(annotationValue))
+                    addProperty(entry, property.getValue().toString());
+            }
+        }
+        componentType.getInterfaces().forEach(implementedInterface -> entry.addInterface(binaryName(implementedInterface)));
+        for (VariableElement field : ElementFilter.fieldsIn(componentType.getEnclosedElements())) {
+            AnnotationMirror inject = findAnnotation(field, INJECT);
+            if (inject != null && isInjectOnceAtStartup(inject))
+                entry.addStartupInjectedField(field.getSimpleName().toString());
+        }
+        return entry;
+    }
+
+    /**
+     * Properties are parsed like runtimes do: only key=value strings with a single equal sign are kept
+     */
+    private void addProperty(ComponentManifestEntry entry, String property) {
+        String[] keyValue = property.split("=");
+        if (property.indexOf('=') < 0 || keyValue.length != 2)
+            return;
+        if (property.indexOf('\n') >= 0 || property.indexOf('\r') >= 0) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Skipping multi line component property " + keyValue[0]);
+            return;
+        }
+        entry.addProperty(keyValue[0], keyValue[1]);
+    }
+
+    private boolean isInjectOnceAtStartup(AnnotationMirror inject) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : processingEnv.getElementUtils().getElementValuesWithDefaults(inject).entrySet()) {
+            if ("injectOnceAtStartup".equals(value.getKey().getSimpleName().toString()))
+                return (Boolean) value.getValue().getValue();
+        }
+        return false;
+    }
+
+    /**
+     * Generated factories can create public classes, nested in public classes, with a public constructor without parameters
+     */
+    private boolean hasPublicDefaultConstructor(TypeElement componentType) {
+        if (componentType.getModifiers().contains(Modifier.ABSTRACT))
+            return false;
+        for (Element current = componentType; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            TypeElement currentType = (TypeElement) current;
+            NestingKind nestingKind = currentType.getNestingKind();
+            boolean innerClass = nestingKind == NestingKind.MEMBER && !currentType.getModifiers().contains(Modifier.STATIC) && currentType.getKind() == ElementKind.CLASS;
+            if (!currentType.getModifiers().contains(Modifier.PUBLIC) || innerClass || nestingKind == NestingKind.LOCAL || nestingKind == NestingKind.ANONYMOUS)
+                return false;
+        }
+        return ElementFilter.constructorsIn(componentType.getEnclosedElements()).stream()
+                .anyMatch(constructor -> constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC));
+    }
+
+    /**
+     * @return the factory class name, null if it could not be written
+     */
+    private String writeFactory(Map<String, String> components) {
+        String firstComponent = components.keySet().iterator().next();
+        PackageElement factoryPackage = processingEnv.getElementUtils().getPackageOf(processingEnv.getElementUtils().getTypeElement(components.get(firstComponent)));
+        String packageName = factoryPackage.getQualifiedName().toString();
+        String simpleName = FACTORY_CLASS_PREFIX + Integer.toHexString(String.join(",", components.keySet()).hashCode() & 0x7fffffff);
+        String factoryClassName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            JavaFileObject source = processingEnv.getFiler().createSourceFile(factoryClassName, originatingElements.toArray(new Element[0]));
+            try (PrintWriter writer = new PrintWriter(source.openWriter())) {
+                if (!packageName.isEmpty())
+                    writer.println("package " + packageName + ";");
+                writer.println();
+                writer.println("@javax.annotation.processing.Generated(\"" + ComponentManifestProcessor.class.getName() + "\")");
+                writer.println("public final class " + simpleName + " implements " + ComponentFactory.class.getName() + " {");
+                writer.println("    @Override");
+                writer.println("    public Object newComponent(String componentClassName) {");
+                writer.println("        switch (componentClassName) {");
+                components.forEach((binaryName, canonicalName) -> {
+                    writer.println("            case \"" + binaryName + "\":");
+                    writer.println("                return new " + canonicalName + "();");
+                });
+                writer.println("            default:");
+                writer.println("                return null;");
+                writer.println("        }");
+                writer.println("    }");
+                writer.println("}");
+            }
+            return factoryClassName;
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot generate component factory " + factoryClassName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeManifest() {
+        try {
+            FileObject manifest = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ComponentManifest.MANIFEST_RESOURCE, originatingElements.toArray(new Element[0]));
+            try (Writer writer = new OutputStreamWriter(manifest.openOutputStream(), StandardCharsets.UTF_8)) {
+                write(writer, entries.values());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot write components manifest: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the manifest, ComponentManifest is not initialized since it requires a logger which may not be available to the compiler.
+     *
+     * @param writer  destination
+     * @param entries components
+     */
+    private void write(Writer writer, Collection<ComponentManifestEntry> entries) {
+        PrintWriter printWriter = new PrintWriter(writer);
+        printWriter.println("# Generated by " + getClass().getName());
+        for (ComponentManifestEntry entry : entries) {
+            printWriter.println(ComponentManifest.COMPONENT + " " + entry.getComponentClassName());
+            if (entry.getFactoryClassName() != null)
+                printWriter.println(ComponentManifest.FACTORY + " " + entry.getFactoryClassName());
+            entry.getServices().forEach(service -> printWriter.println(ComponentManifest.SERVICE + " " + service));
+            entry.getInterfaces().forEach(implementedInterface -> printWriter.println(ComponentManifest.INTERFACE + " " + implementedInterface));
+            entry.getProperties().forEach((name, value) -> printWriter.println(ComponentManifest.PROPERTY + " " + name + "=" + value));
+            entry.getStartupInjectedFields().forEach(field -> printWriter.println(ComponentManifest.STARTUP_INJECT + " " + field));
+        }
+        printWriter.flush();
+    }
+
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName))
+                return annotation;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<? extends AnnotationValue> asList(Object annotationValue) {
+        return (annotationValue instanceof List) ? (List<? extends AnnotationValue>) annotationValue : Collections.emptyList();
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private String binaryName(TypeMirror type) {
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+        if (erasure.getKind() == TypeKind.DECLARED)
+            return binaryName((TypeElement) ((DeclaredType) erasure).asElement());
+        return erasure.toString();
+    }
+}
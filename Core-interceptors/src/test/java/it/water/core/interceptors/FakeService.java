@@ -15,9 +15,14 @@
  */
 package it.water.core.interceptors;
 
+import it.water.core.api.bundle.Runtime;
+import it.water.core.api.permission.SecurityContext;
 import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.service.Service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
 public interface FakeService extends Service {
     void invokeMethod();
 
@@ -26,4 +31,10 @@ public interface FakeService extends Service {
     ComponentRegistry getRegistryInjected();
 
     ComponentRegistry getRegistryNotInjected();
+
+    CompletableFuture<String> asyncThreadName();
+
+    CompletableFuture<SecurityContext> asyncSecurityContext(Runtime runtime, CompletableFuture<Void> release);
+
+    Future<String> asyncPlainFuture(String value);
 }
@@ -15,10 +15,20 @@
  */
 package it.water.core.interceptors;
 
+import it.water.core.api.bundle.Runtime;
+import it.water.core.api.permission.SecurityContext;
 import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.interceptors.annotations.Async;
+import it.water.core.interceptors.annotations.CacheResult;
 import it.water.core.interceptors.annotations.FrameworkComponent;
 import it.water.core.interceptors.annotations.Inject;
 import it.water.core.interceptors.annotations.LogMethodExecution;
+import it.water.core.interceptors.annotations.SingleFlight;
+import it.water.core.interceptors.annotations.Timed;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 @FrameworkComponent
 public class FakeServiceImpl implements FakeService {
@@ -54,4 +64,44 @@ public class FakeServiceImpl implements FakeService {
     public ComponentRegistry getRegistryNotInjected() {
         return registryNotInjected;
     }
+
+    //Used to test result caching
+    @CacheResult(maxSize = 1, perUser = false)
+    public String echo(String value) {
+        return value;
+    }
+
+    //Used to test invocations coalescing
+    @SingleFlight(maxWait = 10, perUser = false)
+    public String fetch(String value) {
+        return value;
+    }
+
+    //Used to test latency recording
+    @Timed
+    public void timed(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    //Used to test async invocations
+    @Async
+    public CompletableFuture<String> asyncThreadName() {
+        return CompletableFuture.completedFuture(Thread.currentThread().getName());
+    }
+
+    //Used to test async invocations: returns the security context seen by the method once release completes
+    @Async
+    @TestMethodAnnotation
+    public CompletableFuture<SecurityContext> asyncSecurityContext(Runtime runtime, CompletableFuture<Void> release) {
+        SecurityContext securityContext = runtime.getSecurityContext();
+        return release.thenApply(released -> securityContext);
+    }
+
+    //Used to test async invocations returning a future which is not a CompletionStage
+    @Async
+    public Future<String> asyncPlainFuture(String value) {
+        FutureTask<String> task = new FutureTask<>(() -> value);
+        task.run();
+        return task;
+    }
 }
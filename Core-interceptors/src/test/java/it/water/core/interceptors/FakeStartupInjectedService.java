@@ -0,0 +1,35 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.water.core.interceptors;
+
+import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.Inject;
+
+//Service which only declares fields injected at startup, its methods must not be intercepted
+public class FakeStartupInjectedService implements Service {
+
+    @Inject(injectOnceAtStartup = true)
+    private ComponentRegistry componentRegistry;
+
+    public ComponentRegistry getComponentRegistry() {
+        return componentRegistry;
+    }
+
+    public void setComponentRegistry(ComponentRegistry componentRegistry) {
+        this.componentRegistry = componentRegistry;
+    }
+}
@@ -15,10 +15,31 @@
  */
 package it.water.core.interceptors;
 
+import it.water.core.api.bundle.Runtime;
 import it.water.core.api.interceptors.AfterMethodFieldInterceptor;
+import it.water.core.api.interceptors.AfterMethodInterceptor;
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.InvocationContext;
+import it.water.core.api.interceptors.InvocationTrace;
+import it.water.core.api.interceptors.InvocationTracing;
+import it.water.core.api.metrics.MethodLatency;
+import it.water.core.api.permission.SecurityContext;
 import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.CacheResult;
+import it.water.core.interceptors.annotations.SingleFlight;
+import it.water.core.interceptors.annotations.Timed;
+import it.water.core.interceptors.annotations.implementation.AsyncMethodExecutor;
+import it.water.core.interceptors.annotations.implementation.CacheResultInterceptor;
+import it.water.core.interceptors.annotations.implementation.SingleFlightInterceptor;
+import it.water.core.interceptors.annotations.implementation.TimedInterceptor;
 import it.water.core.interceptors.annotations.implementation.WaterComponentsInjector;
+import it.water.core.interceptors.manifest.ComponentFactory;
+import it.water.core.interceptors.manifest.ComponentManifest;
+import it.water.core.interceptors.manifest.ComponentManifestEntry;
+import it.water.core.interceptors.restricted.RestrictedService;
+import it.water.core.registry.InMemoryComponentRegistry;
+import it.water.core.registry.model.exception.NoComponentRegistryFoundException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,11 +53,22 @@ import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.ObjectName;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ExtendWith(MockitoExtension.class)
 class InterceptorsTest {
@@ -51,6 +83,8 @@ class InterceptorsTest {
 
     private FakeService fakeService;
 
+    private Thread followerThread;
+
     @BeforeEach
     void init() {
         // Returning always the registry since no other components is required for injection
@@ -91,6 +125,10 @@ class InterceptorsTest {
         });
 
 
+        //optional lookups delegate to the stubbed findComponent and findComponents
+        Mockito.lenient().when(registry.findComponentIfPresent(Mockito.any(), Mockito.any())).thenCallRealMethod();
+        Mockito.lenient().when(registry.findComponentsOrEmpty(Mockito.any(), Mockito.any())).thenCallRealMethod();
+
         Mockito.lenient().when(registry.registerComponent(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(new Answer<Object>() {
             @Override
             public Object answer(InvocationOnMock invocation) throws Throwable {
@@ -133,6 +171,386 @@ class InterceptorsTest {
         Assertions.assertNotNull(fakeProxy.getService());
     }
 
+    @Test
+    void invocationPlanIsCachedUntilRegistryChanges() throws NoSuchMethodException {
+        Method m = fakeService.getClass().getMethod("invokeMethod");
+        InvocationPlan plan = InvocationPlan.forMethod(FakeServiceImpl.class, m);
+        Assertions.assertSame(plan, InvocationPlan.forMethod(FakeServiceImpl.class, m));
+        Mockito.lenient().when(registry.getGeneration()).thenReturn(1L);
+        InterceptorChain chain = plan.getChain(registry);
+        //components injector for @Inject fields and TestBeforeMethodInterceptor for @TestMethodAnnotation
+        Assertions.assertEquals(2, chain.countBeforeInterceptors());
+        Assertions.assertEquals(0, chain.countAfterInterceptors());
+        Assertions.assertSame(chain, plan.getChain(registry));
+        //registry changed, interceptors must be resolved again
+        Mockito.lenient().when(registry.getGeneration()).thenReturn(2L);
+        Assertions.assertNotSame(chain, plan.getChain(registry));
+        //registry without generation tracking, interceptors are never reused
+        Mockito.lenient().when(registry.getGeneration()).thenReturn(ComponentRegistry.UNTRACKED_GENERATION);
+        Assertions.assertNotSame(plan.getChain(registry), plan.getChain(registry));
+        Assertions.assertTrue(plan.getChain(null).isEmpty());
+    }
+
+    @Test
+    void startupInjectedFieldsDoNotPreventDirectDispatch() throws NoSuchMethodException {
+        InvocationPlan plan = InvocationPlan.forMethod(FakeStartupInjectedService.class, FakeStartupInjectedService.class.getMethod("getComponentRegistry"));
+        Assertions.assertFalse(plan.mayBeIntercepted());
+        Assertions.assertTrue(plan.getChain(registry).isEmpty());
+        //fast path does not even look at the registry
+        Mockito.verify(registry, Mockito.never()).getGeneration();
+    }
+
+    @Test
+    void onlyHighestPriorityInterceptorRuns() throws NoSuchMethodException {
+        TestBeforeMethodInterceptor highestPriority = new TestBeforeMethodInterceptor();
+        TestBeforeMethodInterceptor lowestPriority = new TestBeforeMethodInterceptor();
+        //registry returns components ordered by priority, both handle @TestMethodAnnotation
+        Mockito.lenient().doReturn(List.of(highestPriority, lowestPriority)).when(registry).findComponents(Mockito.eq(BeforeMethodInterceptor.class), Mockito.any());
+        Mockito.lenient().when(registry.getGeneration()).thenReturn(20L);
+        InterceptorChain chain = InvocationPlan.forMethod(FakeServiceImpl.class, FakeService.class.getMethod("invokeMethod")).getChain(registry);
+        //components injector for @Inject fields and the overriding interceptor for @TestMethodAnnotation
+        Assertions.assertEquals(2, chain.countBeforeInterceptors());
+        Assertions.assertSame(highestPriority, chain.beforeInterceptors[1]);
+    }
+
+    @Test
+    void invocationPlanDispatchesToService() throws Throwable {
+        InvocationPlan setterPlan = InvocationPlan.forMethod(FakeServiceImpl.class, FakeService.class.getMethod("setRegistryInjected", ComponentRegistry.class));
+        Assertions.assertNull(setterPlan.invoke(fakeService, new Object[]{registry}));
+        InvocationPlan getterPlan = InvocationPlan.forMethod(FakeServiceImpl.class, FakeService.class.getMethod("getRegistryInjected"));
+        Assertions.assertSame(registry, getterPlan.invoke(fakeService, null));
+        //wrong argument types are rejected before reaching the service
+        Assertions.assertThrows(ClassCastException.class, () -> setterPlan.invoke(fakeService, new Object[]{"not a registry"}));
+    }
+
+    @Test
+    void injectionIsSkippedUntilRegistryChanges() throws NoSuchFieldException {
+        List<Field> fields = Collections.singletonList(FakeServiceImpl.class.getDeclaredField("registryInjected"));
+        Mockito.lenient().when(registry.getGeneration()).thenReturn(10L);
+        WaterComponentsInjector.inject(registry, fakeService, fields);
+        WaterComponentsInjector.inject(registry, fakeService, fields);
+        Assertions.assertSame(registry, fakeService.getRegistryInjected());
+        Mockito.verify(registry, Mockito.times(1)).findComponent(ComponentRegistry.class, null);
+        //field changed outside the injector, the same component is set again without searching it
+        fakeService.setRegistryInjected(null);
+        WaterComponentsInjector.inject(registry, fakeService, fields);
+        Assertions.assertSame(registry, fakeService.getRegistryInjected());
+        Mockito.verify(registry, Mockito.times(1)).findComponent(ComponentRegistry.class, null);
+        //registry changed, component is searched again
+        Mockito.lenient().when(registry.getGeneration()).thenReturn(11L);
+        WaterComponentsInjector.inject(registry, fakeService, fields);
+        Mockito.verify(registry, Mockito.times(2)).findComponent(ComponentRegistry.class, null);
+    }
+
+    @Test
+    void injectedFieldSurvivesMissingRegistration() throws NoSuchFieldException {
+        List<Field> fields = Collections.singletonList(FakeServiceImpl.class.getDeclaredField("registryInjected"));
+        fakeService.setRegistryInjected(registry);
+        Mockito.lenient().when(registry.getGeneration()).thenReturn(30L);
+        Mockito.lenient().when(registry.findComponent(Mockito.eq(ComponentRegistry.class), Mockito.any())).thenThrow(new NoComponentRegistryFoundException());
+        WaterComponentsInjector.inject(registry, fakeService, fields);
+        WaterComponentsInjector.inject(registry, fakeService, fields);
+        Assertions.assertSame(registry, fakeService.getRegistryInjected());
+        //the miss is cached as well until the registry changes
+        Mockito.verify(registry, Mockito.times(1)).findComponent(ComponentRegistry.class, null);
+    }
+
+    @Test
+    void injectedFieldIsClearedWhenComponentIsUnregistered() throws NoSuchFieldException {
+        List<Field> fields = Collections.singletonList(FakeServiceImpl.class.getDeclaredField("registryInjected"));
+        InMemoryComponentRegistry componentRegistry = new InMemoryComponentRegistry();
+        FakeService service = new FakeServiceImpl();
+        componentRegistry.registerComponent(ComponentRegistry.class, componentRegistry, null);
+        WaterComponentsInjector.inject(componentRegistry, service, fields);
+        Assertions.assertSame(componentRegistry, service.getRegistryInjected());
+        //the type is still known to the registry but no component is available anymore
+        componentRegistry.unregisterComponent(ComponentRegistry.class, componentRegistry);
+        WaterComponentsInjector.inject(componentRegistry, service, fields);
+        Assertions.assertNull(service.getRegistryInjected());
+    }
+
+    @Test
+    void cacheResultInterceptorTest() throws NoSuchMethodException {
+        CacheResultInterceptor interceptor = new CacheResultInterceptor();
+        FakeServiceImpl service = new FakeServiceImpl();
+        Method m = FakeServiceImpl.class.getMethod("echo", String.class);
+        CacheResult annotation = m.getAnnotation(CacheResult.class);
+        Assertions.assertFalse(runCached(interceptor, service, m, "first", annotation));
+        Assertions.assertTrue(runCached(interceptor, service, m, "first", annotation));
+        //the cache holds one entry so the first result is evicted
+        Assertions.assertFalse(runCached(interceptor, service, m, "second", annotation));
+        Assertions.assertFalse(runCached(interceptor, service, m, "first", annotation));
+        interceptor.invalidate(FakeServiceImpl.class);
+        Assertions.assertFalse(runCached(interceptor, service, m, "first", annotation));
+    }
+
+    @Test
+    void cacheResultInterceptorWithoutInvocationContext() throws NoSuchMethodException {
+        CacheResultInterceptor interceptor = new CacheResultInterceptor();
+        FakeServiceImpl service = new FakeServiceImpl();
+        Method m = FakeServiceImpl.class.getMethod("echo", String.class);
+        CacheResult annotation = m.getAnnotation(CacheResult.class);
+        Object[] args = new Object[]{"first"};
+        Assertions.assertNull(InvocationContext.current());
+        //without an invocation context the method runs without caching
+        interceptor.interceptMethod(service, m, args, annotation);
+        interceptor.interceptMethod(service, m, args, service.echo("first"), annotation);
+        interceptor.interceptMethod(service, m, args, annotation);
+        //the result has not been stored, so the first invocation inside a context is a miss
+        Assertions.assertFalse(runCached(interceptor, service, m, "first", annotation));
+        Assertions.assertTrue(runCached(interceptor, service, m, "first", annotation));
+    }
+
+    @Test
+    void invocationContextIsCreatedOnlyWhenUsed() throws NoSuchMethodException {
+        InMemoryComponentRegistry componentRegistry = new InMemoryComponentRegistry();
+        AtomicReference<Object> seenContext = new AtomicReference<>("not intercepted");
+        componentRegistry.registerComponent(BeforeMethodInterceptor.class, new CacheResultInterceptor(), null);
+        componentRegistry.registerComponent(BeforeMethodInterceptor.class, new BeforeMethodInterceptor<TestMethodAnnotation>() {
+            @Override
+            public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, TestMethodAnnotation annotation) {
+                seenContext.set(InvocationContext.current());
+            }
+
+            @Override
+            public Class<TestMethodAnnotation> getAnnotation() {
+                return TestMethodAnnotation.class;
+            }
+        }, null);
+        Assertions.assertTrue(InvocationPlan.forMethod(FakeServiceImpl.class, FakeService.class.getMethod("invokeMethod")).getChain(componentRegistry).countBeforeInterceptors() > 0);
+        Assertions.assertFalse(InvocationPlan.forMethod(FakeServiceImpl.class, FakeService.class.getMethod("invokeMethod")).getChain(componentRegistry).usesInvocationContext());
+        Assertions.assertTrue(InvocationPlan.forMethod(FakeServiceImpl.class, FakeServiceImpl.class.getMethod("echo", String.class)).getChain(componentRegistry).usesInvocationContext());
+        FakeInterceptor proxy = new FakeInterceptor(componentRegistry);
+        proxy.setService(new FakeServiceImpl());
+        FakeService proxiedService = (FakeService) ProxyClassGenerator.newProxyInstance(new Class[]{FakeService.class}, proxy).orElseThrow();
+        proxiedService.invokeMethod();
+        //interceptors of annotations not marked with @UsesInvocationContext run without a context
+        Assertions.assertNull(seenContext.get());
+    }
+
+    @Test
+    void splitInvocationOpensInvocationContext() throws NoSuchMethodException {
+        InMemoryComponentRegistry componentRegistry = new InMemoryComponentRegistry();
+        CacheResultInterceptor cacheResultInterceptor = new CacheResultInterceptor();
+        componentRegistry.registerComponent(BeforeMethodInterceptor.class, cacheResultInterceptor, null);
+        componentRegistry.registerComponent(AfterMethodInterceptor.class, cacheResultInterceptor, null);
+        FakeInterceptor runtimeProxy = new FakeInterceptor(componentRegistry);
+        FakeServiceImpl service = new FakeServiceImpl();
+        Method m = FakeServiceImpl.class.getMethod("echo", String.class);
+        Object[] args = new Object[]{"split"};
+        //first invocation misses the cache, the result is stored when after interceptors run
+        runtimeProxy.executeInterceptorBeforeMethod(service, m, args);
+        InvocationContext context = InvocationContext.find(service, m);
+        Assertions.assertNotNull(context);
+        Assertions.assertFalse(context.isInvocationSkipped());
+        runtimeProxy.executeInterceptorAfterMethod(service, m, args, service.echo("split"));
+        Assertions.assertNull(InvocationContext.current());
+        //second invocation is served by the cache
+        runtimeProxy.executeInterceptorBeforeMethod(service, m, args);
+        context = InvocationContext.find(service, m);
+        Assertions.assertTrue(context.isInvocationSkipped());
+        Assertions.assertEquals("split", context.getResult());
+        //method failed, the invocation is completed without after interceptors
+        runtimeProxy.completeInvocation(service, m);
+        Assertions.assertNull(InvocationContext.current());
+    }
+
+    private boolean runCached(CacheResultInterceptor interceptor, FakeServiceImpl service, Method m, String value, CacheResult annotation) {
+        Object[] args = new Object[]{value};
+        InvocationContext context = InvocationContext.begin(service, m, args);
+        try {
+            interceptor.interceptMethod(service, m, args, annotation);
+            if (context.isInvocationSkipped()) {
+                Assertions.assertEquals(value, context.getResult());
+                return true;
+            }
+            interceptor.interceptMethod(service, m, args, service.echo(value), annotation);
+            return false;
+        } finally {
+            context.end();
+            Assertions.assertNull(InvocationContext.current());
+        }
+    }
+
+    @Test
+    void singleFlightInterceptorTest() throws Exception {
+        SingleFlightInterceptor interceptor = new SingleFlightInterceptor();
+        FakeServiceImpl service = new FakeServiceImpl();
+        Method m = FakeServiceImpl.class.getMethod("fetch", String.class);
+        SingleFlight annotation = m.getAnnotation(SingleFlight.class);
+        Object[] args = new Object[]{"value"};
+        //leader completing successfully shares its result
+        InvocationContext leaderContext = InvocationContext.begin(service, m, args);
+        interceptor.interceptMethod(service, m, args, annotation);
+        Assertions.assertEquals(1, interceptor.getInFlightCount());
+        InvocationContext[] followerContext = startFollower(interceptor, service, m, annotation);
+        interceptor.interceptMethod(service, m, args, "result", annotation);
+        leaderContext.end();
+        awaitFollower(followerContext);
+        Assertions.assertTrue(followerContext[0].isInvocationSkipped());
+        Assertions.assertEquals("result", followerContext[0].getResult());
+        Assertions.assertEquals(0, interceptor.getInFlightCount());
+        //leader failing, after interceptors are not invoked so the follower invokes the method on its own
+        leaderContext = InvocationContext.begin(service, m, args);
+        interceptor.interceptMethod(service, m, args, annotation);
+        followerContext = startFollower(interceptor, service, m, annotation);
+        leaderContext.end();
+        awaitFollower(followerContext);
+        Assertions.assertFalse(followerContext[0].isInvocationSkipped());
+        Assertions.assertEquals(0, interceptor.getInFlightCount());
+    }
+
+    private InvocationContext[] startFollower(SingleFlightInterceptor interceptor, FakeServiceImpl service, Method m, SingleFlight annotation) throws InterruptedException {
+        InvocationContext[] followerContext = new InvocationContext[1];
+        Thread follower = new Thread(() -> {
+            Object[] args = new Object[]{"value"};
+            followerContext[0] = InvocationContext.begin(service, m, args);
+            try {
+                interceptor.interceptMethod(service, m, args, annotation);
+            } finally {
+                followerContext[0].end();
+            }
+        });
+        follower.start();
+        //waiting for the follower to wait the leader
+        while (follower.getState() != Thread.State.TIMED_WAITING && follower.isAlive())
+            Thread.sleep(1);
+        followerThread = follower;
+        return followerContext;
+    }
+
+    private void awaitFollower(InvocationContext[] followerContext) throws InterruptedException {
+        followerThread.join(5000);
+        Assertions.assertFalse(followerThread.isAlive());
+        Assertions.assertNotNull(followerContext[0]);
+    }
+
+    @Test
+    void timedInterceptorTest() throws Exception {
+        TimedInterceptor interceptor = new TimedInterceptor();
+        FakeServiceImpl service = new FakeServiceImpl();
+        Method m = FakeServiceImpl.class.getMethod("timed", long.class);
+        Timed annotation = m.getAnnotation(Timed.class);
+        for (int i = 0; i < 10; i++) {
+            Object[] args = new Object[]{1L};
+            InvocationContext context = InvocationContext.begin(service, m, args);
+            interceptor.interceptMethod(service, m, args, annotation);
+            service.timed(1);
+            interceptor.interceptMethod(service, m, args, null, annotation);
+            context.end();
+        }
+        //failed invocation, after interceptors are not invoked
+        InvocationContext failedContext = InvocationContext.begin(service, m, new Object[]{1L});
+        interceptor.interceptMethod(service, m, new Object[]{1L}, annotation);
+        failedContext.end();
+        MethodLatency latency = interceptor.getMethodLatency(FakeServiceImpl.class, "timed");
+        Assertions.assertNotNull(latency);
+        Assertions.assertSame(latency, interceptor.getMethodLatency(FakeServiceImpl.class, "timed(long)"));
+        Assertions.assertEquals(1, interceptor.getMethodLatencies().size());
+        Assertions.assertEquals(10, latency.getCount());
+        Assertions.assertEquals(1, latency.getErrorCount());
+        Assertions.assertTrue(latency.getPercentileNanos(50) > 0);
+        Assertions.assertTrue(latency.getPercentileNanos(99) <= latency.getMaxNanos());
+        ObjectName objectName = new ObjectName("it.water.core:type=MethodLatency,service=" + ObjectName.quote(FakeServiceImpl.class.getName()) + ",method=" + ObjectName.quote("timed(long)"));
+        Assertions.assertEquals(10L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Count"));
+    }
+
+    @Test
+    void asyncMethodTest() throws Exception {
+        InMemoryComponentRegistry componentRegistry = new InMemoryComponentRegistry();
+        FakeRuntime runtime = new FakeRuntime();
+        AsyncMethodExecutor asyncMethodExecutor = new AsyncMethodExecutor();
+        AtomicReference<Object> afterResult = new AtomicReference<>();
+        componentRegistry.registerComponent(Runtime.class, runtime, null);
+        componentRegistry.registerComponent(AsyncMethodExecutor.class, asyncMethodExecutor, null);
+        componentRegistry.registerComponent(AfterMethodInterceptor.class, new AfterMethodInterceptor<TestMethodAnnotation>() {
+            @Override
+            public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, Object returnResult, TestMethodAnnotation annotation) {
+                afterResult.set(returnResult);
+            }
+
+            @Override
+            public Class<TestMethodAnnotation> getAnnotation() {
+                return TestMethodAnnotation.class;
+            }
+        }, null);
+        FakeInterceptor asyncProxy = new FakeInterceptor(componentRegistry);
+        asyncProxy.setService(fakeService);
+        FakeService proxiedService = (FakeService) ProxyClassGenerator.newProxyInstance(new Class[]{FakeService.class}, asyncProxy).orElseThrow();
+        try {
+            Assertions.assertTrue(proxiedService.asyncThreadName().get(5, TimeUnit.SECONDS).startsWith("water-async-"));
+            //plain futures are completed with their value, not with the future itself
+            Assertions.assertEquals("plain", proxiedService.asyncPlainFuture("plain").get(5, TimeUnit.SECONDS));
+            SecurityContext securityContext = Mockito.mock(SecurityContext.class);
+            CompletableFuture<Void> release = new CompletableFuture<>();
+            CompletableFuture<SecurityContext> result = runtime.runWithSecurityContext(securityContext, () -> proxiedService.asyncSecurityContext(runtime, release));
+            //after interceptors wait for the future returned by the method
+            Assertions.assertFalse(result.isDone());
+            Assertions.assertNull(afterResult.get());
+            release.complete(null);
+            //the method body runs with the caller security context
+            Assertions.assertSame(securityContext, result.get(5, TimeUnit.SECONDS));
+            Assertions.assertSame(securityContext, afterResult.get());
+            //no invocation or security context is left bound to the caller thread
+            Assertions.assertNull(InvocationContext.current());
+            Assertions.assertNull(runtime.getSecurityContext());
+        } finally {
+            asyncMethodExecutor.onDeactivate();
+        }
+    }
+
+    @Test
+    void invocationTracingTest() {
+        fakeProxy.setService(fakeService);
+        FakeService proxiedService = (FakeService) ProxyClassGenerator.newProxyInstance(new Class[]{FakeService.class}, fakeProxy).orElseThrow();
+        InvocationTracing.clear();
+        InvocationTracing.setEnabled(true);
+        try {
+            proxiedService.invokeMethod();
+        } finally {
+            InvocationTracing.setEnabled(false);
+        }
+        List<InvocationTrace> traces = InvocationTracing.getRecentTraces(10);
+        Assertions.assertEquals(1, traces.size());
+        InvocationTrace trace = traces.get(0);
+        Assertions.assertEquals("invokeMethod", trace.getMethodName());
+        Assertions.assertTrue(trace.isSucceeded());
+        //injector and test interceptor before the method
+        Assertions.assertEquals(InvocationTrace.Phase.BEFORE, trace.getSteps().get(0).getPhase());
+        Assertions.assertTrue(trace.getSteps().stream().anyMatch(step -> step.getPhase() == InvocationTrace.Phase.INVOCATION && step.getName().equals("invokeMethod")));
+        Assertions.assertTrue(trace.toString().contains("invokeMethod"));
+        //tracing disabled, nothing else is recorded
+        proxiedService.invokeMethod();
+        Assertions.assertEquals(1, InvocationTracing.getRecentTraces(10).size());
+    }
+
+    @Test
+    void generatedProxyTest() {
+        fakeProxy.setService(fakeService);
+        Object proxy = ProxyClassGenerator.newProxyInstance(new Class[]{FakeService.class, it.water.core.api.interceptors.Proxy.class}, fakeProxy).orElseThrow();
+        Assertions.assertFalse(java.lang.reflect.Proxy.isProxyClass(proxy.getClass()));
+        FakeService proxiedService = (FakeService) proxy;
+        //intercepted method, the injector sets the registry before the invocation
+        proxiedService.invokeMethod();
+        Assertions.assertSame(registry, proxiedService.getRegistryInjected());
+        proxiedService.setRegistryInjected(null);
+        Assertions.assertNull(fakeService.getRegistryInjected());
+        Assertions.assertEquals(fakeService.hashCode(), proxy.hashCode());
+        Assertions.assertEquals(fakeService.toString(), proxy.toString());
+        Assertions.assertEquals(FakeServiceImpl.class, ((it.water.core.api.interceptors.Proxy) proxy).getOriginalConcreteClass());
+        //same class is reused for the same service class and interfaces
+        Object otherProxy = ProxyClassGenerator.newProxyInstance(new Class[]{FakeService.class, it.water.core.api.interceptors.Proxy.class}, fakeProxy).orElseThrow();
+        Assertions.assertSame(proxy.getClass(), otherProxy.getClass());
+    }
+
+    @Test
+    void proxyIsNotGeneratedForInaccessibleTypes() {
+        FakeInterceptor restrictedProxy = new FakeInterceptor(new InMemoryComponentRegistry());
+        restrictedProxy.setService(new RestrictedServiceImpl());
+        //the proxy class would live in the service package, which cannot access the type returned by the interface
+        Assertions.assertTrue(ProxyClassGenerator.newProxyInstance(new Class[]{RestrictedService.class}, restrictedProxy).isEmpty());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     void injectorFail() throws NoSuchMethodException {
@@ -158,4 +576,43 @@ class InterceptorsTest {
         });
     }
 
+    @Test
+    void componentManifestIsLoaded() throws IOException {
+        Path manifestFile = Files.createTempFile("framework-components", ".manifest");
+        Files.write(manifestFile, List.of(
+                "# components",
+                "component " + FakeServiceImpl.class.getName(),
+                "factory " + FakeComponentFactory.class.getName(),
+                "interface " + FakeService.class.getName(),
+                "property kind=fake",
+                "startupInject registry"), StandardCharsets.UTF_8);
+        ClassLoader manifestClassLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                if (ComponentManifest.MANIFEST_RESOURCE.equals(name))
+                    return Collections.enumeration(List.of(manifestFile.toUri().toURL()));
+                return super.getResources(name);
+            }
+        };
+        try {
+            ComponentManifest manifest = ComponentManifest.load(manifestClassLoader);
+            ComponentManifestEntry entry = manifest.getEntry(FakeServiceImpl.class.getName());
+            Assertions.assertNotNull(entry);
+            Assertions.assertEquals(List.of(FakeService.class.getName()), entry.getInterfaces());
+            Assertions.assertTrue(entry.getServices().isEmpty());
+            Assertions.assertEquals("fake", entry.getProperties().get("kind"));
+            Assertions.assertEquals(List.of("registry"), entry.getStartupInjectedFields());
+            Assertions.assertTrue(manifest.newComponent(FakeServiceImpl.class.getName()) instanceof FakeServiceImpl);
+            Assertions.assertNull(manifest.newComponent(FakeService.class.getName()));
+        } finally {
+            Files.delete(manifestFile);
+        }
+    }
+
+    public static class FakeComponentFactory implements ComponentFactory {
+        @Override
+        public Object newComponent(String componentClassName) {
+            return FakeServiceImpl.class.getName().equals(componentClassName) ? new FakeServiceImpl() : null;
+        }
+    }
 }
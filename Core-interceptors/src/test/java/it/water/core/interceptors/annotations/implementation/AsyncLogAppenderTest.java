@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.water.core.interceptors.annotations.implementation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class AsyncLogAppenderTest {
+
+    @Test
+    void messagesAreWrittenInOrderWithArgumentsReadByTheCaller() {
+        Logger logger = Mockito.mock(Logger.class);
+        AsyncLogAppender appender = new AsyncLogAppender(16);
+        List<String> argument = new ArrayList<>(List.of("first"));
+        appender.append(logger, false, AsyncLogAppender.render("save", new Object[]{argument, null}, 256));
+        //arguments changed after the invocation must not affect the logged message
+        argument.set(0, "changed");
+        appender.append(logger, true, AsyncLogAppender.render("find", null, 256));
+        appender.append(logger, false, AsyncLogAppender.render("update", new Object[]{"0123456789"}, 4));
+        //shutdown writes pending events before stopping the writer thread
+        appender.shutdown();
+        InOrder inOrder = Mockito.inOrder(logger);
+        inOrder.verify(logger).info("Invoking save, args: [first], null");
+        inOrder.verify(logger).debug("Invoking find");
+        inOrder.verify(logger).info("Invoking update, args: 0123...");
+        inOrder.verifyNoMoreInteractions();
+        //writer thread is started again by new events
+        appender.append(logger, false, "Invoking again");
+        appender.shutdown();
+        Mockito.verify(logger).info("Invoking again");
+    }
+
+    @Test
+    void appendDoesNotWaitForShutdown() throws InterruptedException {
+        Logger logger = Mockito.mock(Logger.class);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            writing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(logger).info("Invoking slow");
+        AsyncLogAppender appender = new AsyncLogAppender(16);
+        appender.append(logger, false, "Invoking slow");
+        Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        //shutdown waits for the writer thread, which is blocked by the slow logger
+        Thread shutdownThread = new Thread(appender::shutdown);
+        shutdownThread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shutdownThread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        long start = System.nanoTime();
+        appender.append(logger, false, "Invoking during shutdown");
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        release.countDown();
+        shutdownThread.join();
+        appender.shutdown();
+        Mockito.verify(logger).info("Invoking during shutdown");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.water.core.interceptors.manifest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles sample components with ComponentManifestProcessor and checks the generated manifest and factory
+ */
+class ComponentManifestProcessorTest {
+
+    @Test
+    void processorWritesManifestAndFactory() throws IOException, ClassNotFoundException {
+        Path workDir = Files.createTempDirectory("component-manifest");
+        try {
+            compileAndCheck(workDir);
+        } finally {
+            try (Stream<Path> files = Files.walk(workDir)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private void compileAndCheck(Path workDir) throws IOException, ClassNotFoundException {
+        Path sources = Files.createDirectories(workDir.resolve("src/sample"));
+        Path classes = Files.createDirectories(workDir.resolve("classes"));
+        Path generated = Files.createDirectories(workDir.resolve("generated"));
+        Files.writeString(sources.resolve("SampleService.java"), String.join("\n",
+                "package sample;",
+                "public interface SampleService extends it.water.core.api.service.Service {",
+                "}"), StandardCharsets.UTF_8);
+        Files.writeString(sources.resolve("SampleComponent.java"), String.join("\n",
+                "package sample;",
+                "import it.water.core.api.registry.ComponentRegistry;",
+                "import it.water.core.interceptors.annotations.FrameworkComponent;",
+                "import it.water.core.interceptors.annotations.Inject;",
+                "@FrameworkComponent(services = SampleService.class, properties = {\"kind=sample\", \"invalid\"}, priority = 3, lazy = true)",
+                "public class SampleComponent implements SampleService {",
+                "    @Inject(injectOnceAtStartup = true)",
+                "    private ComponentRegistry registry;",
+                "    @Inject",
+                "    private Runnable task;",
+                "    public void setRegistry(ComponentRegistry registry) {",
+                "        this.registry = registry;",
+                "    }",
+                "    public void setTask(Runnable task) {",
+                "        this.task = task;",
+                "    }",
+                "}"), StandardCharsets.UTF_8);
+        Files.writeString(sources.resolve("NotInstantiableComponent.java"), String.join("\n",
+                "package sample;",
+                "@it.water.core.interceptors.annotations.FrameworkComponent",
+                "public class NotInstantiableComponent implements Runnable {",
+                "    public NotInstantiableComponent(String name) {",
+                "    }",
+                "    public void run() {",
+                "    }",
+                "}"), StandardCharsets.UTF_8);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+             Stream<Path> sourceFiles = Files.list(sources)) {
+            List<String> options = List.of("-classpath", System.getProperty("java.class.path"), "-d", classes.toString(), "-s", generated.toString());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromPaths(sourceFiles.collect(Collectors.toList())));
+            task.setProcessors(List.of(new ComponentManifestProcessor()));
+            Assertions.assertTrue(task.call());
+        }
+
+        List<String> manifest = Files.readAllLines(classes.resolve(ComponentManifest.MANIFEST_RESOURCE), StandardCharsets.UTF_8);
+        Assertions.assertTrue(manifest.contains("component sample.SampleComponent"));
+        Assertions.assertTrue(manifest.contains("service sample.SampleService"));
+        Assertions.assertTrue(manifest.contains("interface sample.SampleService"));
+        Assertions.assertTrue(manifest.contains("property kind=sample"));
+        Assertions.assertTrue(manifest.contains("startupInject registry"));
+        Assertions.assertTrue(manifest.contains("component sample.NotInstantiableComponent"));
+        //only startup fields and valid properties are written, priority and lazy are read from the annotation
+        Assertions.assertFalse(manifest.stream().anyMatch(line -> line.contains("task") || line.contains("invalid") || line.startsWith("priority") || line.startsWith("lazy")));
+        List<Path> factories;
+        try (Stream<Path> generatedSources = Files.list(generated.resolve("sample"))) {
+            factories = generatedSources.collect(Collectors.toList());
+        }
+        Assertions.assertEquals(1, factories.size());
+        String factorySource = Files.readString(factories.get(0), StandardCharsets.UTF_8);
+        Assertions.assertTrue(factorySource.contains("return new sample.SampleComponent();"));
+        Assertions.assertFalse(factorySource.contains("NotInstantiableComponent"));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            ComponentManifest componentManifest = ComponentManifest.load(classLoader);
+            ComponentManifestEntry entry = componentManifest.getEntry("sample.SampleComponent");
+            Assertions.assertEquals(List.of("sample.SampleService"), entry.getServices());
+            Assertions.assertEquals(List.of("registry"), entry.getStartupInjectedFields());
+            Assertions.assertNotNull(entry.getFactoryClassName());
+            Assertions.assertSame(classLoader.loadClass("sample.SampleComponent"), componentManifest.newComponent("sample.SampleComponent").getClass());
+            Assertions.assertNull(componentManifest.getEntry("sample.NotInstantiableComponent").getFactoryClassName());
+            Assertions.assertNull(componentManifest.newComponent("sample.NotInstantiableComponent"));
+        }
+    }
+}
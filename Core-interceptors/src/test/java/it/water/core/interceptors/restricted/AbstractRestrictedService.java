@@ -0,0 +1,28 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.water.core.interceptors.restricted;
+
+import it.water.core.interceptors.TestMethodAnnotation;
+
+//Implements the restricted service so that subclasses in other packages do not need to refer to the restricted type,
+//the method is intercepted so proxies cast the value returned by the interceptor to the restricted type
+public abstract class AbstractRestrictedService implements RestrictedService {
+    @Override
+    @TestMethodAnnotation
+    public RestrictedValue restrictedValue() {
+        return new RestrictedValue();
+    }
+}
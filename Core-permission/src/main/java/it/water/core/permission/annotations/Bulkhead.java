@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.permission.annotations;
+
+import it.water.core.api.interceptors.UsesInvocationContext;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Author Aristide Cittadino
+ * Annotation to limit the number of concurrent executions of a method, so a single caller cannot use all the worker threads.
+ * When the limit is reached invocations wait up to maxWait for a free slot, then they are rejected with TooManyRequestsException.
+ */
+@Target({ElementType.METHOD})
+@Retention(value = RetentionPolicy.RUNTIME)
+@UsesInvocationContext
+public @interface Bulkhead {
+    /**
+     * @return Maximum number of concurrent executions
+     */
+    int maxConcurrentCalls();
+
+    /**
+     * @return Maximum time an invocation waits for a free slot, 0 means rejecting immediately
+     */
+    long maxWait() default 0;
+
+    TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * @return who shares the limit
+     */
+    LimitScope scope() default LimitScope.TENANT;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.permission.annotations;
+
+/**
+ * Author Aristide Cittadino
+ * Defines who shares a limit defined by @RateLimited or @Bulkhead
+ */
+public enum LimitScope {
+    /**
+     * One limit for all the invocations of the method
+     */
+    METHOD,
+    /**
+     * One limit for each logged user
+     */
+    USER,
+    /**
+     * One limit for each active company of the logged user, users without an active company are limited by user
+     */
+    TENANT
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.permission.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Author Aristide Cittadino
+ * Annotation to limit the number of invocations of a method in a period of time.
+ * Invocations exceeding the limit are rejected with TooManyRequestsException.
+ * Permits are refilled continuously, so up to permits invocations can be executed in a burst.
+ */
+@Target({ElementType.METHOD})
+@Retention(value = RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+    /**
+     * @return Number of invocations allowed in each period
+     */
+    int permits();
+
+    /**
+     * @return Period length
+     */
+    long period() default 1;
+
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * @return who shares the limit
+     */
+    LimitScope scope() default LimitScope.USER;
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.permission.exceptions;
+
+import it.water.core.model.exceptions.WaterRuntimeException;
+
+/**
+ * @Author Aristide Cittadino
+ * Thrown when an invocation exceeds the limits defined by @RateLimited or @Bulkhead.
+ * Rejections are expected under load so the stack trace is not filled.
+ */
+public class TooManyRequestsException extends WaterRuntimeException {
+
+    public TooManyRequestsException(String message) {
+        super(message, null, false, false);
+    }
+}
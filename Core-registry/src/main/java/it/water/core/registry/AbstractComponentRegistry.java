@@ -21,7 +21,8 @@ import it.water.core.api.registry.ComponentRegistry;
 import it.water.core.api.registry.filter.ComponentFilter;
 import it.water.core.api.repository.BaseRepository;
 import it.water.core.api.service.EntityExtensionService;
-import it.water.core.registry.model.exception.NoComponentRegistryFoundException;
+
+import java.util.Optional;
 
 /**
  * @Author Aristide Cittadino
@@ -35,17 +36,14 @@ public abstract class AbstractComponentRegistry implements ComponentRegistry {
      * @return
      */
     public <T extends BaseEntity> BaseRepository<T> findEntityExtensionRepository(Class<T> type) {
-        try {
-            ComponentFilter filter = this.getComponentFilterBuilder().createFilter(EntityExtensionService.RELATED_ENTITY_PROPERTY, type.getName());
-            EntityExtensionService entityExtensionService = this.findComponent(EntityExtensionService.class, filter);
-            if (entityExtensionService != null) {
-                log.debug("Found entity extension :{} for entity type: {} ", entityExtensionService.type(), entityExtensionService.relatedType().getName());
-                //find the system api of the extension in order to propagate changes
-                return this.findEntityRepository(entityExtensionService.type().getName());
-            }
-        } catch (NoComponentRegistryFoundException ex) {
-            log.debug("No extension point found fot entity {}", type.getName(), ex);
+        ComponentFilter filter = this.getComponentFilterBuilder().createFilter(EntityExtensionService.RELATED_ENTITY_PROPERTY, type.getName());
+        Optional<EntityExtensionService> entityExtensionService = this.findComponentIfPresent(EntityExtensionService.class, filter);
+        if (entityExtensionService.isPresent()) {
+            log.debug("Found entity extension :{} for entity type: {} ", entityExtensionService.get().type(), entityExtensionService.get().relatedType().getName());
+            //find the system api of the extension in order to propagate changes
+            return this.findEntityRepository(entityExtensionService.get().type().getName());
         }
+        log.debug("No extension point found fot entity {}", type.getName());
         return null;
     }
 }
@@ -0,0 +1,578 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.registry;
+
+import it.water.core.api.interceptors.OnDeactivate;
+import it.water.core.api.registry.ComponentConfiguration;
+import it.water.core.api.registry.ComponentRegistration;
+import it.water.core.api.registry.ComponentRegistryEvent;
+import it.water.core.api.registry.ComponentRegistryListener;
+import it.water.core.api.registry.filter.CompiledComponentFilter;
+import it.water.core.api.registry.filter.ComponentFilter;
+import it.water.core.api.registry.filter.ComponentFilterBuilder;
+import it.water.core.api.registry.filter.ComponentPropertyFilter;
+import it.water.core.api.repository.BaseRepository;
+import it.water.core.api.service.BaseEntitySystemApi;
+import it.water.core.model.exceptions.WaterRuntimeException;
+import it.water.core.registry.filter.CompiledFilters;
+import it.water.core.registry.filter.ComponentDefaultFilterBuilder;
+import it.water.core.registry.model.ComponentConfigurationFactory;
+import it.water.core.registry.model.InMemoryComponentRegistration;
+import it.water.core.registry.model.LazyComponentHolder;
+import it.water.core.registry.model.exception.NoComponentRegistryFoundException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * @Author Aristide Cittadino
+ * Thread safe component registry which keeps components in memory.
+ * It can be used by applications running without a framework providing its own registry (OSGi, Spring...).
+ * <p>
+ * For each registration class the registry keeps an immutable array of registrations sorted by priority,
+ * components with the same priority are kept in registration order.
+ * Every registration or unregistration replaces the array with an updated copy, so lookups are lock free
+ * and always see a consistent snapshot, while writes on the same registration class are serialized.
+ * Once a class has been registered, lookups never throw NoComponentRegistryFoundException for it:
+ * after its last component is unregistered findComponent returns null and findComponents an empty list.
+ * Entity system apis and repositories are tracked in the same way by entity type, so when the one with the highest
+ * priority is unregistered the next one is returned.
+ * <p>
+ * Filters requiring a property value are evaluated only on components having it, through a property index.
+ * Results of filtered findComponent calls, including missing components, are memoized by registration class and filter string.
+ * The whole cache is replaced on every registration or unregistration, configuration changes made after registration
+ * are not seen by memoized lookups.
+ * <p>
+ * Listeners are notified synchronously after the registry has been updated.
+ * <p>
+ * Lazy components are registered through their factory, which is invoked once, the first time the component is looked up.
+ * Lazy components are not indexed as entity system apis or repositories, since their entity type is known only after creation.
+ * <p>
+ * Subclasses can wrap components before registration (for example with proxies) registering them through doRegisterComponent.
+ */
+public class InMemoryComponentRegistry extends AbstractComponentRegistry {
+    private final Map<Class<?>, Registrations> registrations = new ConcurrentHashMap<>();
+    //entity type -> entity components in priority order
+    private final Map<String, RegisteredComponent[]> entitySystemApis = new ConcurrentHashMap<>();
+    private final Map<String, RegisteredComponent[]> entityRepositories = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<RegisteredListener>> listeners = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+    private final ComponentFilterBuilder componentFilterBuilder;
+    //registration class -> filter string -> component or NO_COMPONENT
+    private volatile Map<Class<?>, Map<String, Object>> lookupCache = new ConcurrentHashMap<>();
+    private static final Object NO_COMPONENT = new Object();
+    private static final int MAX_CACHED_FILTERS_PER_CLASS = 256;
+
+    public InMemoryComponentRegistry() {
+        this(new ComponentDefaultFilterBuilder());
+    }
+
+    public InMemoryComponentRegistry(ComponentFilterBuilder componentFilterBuilder) {
+        this.componentFilterBuilder = componentFilterBuilder;
+    }
+
+    @Override
+    public <T> List<T> findComponents(Class<T> componentClass, ComponentFilter filter) {
+        return findComponents(getRegistrations(componentClass), filter);
+    }
+
+    @Override
+    public <T> List<T> findComponentsOrEmpty(Class<T> componentClass, ComponentFilter filter) {
+        Registrations found = registrations.get(componentClass);
+        if (found == null)
+            return Collections.emptyList();
+        return findComponents(found, filter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> findComponents(Registrations found, ComponentFilter filter) {
+        //callers own the returned list, so it is always a new one
+        if (filter == null) {
+            List<T> components = new ArrayList<>(found.registered.length);
+            for (RegisteredComponent registered : found.registered)
+                components.add((T) registered.component());
+            return components;
+        }
+        CompiledComponentFilter compiledFilter = filter.compile();
+        List<T> components = new ArrayList<>();
+        for (RegisteredComponent registered : found.candidates(filter)) {
+            if (registered.matches(compiledFilter))
+                components.add((T) registered.component());
+        }
+        return components;
+    }
+
+    @Override
+    public <T> T findComponent(Class<T> componentClass, ComponentFilter filter) {
+        //cache must be read before registrations, so results computed from replaced registrations end up in a discarded cache
+        Map<Class<?>, Map<String, Object>> cache = this.lookupCache;
+        return findComponent(cache, getRegistrations(componentClass), componentClass, filter);
+    }
+
+    @Override
+    public <T> Optional<T> findComponentIfPresent(Class<T> componentClass, ComponentFilter filter) {
+        Map<Class<?>, Map<String, Object>> cache = this.lookupCache;
+        Registrations found = registrations.get(componentClass);
+        if (found == null)
+            return Optional.empty();
+        return Optional.ofNullable(findComponent(cache, found, componentClass, filter));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T findComponent(Map<Class<?>, Map<String, Object>> cache, Registrations found, Class<T> componentClass, ComponentFilter filter) {
+        if (filter == null)
+            return (found.registered.length > 0) ? (T) found.registered[0].component() : null;
+        String filterKey = filter.getFilter();
+        if (filterKey == null)
+            return (T) findFirst(found, filter);
+        Map<String, Object> classCache = cache.computeIfAbsent(componentClass, key -> new ConcurrentHashMap<>());
+        Object cached = classCache.get(filterKey);
+        if (cached == null) {
+            Object component = findFirst(found, filter);
+            cached = (component != null) ? component : NO_COMPONENT;
+            if (classCache.size() >= MAX_CACHED_FILTERS_PER_CLASS)
+                classCache.clear();
+            classCache.put(filterKey, cached);
+        }
+        return (cached != NO_COMPONENT) ? (T) cached : null;
+    }
+
+    private Object findFirst(Registrations found, ComponentFilter filter) {
+        CompiledComponentFilter compiledFilter = filter.compile();
+        for (RegisteredComponent registered : found.candidates(filter)) {
+            if (registered.matches(compiledFilter))
+                return registered.component();
+        }
+        return null;
+    }
+
+    @Override
+    public <T, K> ComponentRegistration<T, K> registerComponent(Class<? extends T> componentClass, T component, ComponentConfiguration configuration) {
+        if (component == null)
+            throw new WaterRuntimeException("Registration component cannot be null");
+        return doRegisterComponent(componentClass, component, component, configuration);
+    }
+
+    /**
+     * Registers a component.
+     *
+     * @param componentClass registration class
+     * @param component      the original component, used to detect entity system apis and repositories
+     * @param toRegister     the object returned by lookups, it can be the component itself or a wrapper of it
+     * @param configuration  component configuration, if null a default one is used
+     * @return the registration
+     */
+    @SuppressWarnings("unchecked")
+    protected <T, K> ComponentRegistration<T, K> doRegisterComponent(Class<?> componentClass, Object component, Object toRegister, ComponentConfiguration configuration) {
+        ComponentConfiguration componentConfiguration = (configuration != null) ? configuration : ComponentConfigurationFactory.createNewComponentPropertyFactory().build();
+        long registrationSequence = sequence.incrementAndGet();
+        ComponentRegistration<?, ?> registration = createRegistration(componentClass, toRegister, componentConfiguration, registrationSequence);
+        RegisteredComponent registered = new RegisteredComponent(registration, toRegister, componentConfiguration.getPriority());
+        addRegisteredComponent(componentClass, registered);
+        if (component instanceof BaseEntitySystemApi)
+            registerEntityComponent(entitySystemApis, ((BaseEntitySystemApi<?>) component).getEntityType().getName(), registered);
+        if (component instanceof BaseRepository)
+            registerEntityComponent(entityRepositories, ((BaseRepository<?>) component).getEntityType().getName(), registered);
+        registryChanged();
+        notifyListeners(ComponentRegistryEvent.Type.REGISTERED, componentClass, registered);
+        return (ComponentRegistration<T, K>) registration;
+    }
+
+    @Override
+    public boolean supportsLazyComponents() {
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T, K> ComponentRegistration<T, K> registerLazyComponent(Class<? extends T> componentClass, Supplier<? extends T> componentFactory, ComponentConfiguration configuration) {
+        if (componentFactory == null)
+            throw new WaterRuntimeException("Registration component factory cannot be null");
+        ComponentConfiguration componentConfiguration = (configuration != null) ? configuration : ComponentConfigurationFactory.createNewComponentPropertyFactory().build();
+        LazyComponentRegistration registration = new LazyComponentRegistration(componentClass, componentConfiguration, sequence.incrementAndGet(), () -> {
+            Object component = componentFactory.get();
+            if (component == null)
+                throw new WaterRuntimeException("Lazy component factory of " + componentClass.getName() + " returned null");
+            return prepareLazyComponent(componentClass, component, componentConfiguration);
+        });
+        RegisteredComponent registered = new RegisteredComponent(registration, componentConfiguration.getPriority());
+        addRegisteredComponent(componentClass, registered);
+        registryChanged();
+        notifyListeners(ComponentRegistryEvent.Type.REGISTERED, componentClass, registered);
+        return (ComponentRegistration<T, K>) registration;
+    }
+
+    /**
+     * Invoked once when a lazy component is created.
+     * Lookups made while the component is being created by its own activation invoke it again, their result is not kept.
+     *
+     * @param componentClass registration class
+     * @param component      the component created by the factory
+     * @param configuration  component configuration
+     * @return the object returned by lookups, it can be the component itself or a wrapper of it
+     */
+    protected Object prepareLazyComponent(Class<?> componentClass, Object component, ComponentConfiguration configuration) {
+        return component;
+    }
+
+    private void addRegisteredComponent(Class<?> componentClass, RegisteredComponent registered) {
+        registrations.compute(componentClass, (key, current) -> (current == null) ? new Registrations(new RegisteredComponent[]{registered}) : current.add(registered));
+    }
+
+    /**
+     * Creates the registration object returned to the caller
+     */
+    protected ComponentRegistration<?, ?> createRegistration(Class<?> componentClass, Object toRegister, ComponentConfiguration configuration, long registrationSequence) {
+        return new InMemoryComponentRegistration<>(componentClass, toRegister, configuration, registrationSequence);
+    }
+
+    @Override
+    public <T> boolean unregisterComponent(ComponentRegistration<T, ?> registration) {
+        //lazy components never looked up are removed without creating them
+        if (registration instanceof LazyComponentRegistration && !((LazyComponentRegistration) registration).isCreated())
+            return removeComponent(registration.getRegistrationClass(), registered -> registered.registration == registration);
+        this.invokeLifecycleMethod(OnDeactivate.class, registration.getComponent().getClass(), registration.getComponent());
+        T component = registration.getComponent();
+        return removeComponent(registration.getRegistrationClass(), registered -> registered.isSameComponent(component));
+    }
+
+    @Override
+    public <T> boolean unregisterComponent(Class<T> componentClass, T component) {
+        this.invokeLifecycleMethod(OnDeactivate.class, componentClass, component);
+        return removeComponent(componentClass, registered -> registered.isSameComponent(component));
+    }
+
+    /**
+     * @param registered component stored inside the registry
+     * @param component  component which is being unregistered
+     * @return true if the component identifies the registered one
+     */
+    protected boolean isSameComponent(Object registered, Object component) {
+        return registered == component || registered.equals(component);
+    }
+
+    private boolean removeComponent(Class<?> componentClass, Predicate<RegisteredComponent> toRemove) {
+        RegisteredComponent[] removed = new RegisteredComponent[1];
+        registrations.computeIfPresent(componentClass, (key, current) -> {
+            for (int i = 0; i < current.registered.length; i++) {
+                if (toRemove.test(current.registered[i])) {
+                    removed[0] = current.registered[i];
+                    return current.remove(i);
+                }
+            }
+            return current;
+        });
+        if (removed[0] == null)
+            return false;
+        //registered components have identity equality, so only the registration which added an entity component removes it
+        unregisterEntityComponent(entitySystemApis, removed[0]);
+        unregisterEntityComponent(entityRepositories, removed[0]);
+        registryChanged();
+        notifyListeners(ComponentRegistryEvent.Type.UNREGISTERED, componentClass, removed[0]);
+        return true;
+    }
+
+    @Override
+    public boolean addComponentListener(Class<?> componentClass, ComponentFilter filter, ComponentRegistryListener listener) {
+        listeners.computeIfAbsent(componentClass, key -> new CopyOnWriteArrayList<>()).add(new RegisteredListener(listener, CompiledFilters.compile(filter)));
+        return true;
+    }
+
+    @Override
+    public boolean removeComponentListener(ComponentRegistryListener listener) {
+        boolean removed = false;
+        for (List<RegisteredListener> classListeners : listeners.values()) {
+            removed |= classListeners.removeIf(registeredListener -> registeredListener.listener == listener);
+        }
+        return removed;
+    }
+
+    private void notifyListeners(ComponentRegistryEvent.Type type, Class<?> componentClass, RegisteredComponent registered) {
+        List<RegisteredListener> classListeners = listeners.get(componentClass);
+        if (classListeners == null || classListeners.isEmpty())
+            return;
+        ComponentRegistryEvent event = new ComponentRegistryEvent(type, componentClass, registered.registration);
+        for (RegisteredListener registeredListener : classListeners) {
+            if (!registered.matches(registeredListener.filter))
+                continue;
+            try {
+                registeredListener.listener.componentChanged(event);
+            } catch (RuntimeException e) {
+                log.error("Error while notifying {} to listener {}", event, registeredListener.listener, e);
+            }
+        }
+    }
+
+    /**
+     * Invoked after registrations have been updated
+     */
+    private void registryChanged() {
+        this.lookupCache = new ConcurrentHashMap<>();
+        generation.incrementAndGet();
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    @Override
+    public ComponentFilterBuilder getComponentFilterBuilder() {
+        return componentFilterBuilder;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override
+    public <T extends BaseEntitySystemApi> T findEntitySystemApi(String entityClassName) {
+        RegisteredComponent[] registered = entitySystemApis.get(entityClassName);
+        return (registered != null) ? (T) registered[0].component() : null;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override
+    public <T extends BaseRepository> T findEntityRepository(String entityClassName) {
+        RegisteredComponent[] registered = entityRepositories.get(entityClassName);
+        return (registered != null) ? (T) registered[0].component() : null;
+    }
+
+    private Registrations getRegistrations(Class<?> componentClass) {
+        Registrations found = registrations.get(componentClass);
+        if (found == null)
+            throw new NoComponentRegistryFoundException();
+        return found;
+    }
+
+    /**
+     * Adds the entity component keeping the ones related to the same entity sorted by priority,
+     * on equal priority the first registered wins
+     */
+    private void registerEntityComponent(Map<String, RegisteredComponent[]> entityComponents, String entityType, RegisteredComponent registered) {
+        entityComponents.compute(entityType, (key, current) -> (current == null) ? new RegisteredComponent[]{registered} : insertByPriority(current, registered));
+    }
+
+    /**
+     * Removes the entity component, the entity type is removed only when no other component is related to it
+     */
+    private void unregisterEntityComponent(Map<String, RegisteredComponent[]> entityComponents, RegisteredComponent registered) {
+        for (String entityType : entityComponents.keySet()) {
+            entityComponents.computeIfPresent(entityType, (key, current) -> {
+                for (int i = 0; i < current.length; i++) {
+                    if (current[i] == registered)
+                        return (current.length == 1) ? null : removeAt(current, i);
+                }
+                return current;
+            });
+        }
+    }
+
+    /**
+     * @return a copy of the array with the component inserted after the ones with higher or equal priority
+     */
+    private static RegisteredComponent[] insertByPriority(RegisteredComponent[] registered, RegisteredComponent toAdd) {
+        int position = registered.length;
+        while (position > 0 && registered[position - 1].priority < toAdd.priority)
+            position--;
+        RegisteredComponent[] updated = Arrays.copyOf(registered, registered.length + 1);
+        System.arraycopy(registered, position, updated, position + 1, registered.length - position);
+        updated[position] = toAdd;
+        return updated;
+    }
+
+    private static RegisteredComponent[] removeAt(RegisteredComponent[] registered, int position) {
+        RegisteredComponent[] updated = new RegisteredComponent[registered.length - 1];
+        System.arraycopy(registered, 0, updated, 0, position);
+        System.arraycopy(registered, position + 1, updated, position, registered.length - position - 1);
+        return updated;
+    }
+
+    /**
+     * Immutable snapshot of the components registered for a registration class.
+     * When many components are registered, the snapshot lazily builds an index from property name and value
+     * to the components having it, so filters requiring a property value evaluate only the indexed components.
+     */
+    private static final class Registrations {
+        private static final int MIN_INDEXED_COMPONENTS = 8;
+        private static final RegisteredComponent[] NO_REGISTRATIONS = new RegisteredComponent[0];
+        private final RegisteredComponent[] registered;
+        //property name -> property value -> registered components in priority order
+        private volatile Map<String, Map<String, RegisteredComponent[]>> propertyIndex;
+
+        private Registrations(RegisteredComponent[] registered) {
+            this.registered = registered;
+        }
+
+        /**
+         * @return registrations which can match the filter, in priority order
+         */
+        private RegisteredComponent[] candidates(ComponentFilter filter) {
+            if (registered.length < MIN_INDEXED_COMPONENTS)
+                return registered;
+            ComponentPropertyFilter requiredProperty = CompiledFilters.requiredProperty(filter);
+            if (requiredProperty == null || requiredProperty.getName() == null)
+                return registered;
+            Map<String, RegisteredComponent[]> valuesIndex = getPropertyIndex().get(requiredProperty.getName());
+            RegisteredComponent[] indexed = (valuesIndex != null) ? valuesIndex.get(requiredProperty.getValue()) : null;
+            return (indexed != null) ? indexed : NO_REGISTRATIONS;
+        }
+
+        private Map<String, Map<String, RegisteredComponent[]>> getPropertyIndex() {
+            Map<String, Map<String, RegisteredComponent[]>> index = this.propertyIndex;
+            if (index == null) {
+                //concurrent builds produce the same index, so the last one can safely win
+                index = buildPropertyIndex();
+                this.propertyIndex = index;
+            }
+            return index;
+        }
+
+        private Map<String, Map<String, RegisteredComponent[]>> buildPropertyIndex() {
+            Map<String, Map<String, List<RegisteredComponent>>> index = new HashMap<>();
+            for (RegisteredComponent component : registered) {
+                component.registration.getConfiguration().getConfigurationView().forEach((name, value) -> {
+                    //property filters match only string values
+                    if (value instanceof String)
+                        index.computeIfAbsent(name, key -> new HashMap<>()).computeIfAbsent((String) value, key -> new ArrayList<>()).add(component);
+                });
+            }
+            Map<String, Map<String, RegisteredComponent[]>> builtIndex = new HashMap<>();
+            index.forEach((name, values) -> {
+                Map<String, RegisteredComponent[]> builtValues = new HashMap<>();
+                values.forEach((value, components) -> builtValues.put(value, components.toArray(NO_REGISTRATIONS)));
+                builtIndex.put(name, builtValues);
+            });
+            return builtIndex;
+        }
+
+        private Registrations add(RegisteredComponent toAdd) {
+            //components are sorted by descending priority and then by registration order
+            return new Registrations(insertByPriority(registered, toAdd));
+        }
+
+        /**
+         * The snapshot is kept even when it becomes empty, so lookups on the class return no components instead of failing
+         */
+        private Registrations remove(int position) {
+            return new Registrations(removeAt(registered, position));
+        }
+    }
+
+    private static final class RegisteredListener {
+        private final ComponentRegistryListener listener;
+        private final CompiledComponentFilter filter;
+
+        private RegisteredListener(ComponentRegistryListener listener, CompiledComponentFilter filter) {
+            this.listener = listener;
+            this.filter = filter;
+        }
+    }
+
+    private final class RegisteredComponent {
+        private final ComponentRegistration<?, ?> registration;
+        //null for lazy components, which are read from their registration
+        private final Object component;
+        private final int priority;
+
+        private RegisteredComponent(ComponentRegistration<?, ?> registration, Object component, int priority) {
+            this.registration = registration;
+            this.component = component;
+            this.priority = priority;
+        }
+
+        private RegisteredComponent(LazyComponentRegistration registration, int priority) {
+            this(registration, null, priority);
+        }
+
+        private Object component() {
+            return (component != null) ? component : registration.getComponent();
+        }
+
+        /**
+         * Lazy components which have not been created yet cannot be the given component
+         */
+        private boolean isSameComponent(Object toCompare) {
+            Object registeredComponent = component;
+            if (registeredComponent == null)
+                registeredComponent = ((LazyComponentRegistration) registration).getCreatedComponent();
+            return registeredComponent != null && InMemoryComponentRegistry.this.isSameComponent(registeredComponent, toCompare);
+        }
+
+        private boolean matches(CompiledComponentFilter compiledFilter) {
+            return compiledFilter == CompiledComponentFilter.MATCH_ALL || compiledFilter.matches(registration.getConfiguration().getConfigurationView());
+        }
+    }
+
+    /**
+     * Registration of a lazy component, the component is created the first time it is read.
+     * Creation runs outside of any lock, lookups made while the component is being created by the same thread,
+     * or by threads the creating one is waiting for, invoke the factory again without keeping its result.
+     * The factory is responsible for returning the instance under creation in that case.
+     */
+    private static final class LazyComponentRegistration implements ComponentRegistration<Object, Long> {
+        private final Class<?> registrationClass;
+        private final ComponentConfiguration configuration;
+        private final long registrationSequence;
+        private final Supplier<Object> factory;
+        private final LazyComponentHolder<Object> holder = new LazyComponentHolder<>();
+
+        private LazyComponentRegistration(Class<?> registrationClass, ComponentConfiguration configuration, long registrationSequence, Supplier<Object> factory) {
+            this.registrationClass = registrationClass;
+            this.configuration = configuration;
+            this.registrationSequence = registrationSequence;
+            this.factory = factory;
+        }
+
+        private boolean isCreated() {
+            return holder.isCreated();
+        }
+
+        private Object getCreatedComponent() {
+            return holder.getIfCreated();
+        }
+
+        @Override
+        public Object getComponent() {
+            return holder.get(early -> factory.get(), factory);
+        }
+
+        @Override
+        public ComponentConfiguration getConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public Class<?> getRegistrationClass() {
+            return registrationClass;
+        }
+
+        @Override
+        public Long getRegistration() {
+            return registrationSequence;
+        }
+    }
+}
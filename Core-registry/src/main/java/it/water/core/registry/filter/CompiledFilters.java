@@ -0,0 +1,164 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.registry.filter;
+
+import it.water.core.api.registry.filter.CompiledComponentFilter;
+import it.water.core.api.registry.filter.ComponentFilter;
+import it.water.core.api.registry.filter.ComponentFilterAndCondition;
+import it.water.core.api.registry.filter.ComponentFilterOrCondition;
+import it.water.core.api.registry.filter.ComponentPropertyFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author Aristide Cittadino
+ * Compiles default component filters into flat predicates.
+ * Nested conditions of the same kind are merged into a single node, for example (a AND (b AND c)) becomes AND(a,b,c),
+ * so evaluating a filter costs one comparison per property without intermediate objects.
+ */
+public final class CompiledFilters {
+
+    private CompiledFilters() {
+    }
+
+    /**
+     * @param filter filter to compile, null means no filter
+     * @return the compiled filter
+     */
+    public static CompiledComponentFilter compile(ComponentFilter filter) {
+        return (filter == null) ? CompiledComponentFilter.MATCH_ALL : filter.compile();
+    }
+
+    /**
+     * Finds a property equality which must hold for every configuration matched by the filter,
+     * registries can use it to narrow the candidates through an index before evaluating the whole filter.
+     *
+     * @param filter filter
+     * @return the property filter or null if the filter does not require a specific property value
+     */
+    public static ComponentPropertyFilter requiredProperty(ComponentFilter filter) {
+        if (filter == null || filter.isNot())
+            return null;
+        //only default property filters are known to match by string equality
+        if (filter instanceof ComponentDefaultPropertyFilter)
+            return (ComponentPropertyFilter) filter;
+        if (filter instanceof ComponentFilterAndCondition) {
+            ComponentFilterAndCondition andCondition = (ComponentFilterAndCondition) filter;
+            ComponentPropertyFilter required = requiredProperty(andCondition.getFirst());
+            return (required != null) ? required : requiredProperty(andCondition.getSecond());
+        }
+        return null;
+    }
+
+    static CompiledComponentFilter property(String name, String value, boolean not) {
+        return new PropertyEquals(name, value, not);
+    }
+
+    static CompiledComponentFilter and(ComponentFilterAndCondition condition) {
+        List<CompiledComponentFilter> operands = new ArrayList<>();
+        collectAndOperands(condition.getFirst(), operands);
+        collectAndOperands(condition.getSecond(), operands);
+        return new AllOf(operands.toArray(new CompiledComponentFilter[0]), condition.isNot());
+    }
+
+    static CompiledComponentFilter or(ComponentFilterOrCondition condition) {
+        List<CompiledComponentFilter> operands = new ArrayList<>();
+        collectOrOperands(condition.getFirst(), operands);
+        collectOrOperands(condition.getSecond(), operands);
+        return new AnyOf(operands.toArray(new CompiledComponentFilter[0]), condition.isNot());
+    }
+
+    private static void collectAndOperands(ComponentFilter filter, List<CompiledComponentFilter> operands) {
+        if (filter instanceof ComponentFilterAndCondition && !filter.isNot()) {
+            ComponentFilterAndCondition andCondition = (ComponentFilterAndCondition) filter;
+            collectAndOperands(andCondition.getFirst(), operands);
+            collectAndOperands(andCondition.getSecond(), operands);
+        } else {
+            operands.add(compile(filter));
+        }
+    }
+
+    private static void collectOrOperands(ComponentFilter filter, List<CompiledComponentFilter> operands) {
+        if (filter instanceof ComponentFilterOrCondition && !filter.isNot()) {
+            ComponentFilterOrCondition orCondition = (ComponentFilterOrCondition) filter;
+            collectOrOperands(orCondition.getFirst(), operands);
+            collectOrOperands(orCondition.getSecond(), operands);
+        } else {
+            operands.add(compile(filter));
+        }
+    }
+
+    private static final class PropertyEquals implements CompiledComponentFilter {
+        private final String name;
+        private final String value;
+        private final boolean not;
+
+        private PropertyEquals(String name, String value, boolean not) {
+            this.name = name;
+            this.value = value;
+            this.not = not;
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> configuration) {
+            //only string properties can match, as with Properties.getProperty
+            Object propertyValue = configuration.get(name);
+            return (propertyValue instanceof String && propertyValue.equals(value)) != not;
+        }
+    }
+
+    private static final class AllOf implements CompiledComponentFilter {
+        private final CompiledComponentFilter[] operands;
+        private final boolean not;
+
+        private AllOf(CompiledComponentFilter[] operands, boolean not) {
+            this.operands = operands;
+            this.not = not;
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> configuration) {
+            for (CompiledComponentFilter operand : operands) {
+                if (!operand.matches(configuration))
+                    return not;
+            }
+            return !not;
+        }
+    }
+
+    private static final class AnyOf implements CompiledComponentFilter {
+        private final CompiledComponentFilter[] operands;
+        private final boolean not;
+
+        private AnyOf(CompiledComponentFilter[] operands, boolean not) {
+            this.operands = operands;
+            this.not = not;
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> configuration) {
+            for (CompiledComponentFilter operand : operands) {
+                if (operand.matches(configuration))
+                    return !not;
+            }
+            return not;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package it.water.core.registry.filter;
 
 import java.util.Properties;
 
+import it.water.core.api.registry.filter.CompiledComponentFilter;
 import it.water.core.api.registry.filter.ComponentFilter;
 import it.water.core.api.registry.filter.ComponentFilterAndCondition;
 import it.water.core.api.registry.filter.FilterImplementation;
@@ -39,4 +40,9 @@ public class ComponentDefaultFilterAndCondition extends AbstractBinaryComponentF
         return (this.not) ? !matches : matches;
     }
 
+    @Override
+    public CompiledComponentFilter compile() {
+        return CompiledFilters.and(this);
+    }
+
 }
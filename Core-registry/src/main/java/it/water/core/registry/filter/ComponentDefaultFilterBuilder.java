@@ -0,0 +1,35 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.registry.filter;
+
+import it.water.core.api.registry.filter.ComponentFilter;
+import it.water.core.api.registry.filter.ComponentFilterBuilder;
+import it.water.core.api.registry.filter.FilterImplementation;
+
+/**
+ * @Author Aristide Cittadino
+ * Filter builder used by registries which evaluate filters in memory
+ */
+public class ComponentDefaultFilterBuilder implements ComponentFilterBuilder {
+    private final FilterImplementation filterImplementation = new ComponentDefaultFilterImplementation();
+
+    @Override
+    public ComponentFilter createFilter(String name, String value) {
+        return new ComponentDefaultPropertyFilter(name, value, filterImplementation);
+    }
+}
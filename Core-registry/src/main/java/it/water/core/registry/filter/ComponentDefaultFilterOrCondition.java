@@ -17,6 +17,7 @@
 
 package it.water.core.registry.filter;
 
+import it.water.core.api.registry.filter.CompiledComponentFilter;
 import it.water.core.api.registry.filter.ComponentFilter;
 import it.water.core.api.registry.filter.ComponentFilterOrCondition;
 import it.water.core.api.registry.filter.FilterImplementation;
@@ -39,4 +40,9 @@ public class ComponentDefaultFilterOrCondition extends AbstractBinaryComponentFi
         return (this.not) ? !matches : matches;
     }
 
+    @Override
+    public CompiledComponentFilter compile() {
+        return CompiledFilters.or(this);
+    }
+
 }
@@ -19,6 +19,7 @@ package it.water.core.registry.filter;
 
 import java.util.Properties;
 
+import it.water.core.api.registry.filter.CompiledComponentFilter;
 import it.water.core.api.registry.filter.ComponentPropertyFilter;
 import it.water.core.api.registry.filter.FilterImplementation;
 import lombok.Getter;
@@ -49,4 +50,9 @@ public class ComponentDefaultPropertyFilter extends AbstractBinaryComponentFilte
         return (this.not) ? !matches : matches;
     }
 
+    @Override
+    public CompiledComponentFilter compile() {
+        return CompiledFilters.property(name, value, this.not);
+    }
+
 }
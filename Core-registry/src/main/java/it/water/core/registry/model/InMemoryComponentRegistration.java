@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.registry.model;
+
+import it.water.core.api.registry.ComponentConfiguration;
+import it.water.core.api.registry.ComponentRegistration;
+
+/**
+ * @param <T> registered component type
+ * @Author Aristide Cittadino
+ * Registration returned by the in memory component registry.
+ * The registration object is the sequence number assigned by the registry, which identifies the registration order.
+ */
+public class InMemoryComponentRegistration<T> implements ComponentRegistration<T, Long> {
+    private final Class<? extends T> registrationClass;
+    private final T component;
+    private final ComponentConfiguration configuration;
+    private final long sequence;
+
+    public InMemoryComponentRegistration(Class<? extends T> registrationClass, T component, ComponentConfiguration configuration, long sequence) {
+        this.registrationClass = registrationClass;
+        this.component = component;
+        this.configuration = configuration;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public T getComponent() {
+        return component;
+    }
+
+    @Override
+    public ComponentConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public Class<? extends T> getRegistrationClass() {
+        return registrationClass;
+    }
+
+    @Override
+    public Long getRegistration() {
+        return sequence;
+    }
+}
@@ -0,0 +1,136 @@
+
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.water.core.registry.model;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * @param <T> component type
+ * @Author Aristide Cittadino
+ * Holds a component created on first use.
+ * The factory runs without holding any lock: one thread creates the component while the others wait for it.
+ * Lookups made while the component is being created by the creating thread itself, or by a thread the creating one
+ * is waiting for, cannot wait without deadlocking: they receive the early instance published by the factory,
+ * or the result of the fallback supplier when no early instance is available.
+ * Failed creations are not cached, so the next lookup tries again.
+ */
+public final class LazyComponentHolder<T> {
+    //creation each thread is waiting for, used to find threads waiting for each other
+    private static final Map<Thread, Creation<?>> waitingThreads = new ConcurrentHashMap<>();
+
+    private final AtomicReference<Creation<T>> creation = new AtomicReference<>();
+    private volatile T component;
+
+    /**
+     * @return true if the component has been created
+     */
+    public boolean isCreated() {
+        return component != null;
+    }
+
+    /**
+     * @return the created component or null if it has not been created yet
+     */
+    public T getIfCreated() {
+        return component;
+    }
+
+    /**
+     * @param factory        creates the component, it receives a consumer which publishes the early instance
+     *                       returned to lookups made during the creation
+     * @param duringCreation invoked by lookups made during the creation when no early instance has been published
+     * @return the component
+     */
+    public T get(Function<Consumer<T>, T> factory, Supplier<T> duringCreation) {
+        T current = component;
+        if (current != null)
+            return current;
+        Creation<T> newCreation = new Creation<>(Thread.currentThread());
+        Creation<T> running = creation.compareAndExchange(null, newCreation);
+        if (running == null)
+            return create(newCreation, factory);
+        return await(running, duringCreation);
+    }
+
+    private T create(Creation<T> current, Function<Consumer<T>, T> factory) {
+        try {
+            T created = factory.apply(early -> current.early = early);
+            component = created;
+            current.result.complete(created);
+            return created;
+        } catch (RuntimeException | Error e) {
+            creation.set(null);
+            current.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private T await(Creation<T> running, Supplier<T> duringCreation) {
+        Thread currentThread = Thread.currentThread();
+        if (running.owner != currentThread) {
+            //threads register before checking, so at least one of two threads waiting for each other finds the cycle
+            waitingThreads.put(currentThread, running);
+            try {
+                if (!isWaitingFor(running.owner, currentThread))
+                    return running.result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            } finally {
+                waitingThreads.remove(currentThread);
+            }
+        }
+        T early = running.early;
+        return (early != null) ? early : duringCreation.get();
+    }
+
+    /**
+     * @return true if thread is waiting, directly or through other threads, for a creation owned by target
+     */
+    private static boolean isWaitingFor(Thread thread, Thread target) {
+        Thread next = thread;
+        //a chain cannot be longer than the number of waiting threads
+        for (int i = 0; i <= waitingThreads.size(); i++) {
+            Creation<?> awaited = waitingThreads.get(next);
+            if (awaited == null)
+                return false;
+            next = awaited.owner;
+            if (next == target)
+                return true;
+        }
+        return false;
+    }
+
+    private static final class Creation<T> {
+        private final Thread owner;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile T early;
+
+        private Creation(Thread owner) {
+            this.owner = owner;
+        }
+    }
+}
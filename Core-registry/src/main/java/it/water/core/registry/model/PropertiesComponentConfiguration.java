@@ -33,6 +33,8 @@ import java.util.*;
 public class PropertiesComponentConfiguration implements it.water.core.api.registry.ComponentConfiguration {
     private static final Logger log = LoggerFactory.getLogger(PropertiesComponentConfiguration.class);
     private Properties props;
+    //immutable view of props, rebuilt lazily after each change
+    private volatile Map<String, Object> configurationView;
     @Getter
     private int priority;
     @Getter
@@ -77,13 +79,31 @@ public class PropertiesComponentConfiguration implements it.water.core.api.regis
     }
 
     @Override
-    public void addProperty(String name, Object value) {
+    public Map<String, Object> getConfigurationView() {
+        Map<String, Object> view = this.configurationView;
+        if (view == null) {
+            synchronized (this) {
+                if (this.configurationView == null) {
+                    Map<String, Object> map = new HashMap<>();
+                    this.props.forEach((name, val) -> map.put(name.toString(), val));
+                    this.configurationView = Collections.unmodifiableMap(map);
+                }
+                view = this.configurationView;
+            }
+        }
+        return view;
+    }
+
+    @Override
+    public synchronized void addProperty(String name, Object value) {
         props.computeIfAbsent(name, key -> value);
+        this.configurationView = null;
     }
 
     @Override
-    public void removeProperty(String name) {
+    public synchronized void removeProperty(String name) {
         if (props.containsKey(name)) props.remove(name);
+        this.configurationView = null;
     }
 
     @Override
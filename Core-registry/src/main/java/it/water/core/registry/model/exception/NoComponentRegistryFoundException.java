@@ -15,11 +15,20 @@
  */
 package it.water.core.registry.model.exception;
 
+import it.water.core.api.registry.ComponentNotFound;
 import it.water.core.model.exceptions.WaterRuntimeException;
 
-public class NoComponentRegistryFoundException extends WaterRuntimeException {
+/**
+ * @Author Aristide Cittadino
+ * Thrown when no component is registered for the requested class.
+ * Missing components are a common outcome, so the exception does not fill its stack trace,
+ * unless it is explicitly requested with the full constructor.
+ * Callers which expect missing components should prefer ComponentRegistry.findComponentIfPresent.
+ */
+public class NoComponentRegistryFoundException extends WaterRuntimeException implements ComponentNotFound {
 
     public NoComponentRegistryFoundException() {
+        super(null, null, false, false);
     }
 
     public NoComponentRegistryFoundException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
@@ -27,14 +36,14 @@ public class NoComponentRegistryFoundException extends WaterRuntimeException {
     }
 
     public NoComponentRegistryFoundException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, false, false);
     }
 
     public NoComponentRegistryFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public NoComponentRegistryFoundException(Throwable cause) {
-        super(cause);
+        super((cause == null) ? null : cause.toString(), cause, false, false);
     }
 }
@@ -16,12 +16,22 @@
 package it.water.core.registry;
 
 
+import it.water.core.api.model.BaseEntity;
 import it.water.core.api.registry.ComponentConfiguration;
+import it.water.core.api.registry.ComponentRegistration;
+import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.api.registry.ComponentRegistryEvent;
+import it.water.core.api.registry.ComponentRegistryListener;
+import it.water.core.api.registry.LiveComponentReference;
+import it.water.core.api.registry.filter.CompiledComponentFilter;
 import it.water.core.api.registry.filter.ComponentFilter;
+import it.water.core.api.service.BaseEntitySystemApi;
 import it.water.core.model.exceptions.WaterException;
+import it.water.core.registry.filter.ComponentDefaultFilterImplementation;
 import it.water.core.registry.filter.ComponentDefaultPropertyFilter;
 import it.water.core.registry.model.PropertiesComponentConfiguration;
 import it.water.core.registry.model.ComponentConfigurationFactory;
+import it.water.core.registry.model.LazyComponentHolder;
 import it.water.core.registry.model.exception.NoComponentRegistryFoundException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -29,9 +39,20 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 class WaterBaseRegistryTest {
     private PropertiesComponentConfiguration config;
@@ -52,6 +73,8 @@ class WaterBaseRegistryTest {
     void testWaterComponentNotFoundException() {
         NoComponentRegistryFoundException ex = new NoComponentRegistryFoundException();
         Assertions.assertNotNull(ex);
+        //missing components are a normal outcome, no stack trace is collected
+        Assertions.assertEquals(0, ex.getStackTrace().length);
         ex = new NoComponentRegistryFoundException("message");
         Assertions.assertEquals("message", ex.getMessage());
         ex = new NoComponentRegistryFoundException("message", new WaterException());
@@ -256,4 +279,375 @@ class WaterBaseRegistryTest {
         Assertions.assertTrue(testComponentFilterBuilder.createFilter("a", "value").or("b", "value").or("c", "value").matches(props));
         Assertions.assertFalse(testComponentFilterBuilder.createFilter("a", "value").and("b", "value").matches(props));
     }
+
+    @Test
+    void testInMemoryComponentRegistry() {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        Assertions.assertThrows(NoComponentRegistryFoundException.class, () -> registry.findComponent(Runnable.class, null));
+        Assertions.assertTrue(registry.findComponentIfPresent(Runnable.class, null).isEmpty());
+        Assertions.assertTrue(registry.findComponentsOrEmpty(Runnable.class, null).isEmpty());
+        Runnable low = newComponent();
+        Runnable high = newComponent();
+        Runnable highSecond = newComponent();
+        ComponentRegistration<Runnable, Long> lowRegistration = registry.registerComponent(Runnable.class, low, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(1).withProp("name", "low").build());
+        registry.registerComponent(Runnable.class, high, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(5).withProp("name", "high").build());
+        registry.registerComponent(Runnable.class, highSecond, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(5).build());
+        //ordered by priority, then by registration order
+        Assertions.assertEquals(List.of(high, highSecond, low), registry.findComponents(Runnable.class, null));
+        //callers own the returned list
+        List<Runnable> listed = registry.findComponents(Runnable.class, null);
+        listed.remove(high);
+        listed.sort((first, second) -> 0);
+        Assertions.assertEquals(List.of(high, highSecond, low), registry.findComponents(Runnable.class, null));
+        Assertions.assertSame(high, registry.findComponent(Runnable.class, null));
+        Assertions.assertSame(low, registry.findComponent(Runnable.class, registry.getComponentFilterBuilder().createFilter("name", "low")));
+        Assertions.assertSame(low, registry.findComponentIfPresent(Runnable.class, registry.getComponentFilterBuilder().createFilter("name", "low")).orElse(null));
+        Assertions.assertTrue(registry.findComponentIfPresent(Runnable.class, registry.getComponentFilterBuilder().createFilter("name", "none")).isEmpty());
+        Assertions.assertEquals(3, registry.findComponentsOrEmpty(Runnable.class, null).size());
+        Assertions.assertEquals(List.of(high, highSecond), registry.findComponents(Runnable.class, registry.getComponentFilterBuilder().createFilter("name", "low").not()));
+        Assertions.assertEquals(1L, lowRegistration.getRegistration().longValue());
+        long generation = registry.getGeneration();
+        Assertions.assertTrue(registry.unregisterComponent(lowRegistration));
+        Assertions.assertFalse(registry.unregisterComponent(Runnable.class, low));
+        Assertions.assertTrue(registry.getGeneration() > generation);
+        Assertions.assertEquals(List.of(high, highSecond), registry.findComponents(Runnable.class, null));
+        Assertions.assertThrows(RuntimeException.class, () -> registry.registerComponent(Runnable.class, null, null));
+        //once every component has been unregistered lookups return nothing instead of failing
+        Assertions.assertTrue(registry.unregisterComponent(Runnable.class, high));
+        Assertions.assertTrue(registry.unregisterComponent(Runnable.class, highSecond));
+        Assertions.assertNull(registry.findComponent(Runnable.class, null));
+        Assertions.assertTrue(registry.findComponents(Runnable.class, null).isEmpty());
+    }
+
+    @Test
+    void testDefaultOptionalLookups() {
+        ComponentRegistry missing = newFailingRegistry(new NoComponentRegistryFoundException());
+        Assertions.assertTrue(missing.findComponentIfPresent(Runnable.class, null).isEmpty());
+        Assertions.assertTrue(missing.findComponentsOrEmpty(Runnable.class, null).isEmpty());
+        //errors other than missing components are not hidden
+        ComponentRegistry broken = newFailingRegistry(new IllegalStateException("broken"));
+        Assertions.assertThrows(IllegalStateException.class, () -> broken.findComponentIfPresent(Runnable.class, null));
+        Assertions.assertThrows(IllegalStateException.class, () -> broken.findComponentsOrEmpty(Runnable.class, null));
+    }
+
+    @Test
+    void testInMemoryComponentRegistryEntityComponents() {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        String entityClassName = BaseEntity.class.getName();
+        BaseEntitySystemApi<?> low = newEntitySystemApi();
+        BaseEntitySystemApi<?> high = newEntitySystemApi();
+        registry.registerComponent(BaseEntitySystemApi.class, low, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(1).build());
+        ComponentRegistration<BaseEntitySystemApi, Long> highRegistration = registry.registerComponent(BaseEntitySystemApi.class, high, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(5).build());
+        Assertions.assertSame(high, registry.findEntitySystemApi(entityClassName));
+        //removing the highest priority system api falls back to the remaining one
+        Assertions.assertTrue(registry.unregisterComponent(highRegistration));
+        Assertions.assertSame(low, registry.findEntitySystemApi(entityClassName));
+        Assertions.assertTrue(registry.unregisterComponent(BaseEntitySystemApi.class, low));
+        Assertions.assertNull(registry.findEntitySystemApi(entityClassName));
+    }
+
+    @Test
+    void testInMemoryComponentRegistryConcurrentAccess() throws InterruptedException {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        Runnable first = newComponent();
+        registry.registerComponent(Runnable.class, first, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(100).build());
+        AtomicInteger failures = new AtomicInteger();
+        Set<Runnable> components = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    Runnable component = newComponent();
+                    components.add(component);
+                    registry.registerComponent(Runnable.class, component, null);
+                    if (registry.findComponent(Runnable.class, null) != first || !registry.findComponents(Runnable.class, null).contains(component))
+                        failures.incrementAndGet();
+                    if (!registry.unregisterComponent(Runnable.class, component))
+                        failures.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        Assertions.assertEquals(0, failures.get());
+        //every thread registered its own distinct components
+        Assertions.assertEquals(800, components.size());
+        Assertions.assertEquals(List.of(first), registry.findComponents(Runnable.class, null));
+    }
+
+    @Test
+    void testCompiledFilters() {
+        TestComponentFilterBuilder filterBuilder = new TestComponentFilterBuilder();
+        ComponentConfiguration configuration = ComponentConfigurationFactory.createNewComponentPropertyFactory()
+                .withProp("field1", "value1")
+                .withProp("field2", "value2")
+                .withProp("numeric", 10)
+                .build();
+        Properties props = configuration.getConfiguration();
+        List<ComponentFilter> filters = List.of(
+                filterBuilder.createFilter("field1", "value1"),
+                filterBuilder.createFilter("field1", "other"),
+                filterBuilder.createFilter("missing", "value1").not(),
+                filterBuilder.createFilter("field1", "value1").and("field2", "value2").and("field3", "value3"),
+                filterBuilder.createFilter("field1", "other").or("field2", "other").or("field2", "value2"),
+                filterBuilder.createFilter("field1", "value1").and(filterBuilder.createFilter("field2", "other").or("field2", "value2")).not(),
+                filterBuilder.createFilter("field1", "other").or(filterBuilder.createFilter("field2", "value2").and("field1", "value1").not())
+        );
+        for (ComponentFilter filter : filters) {
+            Assertions.assertEquals(filter.matches(props), filter.compile().matches(configuration.getConfigurationView()), filter.getFilter());
+        }
+        //non string values never match, as with Properties.getProperty
+        Assertions.assertFalse(filterBuilder.createFilter("numeric", "10").compile().matches(configuration.getConfigurationView()));
+        //the view is cached until the configuration changes
+        Assertions.assertSame(configuration.getConfigurationView(), configuration.getConfigurationView());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> configuration.getConfigurationView().put("field3", "value3"));
+        configuration.addProperty("field3", "value3");
+        Assertions.assertEquals("value3", configuration.getConfigurationView().get("field3"));
+        configuration.removeProperty("field3");
+        Assertions.assertFalse(configuration.getConfigurationView().containsKey("field3"));
+    }
+
+    @Test
+    void testInMemoryComponentRegistryLookupCache() {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        Runnable component = newComponent();
+        ComponentConfiguration configuration = ComponentConfigurationFactory.createNewComponentPropertyFactory().withProp("name", "first").build();
+        registry.registerComponent(Runnable.class, component, configuration);
+        AtomicInteger lookups = new AtomicInteger();
+        ComponentFilter secondFilter = new ComponentDefaultPropertyFilter("name", "second", new ComponentDefaultFilterImplementation()) {
+            @Override
+            public CompiledComponentFilter compile() {
+                //filters are compiled once for each lookup performed on registrations
+                lookups.incrementAndGet();
+                return super.compile();
+            }
+        };
+        //negative result is memoized
+        Assertions.assertNull(registry.findComponent(Runnable.class, secondFilter));
+        Assertions.assertNull(registry.findComponent(Runnable.class, secondFilter));
+        Assertions.assertNull(registry.findComponent(Runnable.class, registry.getComponentFilterBuilder().createFilter("name", "second")));
+        Assertions.assertEquals(1, lookups.get());
+        //registrations invalidate memoized results
+        Runnable second = newComponent();
+        registry.registerComponent(Runnable.class, second, ComponentConfigurationFactory.createNewComponentPropertyFactory().withProp("name", "second").build());
+        Assertions.assertSame(second, registry.findComponent(Runnable.class, secondFilter));
+        Assertions.assertEquals(2, lookups.get());
+        Assertions.assertSame(second, registry.findComponent(Runnable.class, secondFilter));
+        Assertions.assertSame(second, registry.findComponent(Runnable.class, registry.getComponentFilterBuilder().createFilter("name", "second")));
+        Assertions.assertEquals(2, lookups.get());
+        Assertions.assertSame(component, registry.findComponent(Runnable.class, registry.getComponentFilterBuilder().createFilter("name", "first")));
+        Assertions.assertTrue(registry.unregisterComponent(Runnable.class, second));
+        Assertions.assertNull(registry.findComponent(Runnable.class, secondFilter));
+    }
+
+    @Test
+    void testInMemoryComponentRegistryPropertyIndex() {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        List<Runnable> registered = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Runnable component = newComponent();
+            registered.add(component);
+            registry.registerComponent(Runnable.class, component, ComponentConfigurationFactory.createNewComponentPropertyFactory()
+                    .withPriority(i % 3)
+                    .withProp("implementation", "impl" + (i % 4))
+                    .withProp("index", String.valueOf(i))
+                    .build());
+        }
+        TestComponentFilterBuilder filterBuilder = new TestComponentFilterBuilder();
+        List<ComponentFilter> filters = List.of(
+                filterBuilder.createFilter("implementation", "impl1"),
+                filterBuilder.createFilter("implementation", "impl2").and("index", "6"),
+                filterBuilder.createFilter("implementation", "impl2").and("index", "7"),
+                filterBuilder.createFilter("implementation", "missing"),
+                filterBuilder.createFilter("implementation", "impl1").or("index", "2"),
+                filterBuilder.createFilter("implementation", "impl1").not()
+        );
+        for (ComponentFilter filter : filters) {
+            //indexed lookups must return the same components, in the same order, as a full scan
+            List<Runnable> expected = new ArrayList<>();
+            for (Runnable component : registry.findComponents(Runnable.class, null)) {
+                int i = registered.indexOf(component);
+                Properties props = new Properties();
+                props.put("implementation", "impl" + (i % 4));
+                props.put("index", String.valueOf(i));
+                if (filter.matches(props))
+                    expected.add(component);
+            }
+            Assertions.assertEquals(expected, registry.findComponents(Runnable.class, filter), filter.getFilter());
+            Assertions.assertEquals(expected.isEmpty() ? null : expected.get(0), registry.findComponent(Runnable.class, filter), filter.getFilter());
+        }
+    }
+
+    @Test
+    void testInMemoryComponentRegistryListeners() {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        ComponentFilter defaultFilter = registry.getComponentFilterBuilder().createFilter("implementation", "default");
+        List<ComponentRegistryEvent> events = new ArrayList<>();
+        ComponentRegistryListener listener = events::add;
+        Assertions.assertTrue(registry.addComponentListener(Runnable.class, defaultFilter, listener));
+        LiveComponentReference<Runnable> reference = LiveComponentReference.of(registry, Runnable.class, defaultFilter);
+        Assertions.assertTrue(reference.isTracked());
+        Assertions.assertNull(reference.get());
+
+        Runnable low = newComponent();
+        ComponentRegistration<Runnable, Long> lowRegistration = registry.registerComponent(Runnable.class, low, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(1).withProp("implementation", "default").build());
+        Assertions.assertSame(low, reference.get());
+        //not matching the filter
+        registry.registerComponent(Runnable.class, newComponent(), ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(10).withProp("implementation", "other").build());
+        Runnable high = newComponent();
+        registry.registerComponent(Runnable.class, high, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(5).withProp("implementation", "default").build());
+        Assertions.assertSame(high, reference.get());
+        Assertions.assertTrue(registry.unregisterComponent(Runnable.class, high));
+        Assertions.assertSame(low, reference.get());
+
+        Assertions.assertEquals(3, events.size());
+        Assertions.assertEquals(ComponentRegistryEvent.Type.REGISTERED, events.get(0).getType());
+        Assertions.assertSame(lowRegistration, events.get(0).getRegistration());
+        Assertions.assertEquals(ComponentRegistryEvent.Type.UNREGISTERED, events.get(2).getType());
+        Assertions.assertEquals(Runnable.class, events.get(2).getRegistrationClass());
+
+        Assertions.assertTrue(registry.removeComponentListener(listener));
+        reference.close();
+        Assertions.assertFalse(registry.removeComponentListener(reference));
+        registry.unregisterComponent(lowRegistration);
+        Assertions.assertEquals(3, events.size());
+    }
+
+    @Test
+    void testInMemoryComponentRegistryLazyComponents() throws InterruptedException {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        Assertions.assertTrue(registry.supportsLazyComponents());
+        AtomicInteger created = new AtomicInteger();
+        Runnable lazy = newComponent();
+        ComponentRegistration<Runnable, Long> registration = registry.registerLazyComponent(Runnable.class, () -> {
+            created.incrementAndGet();
+            return lazy;
+        }, ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(5).withProp("implementation", "lazy").build());
+        registry.registerComponent(Runnable.class, newComponent(), ComponentConfigurationFactory.createNewComponentPropertyFactory().withPriority(1).build());
+        //filters do not create the component
+        Assertions.assertTrue(registry.findComponents(Runnable.class, registry.getComponentFilterBuilder().createFilter("implementation", "other")).isEmpty());
+        Assertions.assertEquals(0, created.get());
+
+        //concurrent first lookups create the component once
+        List<Thread> threads = new ArrayList<>();
+        List<Object> found = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> found.add(registry.findComponent(Runnable.class, null)));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        Assertions.assertEquals(1, created.get());
+        found.forEach(component -> Assertions.assertSame(lazy, component));
+        Assertions.assertSame(lazy, registration.getComponent());
+        Assertions.assertEquals(2, registry.findComponents(Runnable.class, null).size());
+        Assertions.assertEquals(1, created.get());
+        Assertions.assertTrue(registry.unregisterComponent(Runnable.class, lazy));
+
+        //lazy components never looked up are unregistered without being created
+        ComponentRegistration<Runnable, Long> notCreated = registry.registerLazyComponent(Runnable.class, () -> {
+            created.incrementAndGet();
+            return newComponent();
+        }, null);
+        Assertions.assertTrue(registry.unregisterComponent(notCreated));
+        Assertions.assertEquals(1, created.get());
+        Assertions.assertEquals(1, registry.findComponents(Runnable.class, null).size());
+    }
+
+    @Test
+    void testInMemoryComponentRegistryLazyComponentsLookingUpEachOther() throws InterruptedException {
+        InMemoryComponentRegistry registry = new InMemoryComponentRegistry();
+        ComponentFilter firstFilter = registry.getComponentFilterBuilder().createFilter("name", "first");
+        ComponentFilter secondFilter = registry.getComponentFilterBuilder().createFilter("name", "second");
+        CountDownLatch bothCreating = new CountDownLatch(2);
+        Map<String, Object> activationLookups = new ConcurrentHashMap<>();
+        registry.registerLazyComponent(Runnable.class, activatingFactory(registry, secondFilter, bothCreating, activationLookups, "first"), ComponentConfigurationFactory.createNewComponentPropertyFactory().withProp("name", "first").build());
+        registry.registerLazyComponent(Runnable.class, activatingFactory(registry, firstFilter, bothCreating, activationLookups, "second"), ComponentConfigurationFactory.createNewComponentPropertyFactory().withProp("name", "second").build());
+        //each component looks up the other one while both are being created by different threads
+        List<Object> found = new CopyOnWriteArrayList<>();
+        List<Thread> threads = List.of(new Thread(() -> found.add(registry.findComponent(Runnable.class, firstFilter))), new Thread(() -> found.add(registry.findComponent(Runnable.class, secondFilter))));
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(10000);
+            Assertions.assertFalse(thread.isAlive());
+        }
+        Runnable first = registry.findComponent(Runnable.class, firstFilter);
+        Runnable second = registry.findComponent(Runnable.class, secondFilter);
+        Assertions.assertEquals(2, found.size());
+        Assertions.assertTrue(found.contains(first) && found.contains(second));
+        Assertions.assertSame(second, activationLookups.get("first"));
+        Assertions.assertSame(first, activationLookups.get("second"));
+    }
+
+    /**
+     * Factory which creates the component once and looks up another component while activating it,
+     * as the application initializer does with lazy framework components
+     */
+    private static Supplier<Runnable> activatingFactory(ComponentRegistry registry, ComponentFilter lookupFilter, CountDownLatch bothCreating, Map<String, Object> activationLookups, String name) {
+        LazyComponentHolder<Runnable> holder = new LazyComponentHolder<>();
+        return () -> holder.get(injectedInstance -> {
+            Runnable component = newComponent();
+            injectedInstance.accept(component);
+            bothCreating.countDown();
+            try {
+                bothCreating.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            activationLookups.put(name, registry.findComponent(Runnable.class, lookupFilter));
+            return component;
+        }, () -> {
+            throw new IllegalStateException("Circular creation of " + name);
+        });
+    }
+
+    /**
+     * Non capturing lambdas may be shared instances, components must be distinct objects
+     */
+    private static Runnable newComponent() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                //do nothing
+            }
+        };
+    }
+
+    /**
+     * Registry relying on default methods, whose lookups fail with the given exception
+     */
+    private static ComponentRegistry newFailingRegistry(RuntimeException failure) {
+        return (ComponentRegistry) Proxy.newProxyInstance(WaterBaseRegistryTest.class.getClassLoader(), new Class<?>[]{ComponentRegistry.class}, (proxy, method, args) -> {
+            if (method.isDefault())
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            if (method.getName().equals("findComponent") || method.getName().equals("findComponents"))
+                throw failure;
+            return null;
+        });
+    }
+
+    /**
+     * Entity system api handling BaseEntity, only methods used by the registry are implemented
+     */
+    private static BaseEntitySystemApi<?> newEntitySystemApi() {
+        return (BaseEntitySystemApi<?>) Proxy.newProxyInstance(WaterBaseRegistryTest.class.getClassLoader(), new Class<?>[]{BaseEntitySystemApi.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getEntityType":
+                    return BaseEntity.class;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return null;
+            }
+        });
+    }
+
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.security.annotations.implementation;
+
+import it.water.core.api.bundle.Runtime;
+import it.water.core.api.permission.SecurityContext;
+import it.water.core.permission.annotations.LimitScope;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+
+/**
+ * @Author Aristide Cittadino
+ * Common logic for interceptors which limit method invocations per method, user or tenant.
+ * Limits are kept in a map keyed by service class, method and scope value: when the map grows over a threshold
+ * unused limits are removed, so callers which are not active anymore do not retain memory.
+ * Clean up runs at most once per interval and on one thread at a time, so guarded invocations do not pay
+ * for scanning all the limits; when a clean up removes nothing the threshold is doubled.
+ * Each limit is removed atomically with the check telling it is unused; interceptors which cannot tolerate
+ * a limit removed while they are using it mark it as removed inside that check.
+ *
+ * @param <L> limit type
+ */
+public abstract class AbstractLimitInterceptor<L> extends AbstractPermissionInterceptor {
+    private static final int CLEANUP_THRESHOLD = 4096;
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<LimitKey, L> limits = new ConcurrentHashMap<>();
+    private final AtomicBoolean cleaningUp = new AtomicBoolean();
+    private volatile int cleanUpThreshold = CLEANUP_THRESHOLD;
+    private volatile long lastCleanUp = System.nanoTime();
+
+    /**
+     * @param serviceClass concrete service class
+     * @param m            invoked method
+     * @param scope        limit scope
+     * @param factory      creates the limit the first time it is used
+     * @return the limit shared by the current caller
+     */
+    protected L getLimit(Class<?> serviceClass, Method m, LimitScope scope, Function<LimitKey, L> factory) {
+        return getLimit(limitKey(serviceClass, m, scope), factory);
+    }
+
+    /**
+     * @param serviceClass concrete service class
+     * @param m            invoked method
+     * @param scope        limit scope
+     * @return the key of the limit shared by the current caller
+     */
+    protected LimitKey limitKey(Class<?> serviceClass, Method m, LimitScope scope) {
+        return new LimitKey(serviceClass, m, scopeValue(scope));
+    }
+
+    /**
+     * @param key     limit key
+     * @param factory creates the limit the first time it is used
+     * @return the limit registered for the key
+     */
+    protected L getLimit(LimitKey key, Function<LimitKey, L> factory) {
+        L limit = limits.get(key);
+        if (limit == null)
+            limit = limits.computeIfAbsent(key, factory);
+        return limit;
+    }
+
+    /**
+     * Removes limits which are not used anymore once the number of limits exceeds the cleanup threshold.
+     * Only one thread cleans up at a time and at most once per interval, other callers return immediately.
+     *
+     * @param unused tells whether a limit is not used, it is tested under the lock used to remove the limit
+     *               and removing it must be equivalent to recreating it
+     */
+    protected void cleanUp(Predicate<L> unused) {
+        if (limits.size() <= cleanUpThreshold || System.nanoTime() - lastCleanUp < CLEANUP_INTERVAL_NANOS || !cleaningUp.compareAndSet(false, true))
+            return;
+        try {
+            int removed = 0;
+            for (LimitKey key : limits.keySet()) {
+                if (limits.computeIfPresent(key, (limitKey, limit) -> unused.test(limit) ? null : limit) == null)
+                    removed++;
+            }
+            //limits are all in use, so wait for the map to grow further before scanning it again
+            if (removed == 0 && cleanUpThreshold < Integer.MAX_VALUE / 2)
+                cleanUpThreshold = cleanUpThreshold * 2;
+        } finally {
+            lastCleanUp = System.nanoTime();
+            cleaningUp.set(false);
+        }
+    }
+
+    private Object scopeValue(LimitScope scope) {
+        if (scope == LimitScope.METHOD)
+            return null;
+        Runtime runtime = getWaterRuntime();
+        SecurityContext securityContext = (runtime != null) ? runtime.getSecurityContext() : null;
+        if (securityContext == null)
+            return null;
+        if (scope == LimitScope.TENANT && securityContext.getActiveCompanyId() != null)
+            return securityContext.getActiveCompanyId();
+        return securityContext.getLoggedUsername();
+    }
+
+    protected static final class LimitKey {
+        private final Class<?> serviceClass;
+        private final Method method;
+        private final Object scopeValue;
+        private final int hash;
+
+        private LimitKey(Class<?> serviceClass, Method method, Object scopeValue) {
+            this.serviceClass = serviceClass;
+            this.method = method;
+            this.scopeValue = scopeValue;
+            this.hash = Objects.hash(serviceClass, method, scopeValue);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof LimitKey))
+                return false;
+            LimitKey other = (LimitKey) o;
+            return serviceClass == other.serviceClass && method.equals(other.method) && Objects.equals(scopeValue, other.scopeValue);
+        }
+    }
+}
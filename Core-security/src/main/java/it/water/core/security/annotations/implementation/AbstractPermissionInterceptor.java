@@ -55,6 +55,8 @@ public abstract class AbstractPermissionInterceptor implements Service {
     @Getter(AccessLevel.PROTECTED)
     private Runtime waterRuntime;
 
+    //interceptors are registered as services, so PermissionUtil and ActionsManager are injected again on every invocation
+    //and follow registry changes without keeping a LiveComponentReference
     @Inject
     @Setter
     private PermissionUtil waterPermissionUtil;
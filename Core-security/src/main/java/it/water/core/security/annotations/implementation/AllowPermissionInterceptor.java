@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
+import java.util.Optional;
 
 
 /**
@@ -107,7 +108,10 @@ public class AllowPermissionInterceptor extends AbstractPermissionInterceptor im
     @SuppressWarnings("rawtypes")
     private BaseEntitySystemApi<?> findSystemApi(String systemApiRef) {
         try {
-            return (BaseEntitySystemApi) getComponentRegistry().findComponent(Class.forName(systemApiRef), null);
+            Optional<?> systemApi = getComponentRegistry().findComponentIfPresent(Class.forName(systemApiRef), null);
+            if (systemApi.isPresent())
+                return (BaseEntitySystemApi) systemApi.get();
+            log.error("No system api found for {}", systemApiRef);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
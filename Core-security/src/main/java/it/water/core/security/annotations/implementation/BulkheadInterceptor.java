@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.security.annotations.implementation;
+
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.InvocationContext;
+import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.FrameworkComponent;
+import it.water.core.permission.annotations.Bulkhead;
+import it.water.core.permission.exceptions.TooManyRequestsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+
+/**
+ * @Author Aristide Cittadino
+ * This class is the implementation of @Bulkhead annotation.
+ * Each method, user or tenant (depending on the annotation scope) has its own semaphore: a permit is taken before
+ * the invocation and released when the invocation completes, even if it fails.
+ * Permits are released through the InvocationContext created by Water proxies: methods invoked without it
+ * are not limited, and a warning is logged once for each method.
+ */
+@FrameworkComponent(services = {BeforeMethodInterceptor.class})
+public class BulkheadInterceptor extends AbstractLimitInterceptor<BulkheadInterceptor.BulkheadSemaphore> implements BeforeMethodInterceptor<Bulkhead> {
+    private static Logger log = LoggerFactory.getLogger(BulkheadInterceptor.class.getName());
+
+    private final Set<Method> methodsWithoutContext = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param s          Water Service which is going to be invoked
+     * @param m          Method
+     * @param args       Method arguments
+     * @param annotation Annotation processed on the method which maps the Interceptor definition
+     */
+    @Override
+    public void interceptMethod(Service s, Method m, Object[] args, Bulkhead annotation) {
+        InvocationContext context = InvocationContext.find(s, m);
+        //permits can be released only when the proxy notifies the invocation completion
+        if (context == null) {
+            if (methodsWithoutContext.add(m))
+                log.warn("Method {}.{} is not invoked through a proxy exposing the invocation context, @Bulkhead is ignored", m.getDeclaringClass().getName(), m.getName());
+            return;
+        }
+        LimitKey limitKey = limitKey(s.getClass(), m, annotation.scope());
+        BulkheadSemaphore semaphore = getLimit(limitKey, key -> new BulkheadSemaphore(annotation.maxConcurrentCalls()));
+        while (true) {
+            if (!acquire(semaphore, annotation)) {
+                log.debug("Too many concurrent invocations on method: {}", m.getName());
+                throw new TooManyRequestsException("Too many concurrent invocations on method " + m.getName());
+            }
+            if (!semaphore.isRemoved())
+                break;
+            //semaphore removed by a concurrent clean up while acquiring, other callers use the new one
+            semaphore.release();
+            semaphore = getLimit(limitKey, key -> new BulkheadSemaphore(annotation.maxConcurrentCalls()));
+        }
+        context.onCompletion(semaphore::release);
+        cleanUp(BulkheadSemaphore::removeIfUnused);
+    }
+
+    private boolean acquire(Semaphore semaphore, Bulkhead annotation) {
+        if (annotation.maxWait() <= 0)
+            return semaphore.tryAcquire();
+        try {
+            return semaphore.tryAcquire(annotation.maxWait(), annotation.timeUnit());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Class getAnnotation() {
+        return Bulkhead.class;
+    }
+
+    static final class BulkheadSemaphore extends Semaphore {
+        private final int maxConcurrentCalls;
+        private volatile boolean removed;
+
+        private BulkheadSemaphore(int maxConcurrentCalls) {
+            super(Math.max(1, maxConcurrentCalls));
+            this.maxConcurrentCalls = Math.max(1, maxConcurrentCalls);
+        }
+
+        private boolean isRemoved() {
+            return removed;
+        }
+
+        /**
+         * Invoked by the clean up under the lock removing the semaphore.
+         * The flag is raised before looking at permits: a caller acquiring concurrently either is seen here
+         * or sees the flag after acquiring and moves to a new semaphore.
+         *
+         * @return true if the semaphore is not used and must be removed
+         */
+        private boolean removeIfUnused() {
+            removed = true;
+            if (availablePermits() == maxConcurrentCalls && !hasQueuedThreads())
+                return true;
+            removed = false;
+            return false;
+        }
+    }
+}
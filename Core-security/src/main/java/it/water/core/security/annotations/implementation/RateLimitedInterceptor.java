@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.security.annotations.implementation;
+
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.service.Service;
+import it.water.core.interceptors.annotations.FrameworkComponent;
+import it.water.core.permission.annotations.RateLimited;
+import it.water.core.permission.exceptions.TooManyRequestsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+
+/**
+ * @Author Aristide Cittadino
+ * This class is the implementation of @RateLimited annotation.
+ * Each method, user or tenant (depending on the annotation scope) has its own token bucket,
+ * invocations which find the bucket empty are rejected.
+ */
+@FrameworkComponent(services = {BeforeMethodInterceptor.class})
+public class RateLimitedInterceptor extends AbstractLimitInterceptor<TokenBucket> implements BeforeMethodInterceptor<RateLimited> {
+    private static Logger log = LoggerFactory.getLogger(RateLimitedInterceptor.class.getName());
+
+    /**
+     * @param s          Water Service which is going to be invoked
+     * @param m          Method
+     * @param args       Method arguments
+     * @param annotation Annotation processed on the method which maps the Interceptor definition
+     */
+    @Override
+    public void interceptMethod(Service s, Method m, Object[] args, RateLimited annotation) {
+        TokenBucket bucket = getLimit(s.getClass(), m, annotation.scope(), key -> new TokenBucket(annotation.permits(), annotation.timeUnit().toNanos(annotation.period())));
+        long now = System.nanoTime();
+        if (!bucket.tryAcquire(now)) {
+            log.debug("Rate limit exceeded on method: {}", m.getName());
+            throw new TooManyRequestsException("Rate limit exceeded on method " + m.getName());
+        }
+        cleanUp(unusedBucket -> unusedBucket.isFull(now));
+    }
+
+    /**
+     * @return
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Class getAnnotation() {
+        return RateLimited.class;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.security.annotations.implementation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * @Author Aristide Cittadino
+ * Lock free token bucket refilled continuously, implemented as a generic cell rate algorithm:
+ * instead of counting tokens it keeps the time at which the bucket will be full again and updates it with a single CAS.
+ */
+class TokenBucket {
+    private final long emissionIntervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(int permits, long periodNanos) {
+        int capacity = Math.max(1, permits);
+        this.emissionIntervalNanos = Math.max(1, periodNanos / capacity);
+        this.capacityNanos = emissionIntervalNanos * capacity;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @param now current System.nanoTime()
+     * @return true if a token has been taken
+     */
+    boolean tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + emissionIntervalNanos;
+            if (next - now > capacityNanos)
+                return false;
+            if (fullAt.compareAndSet(current, next))
+                return true;
+        }
+    }
+
+    /**
+     * @param now current System.nanoTime()
+     * @return true if the bucket is full, so it is equivalent to a new one
+     */
+    boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
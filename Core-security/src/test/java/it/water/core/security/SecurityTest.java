@@ -20,6 +20,7 @@ import it.water.core.api.action.ActionsManager;
 import it.water.core.api.bundle.ApplicationProperties;
 import it.water.core.api.bundle.Runtime;
 import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.interceptors.InvocationContext;
 import it.water.core.api.model.Role;
 import it.water.core.api.model.User;
 import it.water.core.api.permission.PermissionUtil;
@@ -31,12 +32,16 @@ import it.water.core.api.service.Service;
 import it.water.core.api.user.UserManager;
 import it.water.core.interceptors.annotations.Inject;
 import it.water.core.permission.action.CrudActions;
+import it.water.core.permission.annotations.Bulkhead;
+import it.water.core.permission.exceptions.TooManyRequestsException;
 import it.water.core.permission.exceptions.UnauthorizedException;
+import it.water.core.security.annotations.implementation.BulkheadInterceptor;
 import it.water.core.security.model.context.BasicSecurityContext;
 import it.water.core.security.model.principal.RolePrincipal;
 import it.water.core.security.model.principal.UserPrincipal;
 import it.water.core.security.service.TestEntityService;
 import it.water.core.security.service.TestEntityService1;
+import it.water.core.security.service.TestEntityServiceImpl;
 import it.water.core.security.service.TestProtectedEntity;
 import it.water.core.security.service.TestResourceService;
 import it.water.core.testing.utils.api.TestPermissionManager;
@@ -54,6 +59,7 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.security.auth.x500.X500PrivateCredential;
+import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
@@ -61,6 +67,9 @@ import java.util.Base64;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @ExtendWith(WaterTestExtension.class)
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -193,6 +202,54 @@ class SecurityTest implements Service {
         Assertions.assertTrue(testResourceService.genericPermissionMethodWithResourceParamName("name"));
     }
 
+    /**
+     * Testing @RateLimited and @Bulkhead: rate limits are per user, bulkhead permits are released when invocations complete.
+     */
+    @Test
+    void testLimitAnnotationImplementations() throws Exception {
+        TestEntityService testService = initializer.getComponentRegistry().findComponent(TestEntityService.class, null);
+        initializer.impersonate(this.userOk, runtime);
+        Assertions.assertTrue(testService.rateLimitedMethod());
+        Assertions.assertTrue(testService.rateLimitedMethod());
+        Assertions.assertThrows(TooManyRequestsException.class, testService::rateLimitedMethod);
+        //other users have their own limit
+        initializer.impersonate(this.userKo, runtime);
+        Assertions.assertTrue(testService.rateLimitedMethod());
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return testService.bulkheadMethod(entered, release);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        Assertions.assertTrue(entered.await(10, TimeUnit.SECONDS));
+        CountDownLatch released = new CountDownLatch(0);
+        Assertions.assertThrows(TooManyRequestsException.class, () -> testService.bulkheadMethod(new CountDownLatch(1), released));
+        release.countDown();
+        Assertions.assertTrue(running.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(testService.bulkheadMethod(new CountDownLatch(1), released));
+    }
+
+    /**
+     * Testing @Bulkhead outside Water proxies: without an invocation context permits could never be released,
+     * so the method is not limited.
+     */
+    @Test
+    void testBulkheadWithoutInvocationContext() throws NoSuchMethodException {
+        BulkheadInterceptor bulkheadInterceptor = new BulkheadInterceptor();
+        Method bulkheadMethod = TestEntityServiceImpl.class.getMethod("bulkheadMethod", CountDownLatch.class, CountDownLatch.class);
+        Bulkhead bulkhead = bulkheadMethod.getAnnotation(Bulkhead.class);
+        TestEntityServiceImpl service = new TestEntityServiceImpl();
+        Assertions.assertNull(InvocationContext.current());
+        //the limit is 1, a second invocation would be rejected if permits were taken
+        bulkheadInterceptor.interceptMethod(service, bulkheadMethod, null, bulkhead);
+        Assertions.assertDoesNotThrow(() -> bulkheadInterceptor.interceptMethod(service, bulkheadMethod, null, bulkhead));
+    }
+
     @Test
     void testBasicSecurityContext() {
         Set<Principal> principals = new HashSet<>();
@@ -17,6 +17,8 @@ package it.water.core.security.service;
 
 import it.water.core.api.service.BaseEntityApi;
 
+import java.util.concurrent.CountDownLatch;
+
 public interface TestEntityService extends BaseEntityApi<TestProtectedEntity> {
     boolean genericPermissionMethod();
 
@@ -31,4 +33,8 @@ public interface TestEntityService extends BaseEntityApi<TestProtectedEntity> {
     TestProtectedEntity permissionOnReturnMethod();
 
     boolean allowRolesMethod();
+
+    boolean rateLimitedMethod();
+
+    boolean bulkheadMethod(CountDownLatch entered, CountDownLatch release) throws InterruptedException;
 }
@@ -23,8 +23,14 @@ import it.water.core.permission.annotations.AllowGenericPermissions;
 import it.water.core.permission.annotations.AllowPermissions;
 import it.water.core.permission.annotations.AllowPermissionsOnReturn;
 import it.water.core.permission.annotations.AllowRoles;
+import it.water.core.permission.annotations.Bulkhead;
+import it.water.core.permission.annotations.LimitScope;
+import it.water.core.permission.annotations.RateLimited;
 import it.water.core.security.TestProtectedResource;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 @FrameworkComponent(services = {TestEntityService.class})
 public class TestEntityServiceImpl implements TestEntityService {
     private TestProtectedEntity resource = new TestProtectedEntity();
@@ -65,6 +71,17 @@ public class TestEntityServiceImpl implements TestEntityService {
         return true;
     }
 
+    @RateLimited(permits = 2, period = 1, timeUnit = TimeUnit.HOURS)
+    public boolean rateLimitedMethod() {
+        return true;
+    }
+
+    @Bulkhead(maxConcurrentCalls = 1, scope = LimitScope.METHOD)
+    public boolean bulkheadMethod(CountDownLatch entered, CountDownLatch release) throws InterruptedException {
+        entered.countDown();
+        return release.await(10, TimeUnit.SECONDS);
+    }
+
     @Override
     public TestProtectedEntity save(TestProtectedEntity entity) {
         return null;
@@ -35,6 +35,7 @@ import java.lang.reflect.Method;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -221,11 +222,9 @@ public class RestApiServiceRegistrationLifecycleManagerImpl implements RestApiSe
     }
 
     private <T> T findComponentQuietly(ComponentRegistry componentRegistry, Class<T> componentClass) {
-        try {
-            return componentRegistry.findComponent(componentClass, null);
-        } catch (Exception e) {
-            log.debug("Component {} not available: {}", componentClass.getName(), e.getMessage());
-            return null;
-        }
+        Optional<T> component = componentRegistry.findComponentIfPresent(componentClass, null);
+        if (component.isEmpty())
+            log.debug("Component {} not available", componentClass.getName());
+        return component.orElse(null);
     }
 }
@@ -32,6 +32,7 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -564,13 +565,12 @@ public abstract class ServiceRegistrationLifecycleSupport {
         if (componentRegistry == null || componentClass == null) {
             return null;
         }
-        try {
-            return componentRegistry.findComponent(componentClass, null);
-        } catch (Exception e) {
-            log.debug("Component {} not yet available during service registration bootstrap: {}",
-                    componentClass.getSimpleName(), e.getMessage());
-            return null;
+        Optional<T> component = componentRegistry.findComponentIfPresent(componentClass, null);
+        if (component.isEmpty()) {
+            log.debug("Component {} not yet available during service registration bootstrap",
+                    componentClass.getSimpleName());
         }
+        return component.orElse(null);
     }
 
     private long normalizePositive(long value, long defaultValue) {
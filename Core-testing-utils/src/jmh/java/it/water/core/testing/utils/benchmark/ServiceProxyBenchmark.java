@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 Aristide Cittadino
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.water.core.testing.utils.benchmark;
+
+import it.water.core.api.interceptors.BeforeMethodInterceptor;
+import it.water.core.api.registry.ComponentConfiguration;
+import it.water.core.api.registry.ComponentRegistry;
+import it.water.core.api.service.Service;
+import it.water.core.registry.model.ComponentConfigurationFactory;
+import it.water.core.testing.utils.registry.TestComponentRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author Aristide Cittadino
+ * Measures the cost of calling a service through the water proxy compared to a plain interface call.
+ * Methods without interceptors should cost about the same as a direct call.
+ * Each benchmark runs both with java.lang.reflect.Proxy and with generated proxy classes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceProxyBenchmark {
+
+    @Target({ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface BenchmarkAnnotation {
+    }
+
+    public interface BenchmarkService extends Service {
+        long plain(long value);
+
+        long annotated(long value);
+    }
+
+    public static class BenchmarkServiceImpl implements BenchmarkService {
+        @Override
+        public long plain(long value) {
+            return value + 1;
+        }
+
+        @BenchmarkAnnotation
+        @Override
+        public long annotated(long value) {
+            return value + 1;
+        }
+    }
+
+    public static class BenchmarkInterceptor implements BeforeMethodInterceptor<BenchmarkAnnotation> {
+        @Override
+        public <S extends Service> void interceptMethod(S destination, Method m, Object[] args, BenchmarkAnnotation annotation) {
+            //do nothing, just measuring the interceptors chain
+        }
+
+        @Override
+        public Class<BenchmarkAnnotation> getAnnotation() {
+            return BenchmarkAnnotation.class;
+        }
+    }
+
+    @Param({"false", "true"})
+    public boolean generatedProxies;
+
+    private BenchmarkService directService;
+    private BenchmarkService proxiedService;
+    private long value;
+
+    @Setup
+    public void setup() {
+        TestComponentRegistry registry = new TestComponentRegistry();
+        registry.setGeneratedProxies(generatedProxies);
+        ComponentConfiguration configuration = ComponentConfigurationFactory.createNewComponentPropertyFactory().build();
+        registry.registerComponent(ComponentRegistry.class, registry, configuration);
+        registry.registerComponent(BeforeMethodInterceptor.class, new BenchmarkInterceptor(), configuration);
+        registry.registerComponent(BenchmarkService.class, new BenchmarkServiceImpl(), configuration);
+        directService = new BenchmarkServiceImpl();
+        proxiedService = registry.findComponent(BenchmarkService.class, null);
+    }
+
+    @Benchmark
+    public long directCall() {
+        return directService.plain(value++);
+    }
+
+    @Benchmark
+    public long proxiedMethodWithoutInterceptors() {
+        return proxiedService.plain(value++);
+    }
+
+    @Benchmark
+    public long proxiedMethodWithInterceptors() {
+        return proxiedService.annotated(value++);
+    }
+}
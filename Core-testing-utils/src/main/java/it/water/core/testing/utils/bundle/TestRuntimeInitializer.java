@@ -74,6 +74,7 @@ public class TestRuntimeInitializer extends RuntimeInitializer<Object, TestCompo
         //setup cluster mode
         this.setupClusterMode();
         this.initializeRestApis();
+        this.logStartupReport();
     }
 
     private void setupApplicationProperties() {
@@ -25,7 +25,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 
@@ -56,6 +55,7 @@ public class TestServiceProxy<S extends Service> extends WaterAbstractIntercepto
 
     /**
      * Each invocation is wrapped between "intercept before" and "intercept after".
+     * Methods without interceptors are invoked directly on the service.
      *
      * @param proxy
      * @param method
@@ -66,16 +66,10 @@ public class TestServiceProxy<S extends Service> extends WaterAbstractIntercepto
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         try {
-            executeInterceptorBeforeMethod(getService(), method, args);
-            Object invoke = method.invoke(getService(), args);
-            executeInterceptorAfterMethod(getService(), method, args, invoke);
-            return invoke;
-        } catch (IllegalAccessException | NoSuchMethodException e) {
+            return invokeWithInterceptors(getService(), method, args);
+        } catch (IllegalAccessException e) {
             log.error(e.getMessage(), e);
             throw new IllegalAccessException("Error while intercept method call for: " + proxy.getClass().getName() + " " + method.getName());
-        } catch (InvocationTargetException e) {
-            log.error("Invocation on proxy failed, please check exceptions!");
-            throw e.getTargetException();
         }
     }
 
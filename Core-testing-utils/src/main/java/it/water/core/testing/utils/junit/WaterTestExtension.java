@@ -50,6 +50,8 @@ public class WaterTestExtension extends WaterAbstractInterceptor<Service> implem
             //forcing test class and method to be visible
             m.setAccessible(true);
             this.executeInterceptorBeforeMethod((Service) extensionContext.getRequiredTestInstance(), m, m.getParameters());
+            //after interceptors are not run on test methods, so the invocation is completed straight away
+            this.completeInvocation((Service) extensionContext.getRequiredTestInstance(), m);
         }
     }
 
@@ -73,6 +75,7 @@ public class WaterTestExtension extends WaterAbstractInterceptor<Service> implem
         //forcing test class and method to be visible
         extensionContext.getRequiredTestClass().getDeclaredMethod(m.getName(), m.getParameterTypes()).setAccessible(true);
         this.executeInterceptorBeforeMethod((Service) extensionContext.getRequiredTestInstance(), m, m.getParameters());
+        this.completeInvocation((Service) extensionContext.getRequiredTestInstance(), m);
     }
 
     private void startJetty() throws Exception {